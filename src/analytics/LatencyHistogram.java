@@ -0,0 +1,98 @@
+package analytics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Fixed-size histogram of answer times in milliseconds. Values below 16 ms get a bucket each;
+// above that every power of two is split into 8 buckets, so any percentile is reported within
+// about 6% of the true value, from 232 counters no matter how many answers were recorded.
+public class LatencyHistogram {
+  private static final int EXACT = 16; // values below this are counted exactly
+  private static final int SUB_BUCKETS = 8; // per power of two
+  private static final int SUB_BITS = 3;
+  private static final long MAX_VALUE = Integer.MAX_VALUE; // about 25 days; longer answers are clamped
+  private static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+
+  private final long[] counts = new long[BUCKETS];
+  private long total;
+
+  public void record(long millis) {
+    counts[bucketOf(Math.max(0, Math.min(millis, MAX_VALUE)))]++;
+    total++;
+  }
+
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    total += other.total;
+  }
+
+  public long count() {
+    return total;
+  }
+
+  // The value below which the given percentage of answers fall, as the middle of its bucket; 0 if empty
+  public long percentile(double percent) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return (lowerBound(i) + lowerBound(i + 1) - 1) / 2;
+      }
+    }
+    return MAX_VALUE;
+  }
+
+  static int bucketOf(long value) {
+    if (value < EXACT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value); // at least 4
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return EXACT + (exponent - 4) * SUB_BUCKETS + sub;
+  }
+
+  private static long lowerBound(int bucket) {
+    if (bucket < EXACT) {
+      return bucket;
+    }
+    int exponent = (bucket - EXACT) / SUB_BUCKETS + 4;
+    int sub = (bucket - EXACT) % SUB_BUCKETS;
+    return (1L << exponent) + ((long) sub << (exponent - SUB_BITS));
+  }
+
+  // Only non-empty buckets are written
+  void write(DataOutput out) throws IOException {
+    int used = 0;
+    for (long count : counts) {
+      used += count == 0 ? 0 : 1;
+    }
+    out.writeShort(used);
+    for (int i = 0; i < BUCKETS; i++) {
+      if (counts[i] != 0) {
+        out.writeShort(i);
+        out.writeLong(counts[i]);
+      }
+    }
+  }
+
+  static LatencyHistogram read(DataInput in) throws IOException {
+    LatencyHistogram histogram = new LatencyHistogram();
+    int used = in.readShort();
+    for (int i = 0; i < used; i++) {
+      int bucket = in.readShort();
+      long count = in.readLong();
+      if (bucket >= 0 && bucket < BUCKETS) {
+        histogram.counts[bucket] = count;
+        histogram.total += count;
+      }
+    }
+    return histogram;
+  }
+}
@@ -0,0 +1,127 @@
+package analytics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+
+// The last `capacity` days, weeks or months as a ring of rollups. A slot is reused when its period
+// falls out of the window, so memory stays the same however long the history grows.
+public class RollingWindow {
+  public enum Period {
+    DAY, WEEK, MONTH;
+
+    // Sequential number of the period containing the date; weeks start on Monday
+    long index(LocalDate date) {
+      switch (this) {
+        case DAY:
+          return date.toEpochDay();
+        case WEEK:
+          return Math.floorDiv(date.toEpochDay() + 3, 7); // 1970-01-01 was a Thursday
+        default:
+          return date.getYear() * 12L + date.getMonthValue() - 1;
+      }
+    }
+
+    public LocalDate start(LocalDate date) {
+      switch (this) {
+        case DAY:
+          return date;
+        case WEEK:
+          return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        default:
+          return date.withDayOfMonth(1);
+      }
+    }
+  }
+
+  private final Period period;
+  private final int capacity;
+  private final boolean withLatency;
+  private final long[] slotIndex; // period held by each slot, or Long.MIN_VALUE
+  private final Rollup[] slots; // created on first use
+
+  RollingWindow(Period period, int capacity, boolean withLatency) {
+    this.period = period;
+    this.capacity = capacity;
+    this.withLatency = withLatency;
+    this.slotIndex = new long[capacity];
+    this.slots = new Rollup[capacity];
+    Arrays.fill(slotIndex, Long.MIN_VALUE);
+  }
+
+  // The rollup to count into for the date, or null if the date is older than the window
+  Rollup forWriting(LocalDate date) {
+    long index = period.index(date);
+    int slot = (int) Math.floorMod(index, (long) capacity);
+    if (slotIndex[slot] != index) {
+      if (slotIndex[slot] > index) {
+        return null;
+      }
+      slotIndex[slot] = index;
+      slots[slot] = new Rollup(withLatency);
+    }
+    return slots[slot];
+  }
+
+  // The period containing the date, or null if nothing was recorded in it or it left the window
+  public Rollup get(LocalDate date) {
+    long index = period.index(date);
+    int slot = (int) Math.floorMod(index, (long) capacity);
+    return slotIndex[slot] == index ? slots[slot] : null;
+  }
+
+  // All periods from the one containing `from` to the one containing `to`, merged; only what is
+  // still in the window is counted
+  public Rollup between(LocalDate from, LocalDate to) {
+    Rollup merged = new Rollup(withLatency);
+    long first = Math.max(period.index(from), period.index(to) - capacity + 1);
+    for (int slot = 0; slot < capacity; slot++) {
+      if (slotIndex[slot] >= first && slotIndex[slot] <= period.index(to)) {
+        merged.add(slots[slot]);
+      }
+    }
+    return merged;
+  }
+
+  public Period getPeriod() {
+    return period;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  void write(DataOutput out) throws IOException {
+    int used = 0;
+    for (int slot = 0; slot < capacity; slot++) {
+      used += slots[slot] == null || slots[slot].isEmpty() ? 0 : 1;
+    }
+    out.writeInt(used);
+    for (int slot = 0; slot < capacity; slot++) {
+      if (slots[slot] != null && !slots[slot].isEmpty()) {
+        out.writeLong(slotIndex[slot]);
+        slots[slot].write(out);
+      }
+    }
+  }
+
+  // Merges the stored periods in; those that no longer fit the window are dropped
+  void read(DataInput in) throws IOException {
+    int used = in.readInt();
+    for (int i = 0; i < used; i++) {
+      long index = in.readLong();
+      Rollup rollup = Rollup.read(in, withLatency);
+      int slot = (int) Math.floorMod(index, (long) capacity);
+      if (slotIndex[slot] == index) {
+        slots[slot].add(rollup);
+      } else if (slotIndex[slot] < index) {
+        slotIndex[slot] = index;
+        slots[slot] = rollup;
+      }
+    }
+  }
+}
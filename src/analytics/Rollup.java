@@ -0,0 +1,94 @@
+package analytics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Pre-aggregated counts for one period (or all time), optionally with an answer time histogram
+public class Rollup {
+  public enum Counter {
+    POMODOROS, POMODOROS_ABANDONED, BREAKS_TAKEN, BREAKS_SKIPPED, ANSWERS, CORRECT_ANSWERS, TASKS_COMPLETED
+  }
+
+  private static final Counter[] COUNTERS = Counter.values();
+
+  private final long[] counts = new long[COUNTERS.length];
+  private final LatencyHistogram latency; // null when the period does not keep one
+
+  Rollup(boolean withLatency) {
+    this.latency = withLatency ? new LatencyHistogram() : null;
+  }
+
+  void increment(Counter counter) {
+    counts[counter.ordinal()]++;
+  }
+
+  void recordLatency(long millis) {
+    if (latency != null) {
+      latency.record(millis);
+    }
+  }
+
+  void add(Rollup other) {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] += other.counts[i];
+    }
+    if (latency != null && other.latency != null) {
+      latency.add(other.latency);
+    }
+  }
+
+  public long get(Counter counter) {
+    return counts[counter.ordinal()];
+  }
+
+  // Percentage of correct answers; 0 without answers
+  public double accuracy() {
+    long answers = get(Counter.ANSWERS);
+    return answers == 0 ? 0 : 100.0 * get(Counter.CORRECT_ANSWERS) / answers;
+  }
+
+  // Answer time percentile in milliseconds, or -1 if this rollup keeps no histogram
+  public long latencyPercentile(double percent) {
+    return latency == null ? -1 : latency.percentile(percent);
+  }
+
+  boolean isEmpty() {
+    for (long count : counts) {
+      if (count != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeByte(counts.length);
+    for (long count : counts) {
+      out.writeLong(count);
+    }
+    out.writeBoolean(latency != null);
+    if (latency != null) {
+      latency.write(out);
+    }
+  }
+
+  // Reads into a rollup of the wanted shape, so retention settings can change between versions
+  static Rollup read(DataInput in, boolean withLatency) throws IOException {
+    Rollup rollup = new Rollup(withLatency);
+    int stored = in.readByte();
+    for (int i = 0; i < stored; i++) {
+      long count = in.readLong();
+      if (i < rollup.counts.length) {
+        rollup.counts[i] = count;
+      }
+    }
+    if (in.readBoolean()) {
+      LatencyHistogram histogram = LatencyHistogram.read(in);
+      if (rollup.latency != null) {
+        rollup.latency.add(histogram);
+      }
+    }
+    return rollup;
+  }
+}
@@ -0,0 +1,284 @@
+package analytics;
+
+import analytics.RollingWindow.Period;
+import analytics.Rollup.Counter;
+import data.DataStorage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import shared.Log;
+import tasks.Task;
+import tasks.TaskListener;
+import timer.PomodoroTimer;
+import timer.TimingEngine;
+
+// What happened in study sessions, kept only as pre-aggregated state: events are folded into
+// rolling day, week and month windows, an all-time rollup and per-subject rollups the moment they
+// arrive, and the raw events are dropped. Dashboards read the rollups directly. Memory is fixed by
+// the window sizes and the subject limit, not by how many years of history there are. The state
+// is saved a few seconds after a change and at shutdown, on a thread of its own: events arrive on
+// the timer threads, which only ever wait for the in-memory snapshot, never for the disk.
+public class StudyAnalytics implements TaskListener {
+  private static final int MAGIC = 0x53414E31; // "SAN1"
+  private static final int DAYS = 400; // a bit over a year of daily rollups
+  private static final int WEEKS = 260; // five years of weekly rollups
+  private static final int MONTHS = 120; // ten years of monthly rollups, with answer times
+  private static final int SUBJECT_WEEKS = 53;
+  private static final int MAX_SUBJECTS = 100; // least recently studied subjects fold into OTHER
+  private static final String OTHER = "(other)";
+  private static final long SAVE_DELAY_MILLIS = 5000; // batch the saves of a burst of events
+  private static final Executor SAVER = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "analytics-saver");
+    thread.setDaemon(true); // The shutdown hook saves whatever is left
+    return thread;
+  });
+  private static StudyAnalytics shared;
+
+  private final Path file;
+  private final ZoneId zone;
+  private final RollingWindow days = new RollingWindow(Period.DAY, DAYS, false);
+  private final RollingWindow weeks = new RollingWindow(Period.WEEK, WEEKS, false);
+  private final RollingWindow months = new RollingWindow(Period.MONTH, MONTHS, true);
+  private final Rollup allTime = new Rollup(true);
+  private final Map<String, Subject> subjects = new LinkedHashMap<>(); // least recently studied first
+  private final Object saveLock = new Object(); // snapshots reach the file in the order they were taken
+  private boolean saveScheduled;
+
+  public StudyAnalytics(Path file, ZoneId zone) {
+    this.file = file;
+    this.zone = zone;
+  }
+
+  public static synchronized StudyAnalytics shared() {
+    if (shared == null) {
+      shared = new StudyAnalytics(DataStorage.appDirectory().resolve("analytics.dat"), ZoneId.systemDefault());
+      try {
+        shared.load();
+      } catch (IOException e) {
+        Log.warn("analytics", "Error loading study analytics: " + e.getMessage());
+      }
+      Runtime.getRuntime().addShutdownHook(new Thread(shared::saveQuietly, "analytics-shutdown"));
+    }
+    return shared;
+  }
+
+  // A graded answer; the subject is usually the study file's name
+  public void recordAnswer(String subject, boolean correct, long latencyMillis) {
+    record(subject, latencyMillis, Counter.ANSWERS, correct ? Counter.CORRECT_ANSWERS : null);
+  }
+
+  // A Pomodoro phase that ran out (completed) or was reset or stopped before it did
+  public void recordPhase(PomodoroTimer.Phase phase, boolean completed) {
+    if (phase == PomodoroTimer.Phase.WORK) {
+      record(null, -1, completed ? Counter.POMODOROS : Counter.POMODOROS_ABANDONED, null);
+    } else {
+      record(null, -1, completed ? Counter.BREAKS_TAKEN : Counter.BREAKS_SKIPPED, null);
+    }
+  }
+
+  @Override
+  public void taskStatusChanged(Task task, boolean completed) {
+    if (completed) {
+      record(null, -1, Counter.TASKS_COMPLETED, null);
+    }
+  }
+
+  private synchronized void record(String subject, long latencyMillis, Counter counter, Counter also) {
+    LocalDate today = LocalDate.now(zone);
+    List<Rollup> targets = new ArrayList<>(5);
+    targets.add(days.forWriting(today));
+    targets.add(weeks.forWriting(today));
+    targets.add(months.forWriting(today));
+    targets.add(allTime);
+    if (subject != null) {
+      Subject entry = subject(subject);
+      targets.add(entry.allTime);
+      targets.add(entry.weeks.forWriting(today));
+    }
+    for (Rollup rollup : targets) {
+      if (rollup == null) {
+        continue; // The clock went back past the window
+      }
+      rollup.increment(counter);
+      if (also != null) {
+        rollup.increment(also);
+      }
+      if (latencyMillis >= 0) {
+        rollup.recordLatency(latencyMillis);
+      }
+    }
+    scheduleSave();
+  }
+
+  private Subject subject(String name) {
+    Subject entry = subjects.remove(name);
+    if (entry != null) {
+      subjects.put(name, entry); // Now the most recently studied; reads leave the order alone
+    } else {
+      entry = new Subject();
+      subjects.put(name, entry);
+      if (subjects.size() > MAX_SUBJECTS) {
+        Iterator<Map.Entry<String, Subject>> eldest = subjects.entrySet().iterator();
+        Map.Entry<String, Subject> evicted = eldest.next();
+        if (evicted.getKey().equals(OTHER)) {
+          evicted = eldest.next();
+        }
+        subjects.remove(evicted.getKey());
+        Subject other = subjects.computeIfAbsent(OTHER, key -> new Subject());
+        other.allTime.add(evicted.getValue().allTime); // Weekly detail of the evicted subject is dropped
+      }
+    }
+    return entry;
+  }
+
+  public synchronized Rollup today() {
+    return day(LocalDate.now(zone));
+  }
+
+  // Empty rollups for periods without events or beyond retention
+  public synchronized Rollup day(LocalDate date) {
+    return orEmpty(days.get(date), false);
+  }
+
+  public synchronized Rollup week(LocalDate date) {
+    return orEmpty(weeks.get(date), false);
+  }
+
+  public synchronized Rollup month(LocalDate date) {
+    return orEmpty(months.get(date), true);
+  }
+
+  // Merged days from..to; only the last DAYS days are kept
+  public synchronized Rollup between(LocalDate from, LocalDate to) {
+    return days.between(from, to);
+  }
+
+  public synchronized Rollup allTime() {
+    return orEmpty(allTime, true);
+  }
+
+  // All-time rollup per subject, most recently studied first
+  public synchronized Map<String, Rollup> subjects() {
+    List<String> names = new ArrayList<>(subjects.keySet());
+    Map<String, Rollup> result = new LinkedHashMap<>();
+    for (int i = names.size() - 1; i >= 0; i--) {
+      result.put(names.get(i), orEmpty(subjects.get(names.get(i)).allTime, true));
+    }
+    return result;
+  }
+
+  public synchronized Rollup subjectWeek(String subject, LocalDate date) {
+    Subject entry = subjects.get(subject);
+    return orEmpty(entry == null ? null : entry.weeks.get(date), false);
+  }
+
+  private static Rollup orEmpty(Rollup rollup, boolean withLatency) {
+    Rollup copy = new Rollup(withLatency);
+    if (rollup != null) {
+      copy.add(rollup);
+    }
+    return copy;
+  }
+
+  private void scheduleSave() {
+    if (!saveScheduled) {
+      saveScheduled = true;
+      TimingEngine.shared().schedule(SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS, () -> SAVER.execute(this::saveQuietly));
+    }
+  }
+
+  // Only the snapshot is taken under the analytics lock; the file is written after it is released
+  public void save() throws IOException {
+    synchronized (saveLock) {
+      byte[] state = snapshot();
+      Files.createDirectories(file.getParent());
+      Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try {
+        Files.write(temp, state);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+  }
+
+  private synchronized byte[] snapshot() throws IOException {
+    saveScheduled = false;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 << 10);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeLong(System.currentTimeMillis());
+    days.write(out);
+    weeks.write(out);
+    months.write(out);
+    allTime.write(out);
+    out.writeInt(subjects.size());
+    for (Map.Entry<String, Subject> entry : subjects.entrySet()) { // Least recent first, as on load
+      out.writeUTF(entry.getKey());
+      entry.getValue().allTime.write(out);
+      entry.getValue().weeks.write(out);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private void saveQuietly() {
+    try {
+      save();
+    } catch (IOException e) {
+      Log.warn("analytics", "Error saving study analytics: " + e.getMessage());
+    }
+  }
+
+  private synchronized void load() throws IOException {
+    try (InputStream stream = Files.newInputStream(file)) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+      if (in.readInt() != MAGIC) {
+        Log.warn("analytics", "Ignoring unreadable study analytics in " + file);
+        return;
+      }
+      LocalDate saved = Instant.ofEpochMilli(in.readLong()).atZone(zone).toLocalDate();
+      days.read(in);
+      weeks.read(in);
+      months.read(in);
+      allTime.add(Rollup.read(in, true));
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String name = in.readUTF();
+        Subject entry = new Subject();
+        entry.allTime.add(Rollup.read(in, true));
+        entry.weeks.read(in);
+        subjects.put(name, entry);
+      }
+      Log.info("analytics", "Loaded study analytics saved " + saved + ".");
+    } catch (NoSuchFileException e) {
+      // Nothing recorded yet
+    } catch (EOFException e) {
+      Log.warn("analytics", "Study analytics file is truncated; keeping what was read.");
+    }
+  }
+
+  private static final class Subject {
+    final Rollup allTime = new Rollup(true);
+    final RollingWindow weeks = new RollingWindow(Period.WEEK, SUBJECT_WEEKS, false);
+  }
+}
@@ -1,9 +1,51 @@
 package application;
 
+import com.sun.net.httpserver.HttpServer;
 import gui.StudyPlannerGui;
+import java.io.IOException;
+import java.nio.file.Path;
+import metrics.MetricEvent;
+import metrics.MetricsEndpoint;
+import recall_techniques.BatchGrader;
+import server.TimerServer;
 
 public class Main {
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
+    MetricEvent.register(); // JFR recordings see the metrics in every mode
+    if (args.length == 3 && args[0].equals("--grade")) {
+      // Headless quiz grading: --grade <question bank> <answer sheets>
+      BatchGrader.run(Path.of(args[1]), Path.of(args[2]), System.out);
+      return;
+    }
+    if (args.length >= 1 && args.length <= 2 && args[0].equals("--server")) {
+      // Headless multi-user Pomodoro timers: --server [port]
+      int port = args.length == 2 ? parsePort(args[1]) : TimerServer.DEFAULT_PORT;
+      if (port < 0) {
+        System.err.println("Usage: --server [port], with a port from 0 to 65535");
+        System.exit(2);
+      }
+      // The endpoint's dispatcher thread is not a daemon, so it is stopped with the server
+      HttpServer metrics = MetricsEndpoint.startIfConfigured();
+      try {
+        TimerServer.run(port, System.out);
+      } finally {
+        if (metrics != null) {
+          metrics.stop(0);
+        }
+      }
+      return;
+    }
+    MetricsEndpoint.startIfConfigured(); // -Dstudyplanner.metrics.port=<port> serves /metrics until the window closes
     javax.swing.SwingUtilities.invokeLater(StudyPlannerGui::new);
   }
+
+  // -1 if the argument is not a valid port
+  private static int parsePort(String arg) {
+    try {
+      int port = Integer.parseInt(arg);
+      return port >= 0 && port <= 65535 ? port : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
 }
@@ -0,0 +1,268 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// A study file cut into content-defined chunks: boundaries are picked by a gear rolling hash over
+// the bytes, always right after a non-word byte, so an edit only changes the chunks around it and
+// no word spans two chunks. Each chunk is keyed by a fast hash of its content and length. The
+// chunking of the last few files is remembered, so the keyword analyzer, the question bank cache
+// and the note index share one pass over a saved file, and each of them only redoes its work for
+// chunks whose key is new.
+public final class ContentChunks {
+  private static final int MIN_CHUNK = 512 << 10; // no boundary is looked for before this
+  private static final int MAX_CHUNK = 4 << 20; // cut at the next word boundary once this long
+  private static final long BOUNDARY_MASK = (1L << 19) - 1; // about 512 KB past the minimum on average
+  private static final long[] GEAR = gearTable();
+  private static final int REMEMBERED = 4; // files whose latest chunking is kept
+  private static final Map<Path, ContentChunks> RECENT = new LinkedHashMap<>(8, 0.75f, true);
+
+  private final Path file;
+  private final long size;
+  private final long modified;
+  private final long[] offsets;
+  private final long[] lengths;
+  private final long[] keys;
+  private final Map<Long, byte[]> digests = new HashMap<>(); // SHA-256 by chunk key, guarded by this
+  private String digest;
+
+  private ContentChunks(Path file, long size, long modified, List<long[]> ranges, long[] keys) {
+    this.file = file;
+    this.size = size;
+    this.modified = modified;
+    this.offsets = new long[ranges.size()];
+    this.lengths = new long[ranges.size()];
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = ranges.get(i)[0];
+      lengths[i] = ranges.get(i)[1];
+    }
+    this.keys = keys;
+  }
+
+  // The file's chunks as of its current size and modification time, reusing the last chunking if
+  // neither changed
+  public static ContentChunks of(File file) throws IOException {
+    Path path = file.toPath().toAbsolutePath();
+    long size = file.length();
+    long modified = file.lastModified();
+    ContentChunks previous;
+    synchronized (RECENT) {
+      previous = RECENT.get(path);
+      if (previous != null && previous.size == size && previous.modified == modified) {
+        return previous;
+      }
+    }
+    ContentChunks chunks = split(path, size, modified);
+    if (previous != null) {
+      chunks.inheritDigests(previous);
+    }
+    synchronized (RECENT) {
+      RECENT.put(path, chunks);
+      if (RECENT.size() > REMEMBERED) {
+        Iterator<ContentChunks> eldest = RECENT.values().iterator();
+        eldest.next();
+        eldest.remove();
+      }
+    }
+    return chunks;
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public long modified() {
+    return modified;
+  }
+
+  public int count() {
+    return keys.length;
+  }
+
+  public long offset(int chunk) {
+    return offsets[chunk];
+  }
+
+  public long length(int chunk) {
+    return lengths[chunk];
+  }
+
+  public long key(int chunk) {
+    return keys[chunk];
+  }
+
+  // Hex SHA-256 over the SHA-256 of each chunk in order. It identifies the content as surely as a
+  // hash of the whole file, but only chunks that are new since the file's last chunking are read.
+  public synchronized String digest() throws IOException {
+    if (digest == null) {
+      MessageDigest whole = sha256();
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        for (int i = 0; i < keys.length; i++) {
+          byte[] chunk = digests.get(keys[i]);
+          if (chunk == null) {
+            chunk = chunkDigest(channel, offsets[i], lengths[i], buffer);
+            digests.put(keys[i], chunk);
+          }
+          whole.update(chunk);
+        }
+      }
+      StringBuilder hex = new StringBuilder();
+      for (byte b : whole.digest()) {
+        hex.append(String.format("%02x", b));
+      }
+      digest = hex.toString();
+    }
+    return digest;
+  }
+
+  private void inheritDigests(ContentChunks previous) {
+    synchronized (previous) {
+      synchronized (this) {
+        for (long key : keys) {
+          byte[] known = previous.digests.get(key);
+          if (known != null) {
+            digests.put(key, known);
+          }
+        }
+      }
+    }
+  }
+
+  private static byte[] chunkDigest(FileChannel channel, long offset, long length, ByteBuffer buffer)
+      throws IOException {
+    MessageDigest digest = sha256();
+    long position = offset;
+    long end = offset + length;
+    while (position < end) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), end - position));
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        throw new IOException("File shrank while it was being hashed");
+      }
+      position += read;
+      buffer.flip();
+      digest.update(buffer);
+    }
+    return digest.digest();
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is required by every Java runtime", e);
+    }
+  }
+
+  private static ContentChunks split(Path path, long size, long modified) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+      List<long[]> ranges = boundaries(channel, buffer);
+      long[] keys = new long[ranges.size()];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = contentKey(channel, ranges.get(i), buffer);
+      }
+      return new ContentChunks(path, size, modified, ranges, keys);
+    }
+  }
+
+  // Chunks end after a non-word byte where the rolling hash hits the mask. The gear hash only
+  // depends on the last 64 bytes, so rolling starts 64 bytes before a chunk could end and the
+  // boundaries come out exactly as if every byte had been rolled.
+  private static List<long[]> boundaries(FileChannel channel, ByteBuffer buffer) throws IOException {
+    List<long[]> ranges = new ArrayList<>();
+    byte[] bytes = buffer.array();
+    long position = 0;
+    long chunkStart = 0;
+    long rollFrom = MIN_CHUNK - 64;
+    long gear = 0;
+    int read;
+    buffer.clear();
+    while ((read = channel.read(buffer, position)) > 0) {
+      int i = (int) Math.max(0, Math.min(read, rollFrom - position));
+      while (i < read) {
+        boolean cut = false;
+        int forced = (int) Math.max(i, Math.min(read, chunkStart + MAX_CHUNK - 1 - position));
+        for (; i < forced; i++) { // Tight loop: roll and test the mask
+          gear = (gear << 1) + GEAR[bytes[i] & 0xff];
+          if ((gear & BOUNDARY_MASK) == 0 && !DataStorage.isWordByte(bytes[i])
+              && position + i + 1 - chunkStart >= MIN_CHUNK) {
+            cut = true;
+            break;
+          }
+        }
+        for (; !cut && i < read; i++) { // Past MAX_CHUNK: cut at the next word boundary
+          gear = (gear << 1) + GEAR[bytes[i] & 0xff];
+          cut = !DataStorage.isWordByte(bytes[i]);
+          if (cut) {
+            break;
+          }
+        }
+        if (cut) {
+          long end = position + i + 1;
+          ranges.add(new long[] { chunkStart, end - chunkStart });
+          chunkStart = end;
+          rollFrom = end + MIN_CHUNK - 64;
+          gear = 0;
+          i = (int) Math.max(i + 1, Math.min(read, rollFrom - position));
+        }
+      }
+      position += read;
+      buffer.clear();
+    }
+    if (position > chunkStart) {
+      ranges.add(new long[] { chunkStart, position - chunkStart });
+    }
+    return ranges;
+  }
+
+  // Hash of the chunk's bytes mixed with its length, eight bytes at a time
+  private static long contentKey(FileChannel channel, long[] range, ByteBuffer buffer) throws IOException {
+    long hash = range[1];
+    long position = range[0];
+    long end = range[0] + range[1];
+    while (position < end) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), end - position)); // Pieces stay multiples of 8 until the last
+      while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+        // Keep reading until the piece is complete
+      }
+      if (buffer.position() == 0) {
+        throw new IOException("File shrank while it was being hashed");
+      }
+      position += buffer.position();
+      buffer.flip();
+      while (buffer.remaining() >= 8) {
+        hash = Long.rotateLeft((hash ^ buffer.getLong()) * 0x9E3779B97F4A7C15L, 31);
+      }
+      while (buffer.hasRemaining()) {
+        hash = Long.rotateLeft((hash ^ buffer.get()) * 0x9E3779B97F4A7C15L, 31);
+      }
+    }
+    return hash ^ (hash >>> 29);
+  }
+
+  private static long[] gearTable() {
+    SplittableRandom random = new SplittableRandom(0x5EED); // Fixed: boundaries must not move between runs
+    long[] table = new long[256];
+    for (int i = 0; i < table.length; i++) {
+      table[i] = random.nextLong();
+    }
+    return table;
+  }
+}
@@ -2,15 +2,31 @@ package data;
 
 import javax.swing.*;
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 public class DataStorage {
+  private static final int READ_CHUNK = 1 << 20; // bytes read from the file per NIO call
+  private static final int MAX_WORD = 1 << 16; // longer runs of word bytes are not words worth counting
+
+  // Directory holding everything the planner persists between runs
+  public static Path appDirectory() {
+    return Paths.get(System.getProperty("studyplanner.home",
+        Paths.get(System.getProperty("user.home"), ".studyplanner").toString()));
+  }
 
   public File chooseFile(JFrame parentFrame) {
     final File[] selectedFile = new File[1]; // To store the selected file
 
     JFileChooser fileChooser = new JFileChooser();
     fileChooser.setDialogTitle("Select a Text File");
-    fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Text Files", "txt"));
+    fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Text Files and Question Banks",
+        "txt", QuestionBankFile.EXTENSION));
     parentFrame.setAlwaysOnTop(true);
 
     int userSelection = fileChooser.showOpenDialog(parentFrame);
@@ -22,4 +38,94 @@ public class DataStorage {
 
     return selectedFile[0];
   }
+
+  // Ask where to export a question bank; the extension is added when missing
+  public File chooseExportFile(JFrame parentFrame) {
+    JFileChooser fileChooser = new JFileChooser();
+    fileChooser.setDialogTitle("Export Question Bank");
+    fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Question Banks",
+        QuestionBankFile.EXTENSION));
+    if (fileChooser.showSaveDialog(parentFrame) != JFileChooser.APPROVE_OPTION) {
+      return null;
+    }
+    File file = fileChooser.getSelectedFile();
+    if (!file.getName().endsWith("." + QuestionBankFile.EXTENSION)) {
+      file = new File(file.getParentFile(), file.getName() + "." + QuestionBankFile.EXTENSION);
+    }
+    return file;
+  }
+
+  // Stream the words of a file to the visitor without loading the file, reading it in fixed-size
+  // chunks so heap use stays flat regardless of file size. A word is a run of ASCII letters,
+  // digits or underscores, which matches splitting the text on "\\W+".
+  public static void forEachWord(File file, WordVisitor visitor) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      forEachWord(channel, 0, channel.size(), visitor);
+    }
+  }
+
+  // Stream the words that start in [from, to). A word that starts before 'to' is read to its end,
+  // and the tail of a word that started before 'from' is skipped, so adjacent ranges split cleanly.
+  public static void forEachWord(FileChannel channel, long from, long to, WordVisitor visitor) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK);
+    byte[] chunk = buffer.array();
+    byte[] word = new byte[64];
+    int length = 0; // bytes of the current word so far
+    long wordStart = -1;
+    long position = from;
+    long size = channel.size();
+    boolean skipping = from > 0 && startsInsideWord(channel, from);
+    while (position < size) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        byte b = chunk[i];
+        if (skipping) {
+          if (isWordByte(b)) {
+            continue; // Still inside the word owned by the previous range
+          }
+          skipping = false;
+        }
+        if (isWordByte(b)) {
+          if (length == 0) {
+            if (position + i >= to) {
+              return; // The next word belongs to the following range
+            }
+            wordStart = position + i;
+          }
+          if (length == word.length && length < MAX_WORD) {
+            word = Arrays.copyOf(word, Math.min(MAX_WORD, length * 2));
+          }
+          if (length < word.length) {
+            word[length] = b;
+          }
+          length++;
+        } else if (length > 0) {
+          if (length <= MAX_WORD) {
+            visitor.word(word, length, wordStart);
+          }
+          length = 0;
+        } else if (position + i >= to) {
+          return;
+        }
+      }
+      position += read;
+    }
+    if (length > 0 && length <= MAX_WORD) {
+      visitor.word(word, length, wordStart);
+    }
+  }
+
+  private static boolean startsInsideWord(FileChannel channel, long position) throws IOException {
+    ByteBuffer previous = ByteBuffer.allocate(1);
+    return channel.read(previous, position - 1) == 1 && isWordByte(previous.get(0));
+  }
+
+  // Matches the regex word class \w: [a-zA-Z0-9_]
+  public static boolean isWordByte(byte b) {
+    return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_';
+  }
 }
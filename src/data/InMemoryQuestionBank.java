@@ -0,0 +1,42 @@
+package data;
+
+import java.util.List;
+import shared.Keyword;
+
+// A question bank held on the heap, as produced by the question generator
+public class InMemoryQuestionBank implements QuestionBank {
+  private final List<String> questions;
+  private final List<String> answers;
+  private final List<Keyword> keywords;
+
+  public InMemoryQuestionBank(List<String> questions, List<String> answers, List<Keyword> keywords) {
+    this.questions = List.copyOf(questions);
+    this.answers = List.copyOf(answers);
+    this.keywords = List.copyOf(keywords);
+  }
+
+  @Override
+  public int size() {
+    return questions.size();
+  }
+
+  @Override
+  public String question(int index) {
+    return questions.get(index);
+  }
+
+  @Override
+  public String answer(int index) {
+    return answers.get(index);
+  }
+
+  @Override
+  public int keywordCount() {
+    return keywords.size();
+  }
+
+  @Override
+  public Keyword keyword(int index) {
+    return keywords.get(index);
+  }
+}
@@ -0,0 +1,34 @@
+package data;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// One occurrence of a search term in a study file
+public class NoteHit {
+  private final Path file;
+  private final long offset;
+
+  public NoteHit(Path file, long offset) {
+    this.file = file;
+    this.offset = offset;
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  // Byte offset of the term in the file
+  public long getOffset() {
+    return offset;
+  }
+
+  // The sentence around the hit, read from the file on demand
+  public String sentence() throws IOException {
+    return NoteIndex.sentenceAround(file, offset);
+  }
+
+  @Override
+  public String toString() {
+    return file.getFileName() + "@" + offset;
+  }
+}
@@ -0,0 +1,604 @@
+package data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+import metrics.Histogram;
+import metrics.Metrics;
+import shared.Log;
+
+// Inverted index over every study file the planner has loaded, so questions can quote the
+// sentence a keyword came from and users can search their notes. Files are indexed by their
+// content-defined chunks (see ContentChunks): each distinct chunk gets an immutable segment named
+// after its content key, a sorted term dictionary followed by the offsets of each term's first
+// occurrences within the chunk. The catalog lists every file's chunks and where they start.
+// Segments are memory-mapped, so a lookup is a binary search over the mapped dictionaries and
+// nothing is rebuilt at launch; re-loading an unchanged file costs one stat, and saving an edited
+// file only indexes the chunks the edit touched.
+public class NoteIndex {
+  private static final Histogram INDEX_TIME = Metrics.timer("notes.index");
+  private static final NoteIndex SHARED = new NoteIndex(DataStorage.appDirectory().resolve("note-index"));
+  private static final int MAGIC = 0x4E495832; // "NIX2": one segment per chunk, chunk-relative offsets
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+  private static final int TERM_ENTRY = 4 + 4 + 4 + 4 + 8; // term offset, length, postings start, count, occurrences
+  private static final int MAX_POSTINGS = 64; // occurrences kept per term and chunk; counts stay exact
+  private static final int SENTENCE_WINDOW = 512; // bytes searched on each side of a hit for sentence ends
+
+  private final Path directory;
+  private final Path catalogFile;
+  private final Properties catalog = new Properties(); // path -> "size:mtime:key@offset,...", guarded by this
+  private final Map<Long, Segment> segments = new HashMap<>(); // mapped segments by chunk key, guarded by this
+
+  public NoteIndex(Path directory) {
+    this.directory = directory;
+    this.catalogFile = directory.resolve("chunks.properties");
+    dropWholeFileSegments();
+    if (Files.exists(catalogFile)) {
+      try (InputStream in = Files.newInputStream(catalogFile)) {
+        catalog.load(in);
+      } catch (IOException e) {
+        Log.warn("notes", "Ignoring unreadable note index catalog: " + e.getMessage());
+      }
+    }
+  }
+
+  public static NoteIndex shared() {
+    return SHARED;
+  }
+
+  // Index the file unless its current content is already indexed; only chunks no indexed file
+  // shares are tokenized
+  public void add(File file) throws IOException {
+    String path = file.getAbsolutePath();
+    synchronized (this) {
+      String entry = catalog.getProperty(path);
+      if (entry != null && entry.startsWith(file.length() + ":" + file.lastModified() + ":")) {
+        return;
+      }
+    }
+    ContentChunks chunks = ContentChunks.of(file);
+    StringBuilder entry = new StringBuilder().append(chunks.size()).append(':').append(chunks.modified()).append(':');
+    long start = System.nanoTime();
+    int indexed = 0;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      for (int i = 0; i < chunks.count(); i++) {
+        Path segmentFile = segmentFile(chunks.key(i));
+        if (!Files.exists(segmentFile)) {
+          Files.createDirectories(directory);
+          writeSegment(channel, chunks.offset(i), chunks.length(i), segmentFile); // Outside the lock
+          indexed++;
+        }
+        entry.append(i > 0 ? "," : "").append(Long.toHexString(chunks.key(i))).append('@').append(chunks.offset(i));
+      }
+    }
+    if (indexed > 0) {
+      INDEX_TIME.recordSince(start);
+    }
+    synchronized (this) {
+      String previous = catalog.getProperty(path);
+      catalog.setProperty(path, entry.toString());
+      if (previous != null) {
+        dropUnused(previous);
+      }
+      Path temp = Files.createTempFile(directory, "chunks", ".tmp");
+      try {
+        try (OutputStream out = Files.newOutputStream(temp)) {
+          catalog.store(out, "Indexed study files and their chunks");
+        }
+        Files.move(temp, catalogFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+  }
+
+  // Occurrences of every word of the query, in files containing all of them; at most limit hits.
+  // Hits are positions of the query's rarest word, which is the cheapest list to walk.
+  public List<NoteHit> search(String query, int limit) throws IOException {
+    List<byte[]> terms = terms(query);
+    List<NoteHit> hits = new ArrayList<>();
+    if (terms.isEmpty()) {
+      return hits;
+    }
+    synchronized (this) {
+      for (String path : catalog.stringPropertyNames()) {
+        if (hits.size() >= limit) {
+          break;
+        }
+        FileSegments file = freshSegments(path);
+        if (file != null) {
+          file.collect(terms, Paths.get(path), limit - hits.size(), hits);
+        }
+      }
+    }
+    return hits;
+  }
+
+  // Number of indexed, unchanged files
+  public synchronized int documentCount() throws IOException {
+    int count = 0;
+    for (String path : catalog.stringPropertyNames()) {
+      count += freshSegments(path) != null ? 1 : 0;
+    }
+    return count;
+  }
+
+  // For each word, the number of indexed, unchanged files that contain it
+  public synchronized int[] documentFrequencies(List<String> words) throws IOException {
+    List<byte[]> terms = new ArrayList<>(words.size());
+    for (String word : words) {
+      List<byte[]> split = terms(word);
+      terms.add(split.isEmpty() ? new byte[0] : split.get(0));
+    }
+    int[] frequencies = new int[terms.size()];
+    for (String path : catalog.stringPropertyNames()) {
+      FileSegments file = freshSegments(path);
+      for (int i = 0; file != null && i < terms.size(); i++) {
+        frequencies[i] += file.occurrences(terms.get(i)) > 0 ? 1 : 0;
+      }
+    }
+    return frequencies;
+  }
+
+  // The sentence a term first appears in within this file, or anywhere in the notes if the file
+  // is not indexed (e.g. it is an exported question bank); null when it appears nowhere
+  public String sourceSentence(File file, String term) throws IOException {
+    List<byte[]> terms = terms(term);
+    if (terms.isEmpty()) {
+      return null;
+    }
+    List<NoteHit> hits = new ArrayList<>(1);
+    synchronized (this) {
+      FileSegments segments = freshSegments(file.getAbsolutePath());
+      if (segments != null) {
+        segments.collect(terms, file.toPath(), 1, hits);
+      }
+    }
+    if (hits.isEmpty()) {
+      hits = search(term, 1);
+    }
+    return hits.isEmpty() ? null : hits.get(0).sentence();
+  }
+
+  // The sentence containing the byte at offset, with its whitespace collapsed
+  public static String sentenceAround(Path file, long offset) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long from = Math.max(0, offset - SENTENCE_WINDOW);
+      ByteBuffer window = ByteBuffer.allocate((int) Math.max(0, Math.min(2L * SENTENCE_WINDOW, channel.size() - from)));
+      while (window.hasRemaining() && channel.read(window, from + window.position()) > 0) {
+        // Keep reading until the window is full or the file ends
+      }
+      byte[] bytes = window.array();
+      int length = window.position();
+      int hit = (int) Math.min(offset - from, length);
+      int start = hit;
+      while (start > 0 && !endsSentence(bytes, start - 1)) {
+        start--;
+      }
+      int end = hit;
+      while (end < length && !endsSentence(bytes, end)) {
+        end++;
+      }
+      end = Math.min(length, end + 1); // Keep the full stop
+      return new String(bytes, start, end - start, StandardCharsets.UTF_8).replaceAll("\\s+", " ").trim();
+    }
+  }
+
+  private static boolean endsSentence(byte[] bytes, int i) {
+    byte b = bytes[i];
+    if (b == '.' || b == '!' || b == '?') {
+      return i + 1 >= bytes.length || bytes[i + 1] == ' ' || bytes[i + 1] == '\n' || bytes[i + 1] == '\r';
+    }
+    return b == '\n' && i + 1 < bytes.length && (bytes[i + 1] == '\n' || bytes[i + 1] == '\r'); // Paragraph break
+  }
+
+  // The query's words, lower-cased, split the same way DataStorage.forEachWord splits notes
+  private static List<byte[]> terms(String query) {
+    List<byte[]> terms = new ArrayList<>();
+    byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+    int start = -1;
+    for (int i = 0; i <= bytes.length; i++) {
+      if (i < bytes.length && DataStorage.isWordByte(bytes[i])) {
+        if (start < 0) {
+          start = i;
+        }
+      } else if (start >= 0) {
+        byte[] term = Arrays.copyOfRange(bytes, start, i);
+        lowerCase(term, term.length);
+        terms.add(term);
+        start = -1;
+      }
+    }
+    return terms;
+  }
+
+  private static void lowerCase(byte[] word, int length) {
+    for (int i = 0; i < length; i++) {
+      if (word[i] >= 'A' && word[i] <= 'Z') {
+        word[i] += 'a' - 'A';
+      }
+    }
+  }
+
+  // The mapped segments of a catalogued file's chunks, or null if the file changed since it was
+  // indexed or a segment is missing
+  private FileSegments freshSegments(String path) throws IOException {
+    String entry = catalog.getProperty(path);
+    if (entry == null) {
+      return null;
+    }
+    File file = new File(path);
+    if (!entry.startsWith(file.length() + ":" + file.lastModified() + ":")) {
+      return null; // Offsets would point at the wrong text; add() re-indexes it on the next load
+    }
+    String[] chunks = chunksOf(entry);
+    FileSegments result = new FileSegments(chunks.length);
+    for (int i = 0; i < chunks.length; i++) {
+      int at = chunks[i].indexOf('@');
+      long key = Long.parseUnsignedLong(chunks[i].substring(0, at), 16);
+      Segment segment = segments.get(key);
+      if (segment == null) {
+        Path segmentFile = segmentFile(key);
+        if (!Files.exists(segmentFile)) {
+          return null;
+        }
+        segment = Segment.map(segmentFile);
+        segments.put(key, segment);
+      }
+      result.offsets[i] = Long.parseLong(chunks[i].substring(at + 1));
+      result.segments[i] = segment;
+    }
+    return result;
+  }
+
+  // Delete the segments of a replaced catalog entry that no catalogued file uses any more
+  private void dropUnused(String previous) throws IOException {
+    Set<String> used = new HashSet<>();
+    for (String key : catalog.stringPropertyNames()) {
+      for (String chunk : chunksOf(catalog.getProperty(key))) {
+        used.add(chunk.substring(0, chunk.indexOf('@')));
+      }
+    }
+    for (String chunk : chunksOf(previous)) {
+      String key = chunk.substring(0, chunk.indexOf('@'));
+      if (!used.contains(key)) {
+        long id = Long.parseUnsignedLong(key, 16);
+        segments.remove(id);
+        Files.deleteIfExists(segmentFile(id));
+      }
+    }
+  }
+
+  private static String[] chunksOf(String entry) {
+    String list = entry.substring(entry.lastIndexOf(':') + 1);
+    return list.isEmpty() ? new String[0] : list.split(",");
+  }
+
+  private Path segmentFile(long key) {
+    return directory.resolve(Long.toHexString(key) + ".nidx");
+  }
+
+  // Segments of the old one-per-file layout are keyed by a different hash and never match a chunk
+  private void dropWholeFileSegments() {
+    Path oldCatalog = directory.resolve("files.properties");
+    if (!Files.exists(oldCatalog)) {
+      return;
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (file.getFileName().toString().endsWith(".nidx")) {
+          Files.deleteIfExists(file);
+        }
+      }
+      Files.deleteIfExists(oldCatalog);
+    } catch (IOException e) {
+      Log.warn("notes", "Cannot remove the old note index: " + e.getMessage());
+    }
+  }
+
+  private static void writeSegment(FileChannel channel, long from, long length, Path segmentFile) throws IOException {
+    TermTable table = new TermTable(from);
+    DataStorage.forEachWord(channel, from, from + length, table);
+    Integer[] order = new Integer[table.size];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Arrays.compare(
+        table.arena, table.termStart[a], table.termStart[a] + table.termLength[a],
+        table.arena, table.termStart[b], table.termStart[b] + table.termLength[b]));
+
+    // A temp file of its own, since the watcher and a session may index the same notes at once
+    Path temp = Files.createTempFile(segmentFile.getParent(), segmentFile.getFileName().toString(), ".tmp");
+    try {
+      writeSegment(table, order, temp);
+      if (Files.size(temp) > Integer.MAX_VALUE) {
+        throw new IOException("Note index segment too large for a chunk at " + from);
+      }
+      Files.move(temp, segmentFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static void writeSegment(TermTable table, Integer[] order, Path temp) throws IOException {
+    long termsOffset = HEADER_SIZE + (long) TERM_ENTRY * order.length;
+    long postingsOffset = termsOffset + table.arenaSize;
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(order.length);
+      out.writeLong(termsOffset);
+      out.writeLong(postingsOffset);
+      int termOffset = 0;
+      int postingsStart = 0;
+      for (int id : order) {
+        out.writeInt(termOffset);
+        out.writeInt(table.termLength[id]);
+        out.writeInt(postingsStart);
+        out.writeInt(table.postingCount(id));
+        out.writeLong(table.occurrences[id]);
+        termOffset += table.termLength[id];
+        postingsStart += table.postingCount(id);
+      }
+      for (int id : order) {
+        out.write(table.arena, table.termStart[id], table.termLength[id]);
+      }
+      for (int id : order) {
+        long[] postings = table.postings[id];
+        for (int i = 0; i < table.postingCount(id); i++) {
+          out.writeLong(postings[i]);
+        }
+      }
+    }
+  }
+
+  // A read-only mapped segment; absolute reads keep it safe to share
+  private static final class Segment {
+    private final MappedByteBuffer buffer;
+    private final int termCount;
+    private final int termsOffset;
+    private final int postingsOffset;
+
+    private Segment(MappedByteBuffer buffer) throws IOException {
+      this.buffer = buffer;
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not a note index segment");
+      }
+      this.termCount = buffer.getInt(4);
+      this.termsOffset = (int) buffer.getLong(8);
+      this.postingsOffset = (int) buffer.getLong(16);
+    }
+
+    static Segment map(Path file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        return new Segment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      }
+    }
+
+    // Occurrences of the term in the chunk, 0 if it has none
+    long occurrences(byte[] term) {
+      int entry = find(term);
+      return entry < 0 ? 0 : occurrences(entry);
+    }
+
+    // Add up to limit hits for the term, for a chunk starting at base in the file
+    void collect(byte[] term, Path file, long base, int limit, List<NoteHit> hits) {
+      int entry = find(term);
+      if (entry < 0) {
+        return;
+      }
+      int start = buffer.getInt(entryOffset(entry) + 8);
+      int count = Math.min(limit, buffer.getInt(entryOffset(entry) + 12));
+      for (int i = 0; i < count; i++) {
+        hits.add(new NoteHit(file, base + buffer.getLong(postingsOffset + (start + i) * 8)));
+      }
+    }
+
+    // Binary search of the sorted dictionary; returns the entry index or -1
+    private int find(byte[] term) {
+      int low = 0;
+      int high = termCount - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        int cmp = compare(middle, term);
+        if (cmp < 0) {
+          low = middle + 1;
+        } else if (cmp > 0) {
+          high = middle - 1;
+        } else {
+          return middle;
+        }
+      }
+      return -1;
+    }
+
+    private int compare(int entry, byte[] term) {
+      int offset = termsOffset + buffer.getInt(entryOffset(entry));
+      int length = buffer.getInt(entryOffset(entry) + 4);
+      int shared = Math.min(length, term.length);
+      for (int i = 0; i < shared; i++) {
+        int cmp = Byte.compare(buffer.get(offset + i), term[i]);
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      return Integer.compare(length, term.length);
+    }
+
+    private long occurrences(int entry) {
+      return buffer.getLong(entryOffset(entry) + 16);
+    }
+
+    private static int entryOffset(int entry) {
+      return HEADER_SIZE + entry * TERM_ENTRY;
+    }
+  }
+
+  // The segments of one file's chunks, in file order
+  private static final class FileSegments {
+    final long[] offsets; // where each chunk starts in the file
+    final Segment[] segments;
+
+    FileSegments(int chunks) {
+      this.offsets = new long[chunks];
+      this.segments = new Segment[chunks];
+    }
+
+    long occurrences(byte[] term) {
+      long total = 0;
+      for (Segment segment : segments) {
+        total += segment.occurrences(term);
+      }
+      return total;
+    }
+
+    // Add hits for the rarest of the terms, earliest first, if the file has all of them
+    void collect(List<byte[]> terms, Path file, int limit, List<NoteHit> hits) {
+      byte[] rarest = null;
+      long fewest = Long.MAX_VALUE;
+      for (byte[] term : terms) {
+        long count = occurrences(term);
+        if (count == 0) {
+          return;
+        }
+        if (count < fewest) {
+          rarest = term;
+          fewest = count;
+        }
+      }
+      int wanted = hits.size() + limit;
+      for (int i = 0; i < segments.length && hits.size() < wanted; i++) {
+        segments[i].collect(rarest, file, offsets[i], wanted - hits.size(), hits);
+      }
+    }
+  }
+
+  // Distinct lower-cased terms of one chunk with their counts and first MAX_POSTINGS offsets
+  // (relative to the chunk), kept in an open-addressing table over a byte arena so counting
+  // allocates per term, not per word
+  private static final class TermTable implements WordVisitor {
+    final long base; // file offset of the chunk
+    byte[] arena = new byte[1 << 16];
+    int arenaSize;
+    int[] termStart = new int[1024];
+    int[] termLength = new int[1024];
+    long[] occurrences = new long[1024];
+    long[][] postings = new long[1024][];
+    int size;
+    private int[] slots = filled(2048); // term id per slot, -1 when empty
+    private final byte[] lowered = new byte[1 << 16];
+
+    TermTable(long base) {
+      this.base = base;
+    }
+
+    @Override
+    public void word(byte[] word, int length, long offset) {
+      System.arraycopy(word, 0, lowered, 0, length);
+      lowerCase(lowered, length);
+      int id = intern(lowered, length);
+      long count = occurrences[id]++;
+      if (count < MAX_POSTINGS) {
+        long[] list = postings[id];
+        if (list == null) {
+          list = postings[id] = new long[4];
+        } else if (list.length == count) {
+          list = postings[id] = Arrays.copyOf(list, Math.min(MAX_POSTINGS, list.length * 2));
+        }
+        list[(int) count] = offset - base;
+      }
+    }
+
+    int postingCount(int id) {
+      return (int) Math.min(MAX_POSTINGS, occurrences[id]);
+    }
+
+    private int intern(byte[] word, int length) {
+      int hash = hash(word, length);
+      int mask = slots.length - 1;
+      for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+        int id = slots[slot];
+        if (id < 0) {
+          id = add(word, length);
+          slots[slot] = id;
+          if (size * 2 > slots.length) {
+            rehash();
+          }
+          return id;
+        }
+        if (termLength[id] == length
+            && Arrays.equals(arena, termStart[id], termStart[id] + length, word, 0, length)) {
+          return id;
+        }
+      }
+    }
+
+    private int add(byte[] word, int length) {
+      if (size == termStart.length) {
+        int capacity = size * 2;
+        termStart = Arrays.copyOf(termStart, capacity);
+        termLength = Arrays.copyOf(termLength, capacity);
+        occurrences = Arrays.copyOf(occurrences, capacity);
+        postings = Arrays.copyOf(postings, capacity);
+      }
+      if (arenaSize + length > arena.length) {
+        arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+      }
+      System.arraycopy(word, 0, arena, arenaSize, length);
+      termStart[size] = arenaSize;
+      termLength[size] = length;
+      arenaSize += length;
+      return size++;
+    }
+
+    private void rehash() {
+      slots = filled(slots.length * 2);
+      int mask = slots.length - 1;
+      for (int id = 0; id < size; id++) {
+        int slot = hash(arena, termStart[id], termLength[id]) & mask;
+        while (slots[slot] >= 0) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = id;
+      }
+    }
+
+    private static int hash(byte[] word, int length) {
+      return hash(word, 0, length);
+    }
+
+    private static int hash(byte[] bytes, int from, int length) {
+      int hash = 0x811c9dc5; // FNV-1a
+      for (int i = from; i < from + length; i++) {
+        hash = (hash ^ bytes[i]) * 0x01000193;
+      }
+      return hash ^ (hash >>> 16);
+    }
+
+    private static int[] filled(int length) {
+      int[] slots = new int[length];
+      Arrays.fill(slots, -1);
+      return slots;
+    }
+  }
+}
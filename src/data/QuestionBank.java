@@ -0,0 +1,18 @@
+package data;
+
+import shared.Keyword;
+
+// Questions generated from one study file, with their reference answers and the keyword stats
+// they were built from, read by index. Implementations are immutable, so cached banks can be
+// shared between sessions.
+public interface QuestionBank {
+  int size();
+
+  String question(int index);
+
+  String answer(int index);
+
+  int keywordCount();
+
+  Keyword keyword(int index);
+}
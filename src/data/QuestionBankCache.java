@@ -0,0 +1,246 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import metrics.Histogram;
+import metrics.Metrics;
+import shared.Log;
+
+// Caches generated question banks by a SHA-256 digest of the study file's content, so starting
+// another session on unchanged notes skips re-tokenizing them. A file whose size and modification
+// time are unchanged reuses its remembered hash instead of being read again; an edited file only
+// has its changed chunks hashed again (see ContentChunks.digest). Banks live in a small
+// in-memory LRU tier backed by an on-disk tier that survives restarts. The disk tier is bounded
+// in bytes (-Dstudyplanner.cache.maxBytes, 256 MB by default); a bank file's modification time
+// is bumped on every disk hit, so the least recently used banks are deleted first. Concurrent
+// misses on the same key (the notes watcher and a session starting) wait for one generation.
+public class QuestionBankCache {
+  private static final Histogram LOAD_TIME = Metrics.timer("questions.load"); // hits and misses alike
+  private static final QuestionBankCache SHARED = new QuestionBankCache(
+      DataStorage.appDirectory().resolve("question-banks"), 32,
+      Long.getLong("studyplanner.cache.maxBytes", 256L << 20));
+
+  // Produces a bank on a cache miss
+  public interface Generator {
+    QuestionBank generate(File file) throws IOException;
+  }
+
+  private final Path directory;
+  private final Path hashIndexFile;
+  private final long maxDiskBytes;
+  private final Map<String, QuestionBank> memory; // LRU order, guarded by this
+  private final Properties hashIndex = new Properties(); // path -> "size:mtime:hash", guarded by this
+  private final Map<String, CompletableFuture<QuestionBank>> loading = new ConcurrentHashMap<>(); // by key
+  private final AtomicLong memoryHits = new AtomicLong();
+  private final AtomicLong diskHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong diskEvictions = new AtomicLong();
+
+  public QuestionBankCache(Path directory, int memoryEntries, long maxDiskBytes) {
+    this.directory = directory;
+    this.hashIndexFile = directory.resolve("hashes.properties");
+    this.maxDiskBytes = maxDiskBytes;
+    this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, QuestionBank> eldest) {
+        if (size() > memoryEntries) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+    if (Files.exists(hashIndexFile)) {
+      try (InputStream in = Files.newInputStream(hashIndexFile)) {
+        hashIndex.load(in);
+      } catch (IOException e) {
+        Log.warn("questions", "Ignoring unreadable question bank index: " + e.getMessage());
+      }
+    }
+  }
+
+  public static QuestionBankCache shared() {
+    return SHARED;
+  }
+
+  // The bank for this file and variant (e.g. generator settings), generating it only on a miss
+  public QuestionBank get(File file, String variant, Generator generator) throws IOException {
+    long start = System.nanoTime();
+    QuestionBank bank = load(file, variant, generator);
+    LOAD_TIME.recordSince(start);
+    return bank;
+  }
+
+  private QuestionBank load(File file, String variant, Generator generator) throws IOException {
+    String key = contentHash(file) + "-" + variant;
+    synchronized (this) {
+      QuestionBank cached = memory.get(key);
+      if (cached != null) {
+        memoryHits.incrementAndGet();
+        return cached;
+      }
+    }
+    CompletableFuture<QuestionBank> mine = new CompletableFuture<>();
+    CompletableFuture<QuestionBank> theirs = loading.putIfAbsent(key, mine);
+    if (theirs != null) {
+      try {
+        return theirs.join(); // Another thread is already reading or generating this bank
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+        throw e;
+      }
+    }
+    try {
+      QuestionBank bank = loadFromDisk(file, key, generator);
+      mine.complete(bank);
+      return bank;
+    } catch (IOException | RuntimeException e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(key, mine); // Later callers find the bank in memory
+    }
+  }
+
+  // Read the bank from the disk tier, or generate and store it; put it in the memory tier
+  private QuestionBank loadFromDisk(File file, String key, Generator generator) throws IOException {
+    Path bankFile = directory.resolve(key + "." + QuestionBankFile.EXTENSION);
+    QuestionBank bank = null;
+    if (Files.exists(bankFile)) {
+      try {
+        bank = QuestionBankFile.open(bankFile); // Mapped, so a cached bank costs almost no heap
+        diskHits.incrementAndGet();
+        Files.setLastModifiedTime(bankFile, FileTime.fromMillis(System.currentTimeMillis())); // Most recently used
+      } catch (IOException e) {
+        Log.warn("questions", "Regenerating unreadable question bank: " + e.getMessage());
+      }
+    }
+    if (bank == null) {
+      misses.incrementAndGet();
+      bank = generator.generate(file);
+      Files.createDirectories(directory);
+      QuestionBankFile.write(bank, bankFile);
+      evictFromDisk(bankFile);
+    }
+    synchronized (this) {
+      memory.put(key, bank);
+    }
+    return bank;
+  }
+
+  // Digest of the file content, recomputed only when the file's size or modification time changed
+  public String contentHash(File file) throws IOException {
+    String path = file.getAbsolutePath();
+    String stamp = file.length() + ":" + file.lastModified() + ":";
+    synchronized (this) {
+      String remembered = hashIndex.getProperty(path);
+      if (remembered != null && remembered.startsWith(stamp)) {
+        return remembered.substring(stamp.length());
+      }
+    }
+    ContentChunks chunks = ContentChunks.of(file);
+    String hash = chunks.digest();
+    stamp = chunks.size() + ":" + chunks.modified() + ":";
+    synchronized (this) {
+      hashIndex.setProperty(path, stamp + hash);
+      Files.createDirectories(directory);
+      Path temp = Files.createTempFile(directory, "hashes", ".tmp");
+      try {
+        try (OutputStream out = Files.newOutputStream(temp)) {
+          hashIndex.store(out, "Study file content hashes");
+        }
+        Files.move(temp, hashIndexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+    return hash;
+  }
+
+  // Delete the least recently used bank files until the disk tier fits its budget again; the bank
+  // just written always stays. A deleted bank that is still mapped stays readable until unmapped.
+  private void evictFromDisk(Path keep) {
+    Map<Path, FileTime> used = new LinkedHashMap<>();
+    Map<Path, Long> sizes = new LinkedHashMap<>();
+    long total = 0;
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (file.getFileName().toString().endsWith("." + QuestionBankFile.EXTENSION)) {
+          used.put(file, Files.getLastModifiedTime(file));
+          sizes.put(file, Files.size(file));
+          total += sizes.get(file);
+        }
+      }
+    } catch (IOException e) {
+      Log.warn("questions", "Cannot list cached question banks: " + e.getMessage()); // Try again after the next miss
+      return;
+    }
+    List<Path> banks = new ArrayList<>(used.keySet());
+    banks.sort(Comparator.comparing(used::get));
+    for (Path bank : banks) {
+      if (total <= maxDiskBytes) {
+        break;
+      }
+      if (bank.equals(keep)) {
+        continue;
+      }
+      try {
+        Files.deleteIfExists(bank);
+        total -= sizes.get(bank);
+        diskEvictions.incrementAndGet();
+      } catch (IOException e) {
+        Log.warn("questions", "Cannot evict cached question bank " + bank.getFileName() + ": " + e.getMessage());
+      }
+    }
+  }
+
+  public long getMemoryHits() {
+    return memoryHits.get();
+  }
+
+  public long getDiskHits() {
+    return diskHits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  // Banks dropped from the in-memory tier
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  // Bank files deleted to keep the disk tier within its budget
+  public long getDiskEvictions() {
+    return diskEvictions.get();
+  }
+
+  @Override
+  public String toString() {
+    return "QuestionBankCache[memoryHits=" + memoryHits + ", diskHits=" + diskHits + ", misses=" + misses
+        + ", evictions=" + evictions + ", diskEvictions=" + diskEvictions + "]";
+  }
+}
@@ -0,0 +1,208 @@
+package data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import shared.Keyword;
+
+// Compact binary question bank file, memory-mapped and decoded lazily by index.
+//
+// Layout (big-endian):
+//   header   magic, version, question count, keyword count, string count,
+//            then the offsets of the string index, entry table and keyword table (longs)
+//   strings  every distinct string once, UTF-8
+//   index    per string: offset (long) and byte length (int)
+//   entries  per question: question string id, answer string id (ints)
+//   keywords per keyword: word string id (int), count (long)
+public final class QuestionBankFile {
+  public static final String EXTENSION = "qbank";
+
+  private static final int MAGIC = 0x51424B32; // "QBK2"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 5 * 4 + 3 * 8;
+  private static final int INDEX_ENTRY = 8 + 4;
+  private static final int QUESTION_ENTRY = 4 + 4;
+  private static final int KEYWORD_ENTRY = 4 + 8;
+
+  private QuestionBankFile() {
+  }
+
+  // Write the bank atomically; repeated strings (e.g. shared answers) are stored once
+  public static void write(QuestionBank bank, Path file) throws IOException {
+    Map<String, Integer> ids = new HashMap<>();
+    Path strings = Files.createTempFile(file.toAbsolutePath().getParent(), "qbank", ".strings");
+    Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      int[] entries = new int[bank.size() * 2];
+      int[] keywordIds = new int[bank.keywordCount()];
+      long stringBytes;
+      ByteBuffer index;
+      // First pass: intern the strings into a side file and build the index in memory
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(strings), 1 << 16))) {
+        ByteArrayIndex offsets = new ByteArrayIndex();
+        for (int i = 0; i < bank.size(); i++) {
+          entries[2 * i] = intern(bank.question(i), ids, out, offsets);
+          entries[2 * i + 1] = intern(bank.answer(i), ids, out, offsets);
+        }
+        for (int i = 0; i < keywordIds.length; i++) {
+          keywordIds[i] = intern(bank.keyword(i).getWord(), ids, out, offsets);
+        }
+        stringBytes = offsets.totalBytes;
+        index = offsets.toIndex(HEADER_SIZE);
+      }
+      long indexOffset = HEADER_SIZE + stringBytes;
+      long entriesOffset = indexOffset + (long) ids.size() * INDEX_ENTRY;
+      long keywordsOffset = entriesOffset + (long) bank.size() * QUESTION_ENTRY;
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(bank.size());
+        out.writeInt(keywordIds.length);
+        out.writeInt(ids.size());
+        out.writeLong(indexOffset);
+        out.writeLong(entriesOffset);
+        out.writeLong(keywordsOffset);
+        Files.copy(strings, out);
+        out.write(index.array(), 0, index.limit());
+        for (int entry : entries) {
+          out.writeInt(entry);
+        }
+        for (int i = 0; i < keywordIds.length; i++) {
+          out.writeInt(keywordIds[i]);
+          out.writeLong(bank.keyword(i).getCount());
+        }
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(strings);
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  // Map the file; nothing but the header is decoded until a question is asked for
+  public static QuestionBank open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Question bank larger than 2 GB: " + file);
+      }
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid after close
+      if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not a question bank: " + file);
+      }
+      if (buffer.getInt(4) != VERSION) {
+        throw new IOException("Unsupported question bank version " + buffer.getInt(4) + ": " + file);
+      }
+      return new MappedQuestionBank(buffer);
+    }
+  }
+
+  private static int intern(String value, Map<String, Integer> ids, DataOutputStream out, ByteArrayIndex offsets)
+      throws IOException {
+    Integer id = ids.get(value);
+    if (id != null) {
+      return id;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.write(bytes);
+    offsets.add(bytes.length);
+    ids.put(value, ids.size());
+    return ids.size() - 1;
+  }
+
+  // String index under construction: the byte length of each interned string, in id order
+  private static final class ByteArrayIndex {
+    private int[] lengths = new int[64];
+    private int count;
+    private long totalBytes;
+
+    void add(int length) {
+      if (count == lengths.length) {
+        lengths = Arrays.copyOf(lengths, count * 2);
+      }
+      lengths[count++] = length;
+      totalBytes += length;
+    }
+
+    ByteBuffer toIndex(long firstOffset) {
+      ByteBuffer index = ByteBuffer.allocate(count * INDEX_ENTRY);
+      long offset = firstOffset;
+      for (int i = 0; i < count; i++) {
+        index.putLong(offset).putInt(lengths[i]);
+        offset += lengths[i];
+      }
+      index.flip();
+      return index;
+    }
+  }
+
+  // Reads entries straight out of the mapped file; only the strings asked for are decoded
+  private static final class MappedQuestionBank implements QuestionBank {
+    private final ByteBuffer buffer;
+    private final int questionCount;
+    private final int keywordCount;
+    private final int indexOffset;
+    private final int entriesOffset;
+    private final int keywordsOffset;
+
+    MappedQuestionBank(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.questionCount = buffer.getInt(8);
+      this.keywordCount = buffer.getInt(12);
+      this.indexOffset = (int) buffer.getLong(20);
+      this.entriesOffset = (int) buffer.getLong(28);
+      this.keywordsOffset = (int) buffer.getLong(36);
+    }
+
+    @Override
+    public int size() {
+      return questionCount;
+    }
+
+    @Override
+    public String question(int index) {
+      return string(buffer.getInt(entriesOffset + checkIndex(index, questionCount) * QUESTION_ENTRY));
+    }
+
+    @Override
+    public String answer(int index) {
+      return string(buffer.getInt(entriesOffset + checkIndex(index, questionCount) * QUESTION_ENTRY + 4));
+    }
+
+    @Override
+    public int keywordCount() {
+      return keywordCount;
+    }
+
+    @Override
+    public Keyword keyword(int index) {
+      int position = keywordsOffset + checkIndex(index, keywordCount) * KEYWORD_ENTRY;
+      return new Keyword(string(buffer.getInt(position)), buffer.getLong(position + 4));
+    }
+
+    private String string(int id) {
+      int position = indexOffset + id * INDEX_ENTRY;
+      int offset = (int) buffer.getLong(position);
+      int length = buffer.getInt(position + 8);
+      byte[] bytes = new byte[length];
+      buffer.duplicate().position(offset).get(bytes); // Duplicate: absolute reads keep the bank thread-safe
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkIndex(int index, int size) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+      }
+      return index;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package data;
+
+// One graded answer read back from the review log
+public class ReviewEvent {
+  private final long deck;
+  private final int card;
+  private final long timestamp;
+  private final int latencyMillis;
+  private final boolean correct;
+  private final byte mode;
+
+  public ReviewEvent(long deck, int card, long timestamp, int latencyMillis, boolean correct, byte mode) {
+    this.deck = deck;
+    this.card = card;
+    this.timestamp = timestamp;
+    this.latencyMillis = latencyMillis;
+    this.correct = correct;
+    this.mode = mode;
+  }
+
+  public long getDeck() {
+    return deck;
+  }
+
+  public int getCard() {
+    return card;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public int getLatencyMillis() {
+    return latencyMillis;
+  }
+
+  public boolean isCorrect() {
+    return correct;
+  }
+
+  // ReviewLog.ACTIVE_RECALL or ReviewLog.SPACED_REPETITION
+  public byte getMode() {
+    return mode;
+  }
+}
@@ -0,0 +1,375 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import shared.Log;
+
+// Append-only log of every graded answer. Records are fixed-size and go into one segment file per
+// (UTC) month, so accuracy trends are a sequential scan over mapped segments and memory stays
+// bounded however many years of reviews pile up. Daily totals are rolled up per segment on first
+// use and reused until that segment grows, so trends over old months are free. Per-card history
+// goes through a card index next to each segment: the segment's record numbers grouped by a hash
+// of (deck, card), so a lookup reads a few dozen records per segment instead of all of them.
+// Records appended after the index was built are scanned until there are enough to rebuild it.
+public class ReviewLog {
+  public static final byte ACTIVE_RECALL = 1;
+  public static final byte SPACED_REPETITION = 2;
+  static final int RECORD_SIZE = 8 + 4 + 8 + 4 + 1 + 1; // deck, card, timestamp, latency, correct, mode
+  private static final int BUFFERED_RECORDS = 4096;
+  private static final long MAP_WINDOW = (long) RECORD_SIZE * (1 << 24); // whole records, under 2 GB
+  private static final String SEGMENT_PREFIX = "reviews-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String INDEX_SUFFIX = ".cards";
+  private static final int INDEX_MAGIC = 0x52434931; // "RCI1"
+  private static final int INDEX_HEADER = 4 + 8 + 4; // magic, records covered, bucket count
+  private static final int RECORDS_PER_BUCKET = 16; // on average, so a lookup reads few records
+  private static final int MAX_BUCKETS = 1 << 22;
+  private static final long MIN_UNINDEXED = 1 << 16; // records left to scan before an index is (re)built
+  private static ReviewLog shared;
+
+  // Visits one record of a mapped segment
+  private interface RecordVisitor {
+    void record(long deck, int card, long timestamp, int latencyMillis, boolean correct, byte mode);
+  }
+
+  private final Path directory;
+  private final ZoneId zone; // where days start and end for daily totals
+  private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * BUFFERED_RECORDS);
+  private YearMonth bufferedMonth; // segment the buffered records belong to
+  private final Map<YearMonth, Rollup> rollups = new HashMap<>(); // one small map per segment
+  private final Map<YearMonth, CardIndex> cardIndexes = new HashMap<>(); // mapped, per segment
+
+  public ReviewLog(Path directory, ZoneId zone) {
+    this.directory = directory;
+    this.zone = zone;
+  }
+
+  public static synchronized ReviewLog shared() {
+    if (shared == null) {
+      shared = new ReviewLog(DataStorage.appDirectory().resolve("reviews"), ZoneId.systemDefault());
+      Runtime.getRuntime().addShutdownHook(new Thread(shared::flushQuietly, "review-log-shutdown"));
+    }
+    return shared;
+  }
+
+  // A deck identified by its study file's absolute path (64-bit FNV-1a), so editing the notes
+  // keeps the deck and its history
+  public static long deckId(File studyFile) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : studyFile.toPath().toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8)) {
+      hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  // A card identified by its question text rather than its position in the question bank, so its
+  // history survives edits that add or remove other questions
+  public static int cardId(String question) {
+    return question.hashCode();
+  }
+
+  public synchronized void record(long deck, int card, long timestamp, int latencyMillis, boolean correct,
+      byte mode) throws IOException {
+    YearMonth month = YearMonth.from(Instant.ofEpochMilli(timestamp).atOffset(ZoneOffset.UTC));
+    if (!month.equals(bufferedMonth) || !buffer.hasRemaining()) {
+      flush();
+      bufferedMonth = month;
+    }
+    buffer.putLong(deck).putInt(card).putLong(timestamp).putInt(latencyMillis)
+        .put((byte) (correct ? 1 : 0)).put(mode);
+  }
+
+  // Write buffered records to their segment
+  public synchronized void flush() throws IOException {
+    if (buffer.position() == 0) {
+      return;
+    }
+    Files.createDirectories(directory);
+    try (FileChannel channel = FileChannel.open(segmentFile(bufferedMonth),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      long end = channel.size() - channel.size() % RECORD_SIZE; // Drop a torn record left by a crash
+      channel.truncate(end);
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        end += channel.write(buffer, end);
+      }
+    } finally {
+      buffer.clear();
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (IOException e) {
+      Log.warn("reviews", "Error writing review log: " + e.getMessage());
+    }
+  }
+
+  // Every graded answer to one card, oldest first
+  public synchronized List<ReviewEvent> history(long deck, int card) throws IOException {
+    flush();
+    List<ReviewEvent> events = new ArrayList<>();
+    RecordVisitor collect = (d, c, timestamp, latency, correct, mode) -> {
+      if (d == deck && c == card) {
+        events.add(new ReviewEvent(d, c, timestamp, latency, correct, mode));
+      }
+    };
+    ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    for (YearMonth month : segments()) {
+      Path file = segmentFile(month);
+      CardIndex index = cardIndex(month);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        long records = channel.size() / RECORD_SIZE;
+        long indexed = 0;
+        if (index != null) {
+          for (int recordNumber : index.candidates(deck, card)) {
+            record.clear();
+            while (record.hasRemaining()) {
+              if (channel.read(record, (long) recordNumber * RECORD_SIZE + record.position()) < 0) {
+                throw new IOException("Review log " + file + " shrank below its card index");
+              }
+            }
+            record.flip();
+            visit(record, collect);
+          }
+          indexed = index.records;
+        }
+        scan(channel, indexed, records, collect); // Appended since the index was built
+      }
+    }
+    return events;
+  }
+
+  // Totals per day for the days from..to (inclusive) that have any reviews
+  public synchronized SortedMap<LocalDate, ReviewTotals> dailyTotals(LocalDate from, LocalDate to)
+      throws IOException {
+    flush();
+    YearMonth first = YearMonth.from(from.atStartOfDay(zone).withZoneSameInstant(ZoneOffset.UTC));
+    YearMonth last = YearMonth.from(to.plusDays(1).atStartOfDay(zone).withZoneSameInstant(ZoneOffset.UTC));
+    SortedMap<LocalDate, ReviewTotals> totals = new TreeMap<>();
+    for (YearMonth month : segments()) {
+      if (month.isBefore(first) || month.isAfter(last)) {
+        continue;
+      }
+      // A UTC month can spill into neighbouring local days, so merge rather than copy
+      for (Map.Entry<LocalDate, ReviewTotals> day : rollup(month).subMap(from, to.plusDays(1)).entrySet()) {
+        totals.computeIfAbsent(day.getKey(), date -> new ReviewTotals()).addAll(day.getValue());
+      }
+    }
+    return totals;
+  }
+
+  // Totals over the days from..to (inclusive)
+  public ReviewTotals totals(LocalDate from, LocalDate to) throws IOException {
+    ReviewTotals totals = new ReviewTotals();
+    for (ReviewTotals day : dailyTotals(from, to).values()) {
+      totals.addAll(day);
+    }
+    return totals;
+  }
+
+  private SortedMap<LocalDate, ReviewTotals> rollup(YearMonth month) throws IOException {
+    Path file = segmentFile(month);
+    long size = Files.size(file);
+    Rollup rollup = rollups.get(month);
+    if (rollup == null || rollup.size != size) {
+      TreeMap<LocalDate, ReviewTotals> days = new TreeMap<>();
+      long[] dayStart = { Long.MAX_VALUE };
+      long[] dayEnd = { Long.MIN_VALUE };
+      ReviewTotals[] current = { null };
+      scan(file, (deck, card, timestamp, latency, correct, mode) -> {
+        if (timestamp < dayStart[0] || timestamp >= dayEnd[0]) {
+          // Records are mostly in time order, so the day only needs working out when it changes
+          LocalDate date = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+          dayStart[0] = date.atStartOfDay(zone).toInstant().toEpochMilli();
+          dayEnd[0] = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+          current[0] = days.computeIfAbsent(date, d -> new ReviewTotals());
+        }
+        current[0].add(correct, latency);
+      });
+      rollup = new Rollup(size, days);
+      rollups.put(month, rollup);
+    }
+    return rollup.days;
+  }
+
+  // The segment's card index, built or rebuilt when too many records are past it; null while the
+  // segment is small enough to scan
+  private CardIndex cardIndex(YearMonth month) throws IOException {
+    long records = Files.size(segmentFile(month)) / RECORD_SIZE;
+    CardIndex index = cardIndexes.get(month);
+    if (index == null) {
+      index = CardIndex.open(indexFile(month));
+    }
+    long indexed = index == null ? 0 : index.records;
+    if (records < indexed || records - indexed > Math.max(MIN_UNINDEXED, indexed / 8)) {
+      index = buildCardIndex(month, records);
+    }
+    if (index != null) {
+      cardIndexes.put(month, index);
+    }
+    return index;
+  }
+
+  // Two passes over the segment: count the records of each bucket, then write their record
+  // numbers bucket by bucket, in file order, into a mapped temp file moved into place
+  private CardIndex buildCardIndex(YearMonth month, long records) throws IOException {
+    int buckets = Integer.highestOneBit((int) Math.max(1, Math.min(MAX_BUCKETS, records / RECORDS_PER_BUCKET)));
+    if (INDEX_HEADER + 4L * (buckets + 1) + 4L * records > Integer.MAX_VALUE) {
+      return null; // Half a billion reviews in a month: keep scanning
+    }
+    int[] next = new int[buckets + 1];
+    try (FileChannel channel = FileChannel.open(segmentFile(month), StandardOpenOption.READ)) {
+      scan(channel, 0, records, (deck, card, timestamp, latency, correct, mode) ->
+          next[bucket(deck, card, buckets) + 1]++);
+      for (int b = 0; b < buckets; b++) {
+        next[b + 1] += next[b];
+      }
+      Path temp = Files.createTempFile(directory, SEGMENT_PREFIX + month, ".tmp");
+      try {
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+          int entries = INDEX_HEADER + 4 * (buckets + 1);
+          MappedByteBuffer map = out.map(FileChannel.MapMode.READ_WRITE, 0, entries + 4L * records);
+          map.putInt(INDEX_MAGIC).putLong(records).putInt(buckets);
+          for (int start : next) {
+            map.putInt(start);
+          }
+          int[] recordNumber = { 0 };
+          scan(channel, 0, records, (deck, card, timestamp, latency, correct, mode) ->
+              map.putInt(entries + 4 * next[bucket(deck, card, buckets)]++, recordNumber[0]++));
+          map.force();
+        }
+        Files.move(temp, indexFile(month), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+    return CardIndex.open(indexFile(month));
+  }
+
+  private static int bucket(long deck, int card, int buckets) {
+    long hash = (deck ^ card * 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+    return (int) (hash >>> 40) & (buckets - 1);
+  }
+
+  private static void scan(Path file, RecordVisitor visitor) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      scan(channel, 0, channel.size() / RECORD_SIZE, visitor);
+    }
+  }
+
+  // Visit records [from, to) of a segment
+  private static void scan(FileChannel channel, long from, long to, RecordVisitor visitor) throws IOException {
+    long end = to * RECORD_SIZE;
+    for (long position = from * RECORD_SIZE; position < end; position += MAP_WINDOW) {
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, end - position));
+      while (map.hasRemaining()) {
+        visit(map, visitor);
+      }
+    }
+  }
+
+  private static void visit(ByteBuffer record, RecordVisitor visitor) {
+    visitor.record(record.getLong(), record.getInt(), record.getLong(), record.getInt(), record.get() != 0,
+        record.get());
+  }
+
+  private TreeSet<YearMonth> segments() throws IOException {
+    TreeSet<YearMonth> months = new TreeSet<>();
+    if (!Files.isDirectory(directory)) {
+      return months;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+        SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        months.add(YearMonth.parse(name.substring(SEGMENT_PREFIX.length(),
+            name.length() - SEGMENT_SUFFIX.length())));
+      }
+    }
+    return months;
+  }
+
+  private Path segmentFile(YearMonth month) {
+    return directory.resolve(SEGMENT_PREFIX + month + SEGMENT_SUFFIX);
+  }
+
+  private Path indexFile(YearMonth month) {
+    return directory.resolve(SEGMENT_PREFIX + month + INDEX_SUFFIX);
+  }
+
+  // A segment's record numbers grouped by bucket of (deck, card); covers the first records records
+  private static final class CardIndex {
+    final long records;
+    private final int buckets;
+    private final MappedByteBuffer map;
+
+    private CardIndex(MappedByteBuffer map) {
+      this.map = map;
+      this.records = map.getLong(4);
+      this.buckets = map.getInt(12);
+    }
+
+    // The mapped index, or null if there is none or it is unreadable
+    static CardIndex open(Path file) throws IOException {
+      if (!Files.exists(file)) {
+        return null;
+      }
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (channel.size() < INDEX_HEADER || map.getInt(0) != INDEX_MAGIC
+            || channel.size() != INDEX_HEADER + 4L * (map.getInt(12) + 1) + 4L * map.getLong(4)) {
+          Log.warn("reviews", "Rebuilding unreadable card index " + file);
+          return null;
+        }
+        return new CardIndex(map);
+      }
+    }
+
+    // Record numbers that may belong to the card, in file order
+    int[] candidates(long deck, int card) {
+      int bucket = bucket(deck, card, buckets);
+      int start = map.getInt(INDEX_HEADER + 4 * bucket);
+      int end = map.getInt(INDEX_HEADER + 4 * (bucket + 1));
+      int entries = INDEX_HEADER + 4 * (buckets + 1);
+      int[] recordNumbers = new int[end - start];
+      for (int i = 0; i < recordNumbers.length; i++) {
+        recordNumbers[i] = map.getInt(entries + 4 * (start + i));
+      }
+      return recordNumbers;
+    }
+  }
+
+  // Daily totals of one segment, valid while the segment has the recorded size
+  private static final class Rollup {
+    final long size;
+    final TreeMap<LocalDate, ReviewTotals> days;
+
+    Rollup(long size, TreeMap<LocalDate, ReviewTotals> days) {
+      this.size = size;
+      this.days = days;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Ingests ten million graded answers spread over three years into a review log in a scratch
+// directory, then times the queries the planner makes: totals over the whole range (the first
+// query rolls up every segment, later ones reuse the rollups) and one card's history (the first
+// lookup builds every segment's card index, later ones read only the records the index points
+// at). Checks totals and a sample of card histories against counts kept during ingest, and that
+// answers appended after the indexes were built still show up. Fails if a warm card lookup takes
+// longer than the bound.
+//
+//   java data.ReviewLogBenchmark [events] [cards]
+public class ReviewLogBenchmark {
+  private static final int DECKS = 20;
+  private static final int SAMPLED_CARDS = 100;
+  private static final long MAX_LOOKUP_MILLIS = 20;
+
+  public static void main(String[] args) throws IOException {
+    long events = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+    int cards = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+    Path directory = Files.createTempDirectory("studyplanner-reviews");
+    ZoneId zone = ZoneId.systemDefault();
+    ReviewLog log = new ReviewLog(directory, zone);
+    long end = System.currentTimeMillis();
+    long start = end - TimeUnit.DAYS.toMillis(3 * 365);
+
+    SplittableRandom random = new SplittableRandom(14);
+    Map<Long, int[]> sampled = new HashMap<>(); // (deck, card) -> answers recorded
+    long[][] samples = new long[SAMPLED_CARDS][];
+    for (int i = 0; i < SAMPLED_CARDS; i++) {
+      samples[i] = new long[] { random.nextInt(DECKS), random.nextInt(cards) };
+      sampled.put(key(samples[i][0], (int) samples[i][1]), new int[1]);
+    }
+    long correct = 0;
+    long began = System.nanoTime();
+    for (long i = 0; i < events; i++) {
+      long deck = random.nextInt(DECKS);
+      int card = random.nextInt(cards);
+      boolean right = random.nextInt(4) != 0;
+      log.record(deck, card, start + (end - start) * i / events, 500 + random.nextInt(20_000), right,
+          ReviewLog.SPACED_REPETITION);
+      correct += right ? 1 : 0;
+      int[] count = sampled.get(key(deck, card));
+      if (count != null) {
+        count[0]++;
+      }
+    }
+    log.flush();
+    long ingest = System.nanoTime() - began;
+    System.out.printf("Ingest: %,d events in %,d ms (%,.0f per second), %,d MB on disk%n", events,
+        TimeUnit.NANOSECONDS.toMillis(ingest), events / (ingest / 1e9), sizeOf(directory, ".log") >> 20);
+
+    LocalDate from = LocalDate.now(zone).minusYears(4);
+    LocalDate to = LocalDate.now(zone).plusDays(1);
+    began = System.nanoTime();
+    ReviewTotals totals = log.totals(from, to);
+    long cold = System.nanoTime() - began;
+    began = System.nanoTime();
+    log.totals(from, to);
+    long warm = System.nanoTime() - began;
+    System.out.printf("Totals over three years: first %,.1f ms, then %,.2f ms; %,d reviews, %.1f%% correct%n",
+        cold / 1e6, warm / 1e6, totals.getReviews(), totals.accuracy());
+    check(totals.getReviews() == events && totals.getCorrect() == correct, "totals " + totals.getReviews() + "/"
+        + totals.getCorrect() + ", expected " + events + "/" + correct);
+
+    began = System.nanoTime();
+    checkHistory(log, samples[0], sampled);
+    long first = System.nanoTime() - began;
+    began = System.nanoTime();
+    for (long[] sample : samples) {
+      checkHistory(log, sample, sampled);
+    }
+    double lookup = (System.nanoTime() - began) / 1e6 / SAMPLED_CARDS;
+    System.out.printf("Card history: first %,.0f ms (builds the card indexes, %,d MB), then %.2f ms per card "
+        + "over %d cards%n", first / 1e6, sizeOf(directory, ".cards") >> 20, lookup, SAMPLED_CARDS);
+
+    // Answers newer than the indexes are found by scanning past them
+    long deck = samples[0][0];
+    int card = (int) samples[0][1];
+    int expected = sampled.get(key(deck, card))[0];
+    for (int i = 0; i < 1000; i++) {
+      log.record(deck, card, System.currentTimeMillis(), 1000, true, ReviewLog.ACTIVE_RECALL);
+      log.record(deck + 1, card, System.currentTimeMillis(), 1000, false, ReviewLog.ACTIVE_RECALL);
+    }
+    began = System.nanoTime();
+    checkHistory(log, deck, card, expected + 1000);
+    System.out.printf("After 2,000 more answers: %.2f ms for the card%n", (System.nanoTime() - began) / 1e6);
+
+    check(lookup <= MAX_LOOKUP_MILLIS, "a card lookup took " + lookup + " ms, more than " + MAX_LOOKUP_MILLIS);
+    System.out.println("OK");
+  }
+
+  private static void checkHistory(ReviewLog log, long[] sample, Map<Long, int[]> sampled) throws IOException {
+    checkHistory(log, sample[0], (int) sample[1], sampled.get(key(sample[0], (int) sample[1]))[0]);
+  }
+
+  // All of the card's answers, oldest first, and nobody else's
+  private static void checkHistory(ReviewLog log, long deck, int card, int expected) throws IOException {
+    List<ReviewEvent> history = log.history(deck, card);
+    check(history.size() == expected, "card " + card + " of deck " + deck + " has " + history.size()
+        + " answers in its history, expected " + expected);
+    for (int i = 0; i < history.size(); i++) {
+      ReviewEvent event = history.get(i);
+      check(event.getDeck() == deck && event.getCard() == card, "another card's answer in the history");
+      check(i == 0 || history.get(i - 1).getTimestamp() <= event.getTimestamp(), "history out of order");
+    }
+  }
+
+  private static long key(long deck, int card) {
+    return deck << 32 | (card & 0xffffffffL);
+  }
+
+  private static long sizeOf(Path directory, String suffix) throws IOException {
+    long total = 0;
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        total += file.toString().endsWith(suffix) ? Files.size(file) : 0;
+      }
+    }
+    return total;
+  }
+
+  private static void check(boolean condition, String failure) {
+    if (!condition) {
+      System.out.println("FAILED: " + failure);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package data;
+
+// Review counts aggregated over some period, e.g. one day of the review log
+public class ReviewTotals {
+  private long reviews;
+  private long correct;
+  private long totalLatencyMillis;
+
+  void add(boolean wasCorrect, int latencyMillis) {
+    reviews++;
+    correct += wasCorrect ? 1 : 0;
+    totalLatencyMillis += latencyMillis;
+  }
+
+  void addAll(ReviewTotals other) {
+    reviews += other.reviews;
+    correct += other.correct;
+    totalLatencyMillis += other.totalLatencyMillis;
+  }
+
+  public long getReviews() {
+    return reviews;
+  }
+
+  public long getCorrect() {
+    return correct;
+  }
+
+  // Percentage of correct answers, or 0 when there were no reviews
+  public double accuracy() {
+    return reviews == 0 ? 0 : (double) correct / reviews * 100;
+  }
+
+  public double averageLatencyMillis() {
+    return reviews == 0 ? 0 : (double) totalLatencyMillis / reviews;
+  }
+}
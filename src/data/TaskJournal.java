@@ -0,0 +1,366 @@
+package data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import shared.Log;
+import tasks.Task;
+import tasks.TaskListener;
+import tasks.TaskManager;
+
+// Persists tasks as an append-only journal of add/delete/status events plus a compacted snapshot.
+// Events are written by a background thread that group-commits whatever queued up during the
+// previous fsync, so a burst of UI edits costs one fsync rather than one each. Replaying an event
+// is idempotent, which lets a snapshot overlap the journal tail safely after a crash mid-compaction.
+// A batch that fails to commit is cut back off the file and retried, never dropped.
+public class TaskJournal implements TaskListener {
+  private static final int SNAPSHOT_MAGIC = 0x54534E50; // "TSNP"
+  private static final byte ADD = 1;
+  private static final byte DELETE = 2;
+  private static final byte STATUS = 3;
+  private static final int COMPACT_AFTER = 50_000; // journal records between snapshots
+  private static final long RETRY_MILLIS = 1000; // pause before retrying a batch that failed to commit
+  private static final Entry CLOSE = new Entry((byte) 0, 0, null, null, false); // tells the writer to stop
+
+  private final Path snapshotFile;
+  private final Path journalFile;
+  private final TaskManager taskManager;
+  private final BlockingQueue<Entry> pending = new LinkedBlockingQueue<>();
+  private final Thread writer;
+  private FileOutputStream journalStream;
+  private DataOutputStream journalOut;
+  private long committedLength; // journal bytes known to be complete records
+  private int recordsSinceSnapshot;
+  private volatile boolean closed;
+
+  private TaskJournal(Path directory, TaskManager taskManager) {
+    this.snapshotFile = directory.resolve("tasks.snapshot");
+    this.journalFile = directory.resolve("tasks.journal");
+    this.taskManager = taskManager;
+    this.writer = new Thread(this::writeLoop, "task-journal");
+    this.writer.setDaemon(true);
+  }
+
+  // Load the persisted tasks into the manager, then journal every later change
+  public static TaskJournal open(Path directory, TaskManager taskManager) throws IOException {
+    Files.createDirectories(directory);
+    TaskJournal journal = new TaskJournal(directory, taskManager);
+    long start = System.nanoTime();
+    int restored = journal.replay();
+    Log.info("journal", "Loaded " + restored + " tasks in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    journal.openJournal(true);
+    taskManager.addTaskListener(journal);
+    journal.writer.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "task-journal-shutdown"));
+    return journal;
+  }
+
+  @Override
+  public void taskAdded(Task task) {
+    enqueue(new Entry(ADD, task.getId(), task.getName(), task.getDueDate(), task.isCompleted()));
+  }
+
+  @Override
+  public void taskDeleted(Task task) {
+    enqueue(new Entry(DELETE, task.getId(), null, null, false));
+  }
+
+  @Override
+  public void taskStatusChanged(Task task, boolean completed) {
+    enqueue(new Entry(STATUS, task.getId(), null, null, completed));
+  }
+
+  private void enqueue(Entry entry) {
+    if (!closed) {
+      pending.offer(entry);
+    }
+  }
+
+  // Flush everything queued so far and stop the writer
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    pending.offer(CLOSE); // Not an interrupt: that would close the FileChannel mid-write
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt(); // Restore interrupted status
+    }
+  }
+
+  private void writeLoop() {
+    List<Entry> batch = new ArrayList<>();
+    boolean closing = false;
+    while (true) {
+      try {
+        // A batch that failed to commit is kept and retried together with newer events
+        Entry next = batch.isEmpty() ? pending.take() : pending.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+        if (next != null) {
+          batch.add(next);
+        }
+      } catch (InterruptedException e) {
+        continue; // Only CLOSE stops the writer
+      }
+      pending.drainTo(batch);
+      closing |= batch.remove(CLOSE);
+      try {
+        if (!batch.isEmpty()) {
+          commit(batch);
+          batch.clear();
+        }
+        if (recordsSinceSnapshot >= COMPACT_AFTER) {
+          compact();
+        }
+      } catch (IOException e) {
+        Log.warn("journal", "Error writing task journal: " + e.getMessage());
+        if (closing && !batch.isEmpty()) {
+          Log.warn("journal", batch.size() + " task changes were not saved.");
+          batch.clear();
+        }
+      }
+      if (closing && batch.isEmpty()) {
+        closeJournal();
+        return;
+      }
+    }
+  }
+
+  // Encode the whole batch before writing any of it, so a record that cannot be encoded never
+  // leaves part of itself in the file
+  private void commit(List<Entry> batch) throws IOException {
+    List<byte[]> records = new ArrayList<>(batch.size());
+    for (Iterator<Entry> entries = batch.iterator(); entries.hasNext();) {
+      Entry entry = entries.next();
+      try {
+        records.add(entry.encode());
+      } catch (UTFDataFormatException e) {
+        Log.warn("journal", "Not saving task " + entry.id + ": " + e.getMessage());
+        entries.remove(); // Would fail the same way on every retry
+      }
+    }
+    long length = 0;
+    try {
+      for (byte[] record : records) {
+        journalOut.write(record);
+        length += record.length;
+      }
+      journalOut.flush();
+      journalStream.getChannel().force(false); // One fsync for the whole batch
+    } catch (IOException e) {
+      rollBack();
+      throw e;
+    }
+    committedLength += length;
+    recordsSinceSnapshot += records.size();
+  }
+
+  // Cut off whatever part of a failed batch reached the file and drop the rest still buffered,
+  // so the retry starts right after the last complete record
+  private void rollBack() {
+    try {
+      journalStream.getChannel().truncate(committedLength);
+      journalStream.close(); // Not journalOut: closing that would flush the buffered bytes first
+    } catch (IOException e) {
+      Log.warn("journal", "Error rolling back task journal: " + e.getMessage());
+    }
+    try {
+      openJournal(true);
+    } catch (IOException e) {
+      Log.warn("journal", "Error reopening task journal: " + e.getMessage());
+    }
+  }
+
+  // Write a snapshot of the current tasks and start a fresh journal
+  private void compact() throws IOException {
+    List<Task> tasks = taskManager.getTasks();
+    Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+    try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(tasks.size());
+      for (Task task : tasks) {
+        out.writeLong(task.getId());
+        out.writeUTF(task.getName());
+        out.writeLong(task.getDueDate().toEpochDay());
+        out.writeBoolean(task.isCompleted());
+      }
+      out.flush();
+      stream.getChannel().force(true);
+    }
+    Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    // Events committed after the snapshot was taken are in both files; replay tolerates that
+    closeJournal();
+    openJournal(false);
+    recordsSinceSnapshot = 0;
+  }
+
+  private int replay() throws IOException {
+    Map<Long, Entry> state = new LinkedHashMap<>();
+    if (Files.exists(snapshotFile)) {
+      try (DataInputStream in = openInput(snapshotFile)) {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+          throw new IOException("Not a task snapshot: " + snapshotFile);
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+          long id = in.readLong();
+          state.put(id, new Entry(ADD, id, in.readUTF(), LocalDate.ofEpochDay(in.readLong()), in.readBoolean()));
+        }
+      }
+    }
+    if (Files.exists(journalFile)) {
+      long validLength = 0;
+      long size = Files.size(journalFile);
+      try (DataInputStream in = openInput(journalFile)) {
+        while (validLength < size) {
+          Entry entry;
+          try {
+            entry = Entry.readFrom(in);
+          } catch (EOFException e) {
+            break; // Torn write at the tail from a crash; drop it
+          }
+          entry.applyTo(state);
+          validLength += entry.encodedLength();
+          recordsSinceSnapshot++;
+        }
+      }
+      try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+        channel.truncate(validLength);
+      }
+    }
+    for (Entry entry : state.values()) {
+      taskManager.restoreTask(entry.id, entry.name, entry.dueDate, entry.completed);
+    }
+    return state.size();
+  }
+
+  private static DataInputStream openInput(Path file) throws IOException {
+    InputStream stream = Files.newInputStream(file);
+    return new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+  }
+
+  private void openJournal(boolean append) throws IOException {
+    journalStream = new FileOutputStream(journalFile.toFile(), append);
+    journalOut = new DataOutputStream(new BufferedOutputStream(journalStream, 1 << 16));
+    committedLength = journalStream.getChannel().size();
+  }
+
+  private void closeJournal() {
+    try {
+      journalOut.close();
+    } catch (IOException e) {
+      Log.warn("journal", "Error closing task journal: " + e.getMessage());
+    }
+  }
+
+  // One journal record; ADD records double as snapshot rows during replay
+  private static final class Entry {
+    final byte type;
+    final long id;
+    final String name;
+    final LocalDate dueDate;
+    boolean completed;
+    private int encodedLength;
+
+    Entry(byte type, long id, String name, LocalDate dueDate, boolean completed) {
+      this.type = type;
+      this.id = id;
+      this.name = name;
+      this.dueDate = dueDate;
+      this.completed = completed;
+    }
+
+    // Throws UTFDataFormatException for a name over 64 KB of modified UTF-8
+    byte[] encode() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(type == ADD ? 32 + name.length() : 16);
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeByte(type);
+      out.writeLong(id);
+      if (type == ADD) {
+        out.writeUTF(name);
+        out.writeLong(dueDate.toEpochDay());
+        out.writeBoolean(completed);
+      } else if (type == STATUS) {
+        out.writeBoolean(completed);
+      }
+      return bytes.toByteArray();
+    }
+
+    static Entry readFrom(DataInputStream in) throws IOException {
+      byte type = in.readByte();
+      long id = in.readLong();
+      Entry entry;
+      int length = 1 + 8;
+      if (type == ADD) {
+        String name = in.readUTF();
+        entry = new Entry(type, id, name, LocalDate.ofEpochDay(in.readLong()), in.readBoolean());
+        length += 2 + utfLength(name) + 8 + 1;
+      } else if (type == STATUS) {
+        entry = new Entry(type, id, null, null, in.readBoolean());
+        length += 1;
+      } else if (type == DELETE) {
+        entry = new Entry(type, id, null, null, false);
+      } else {
+        throw new EOFException("Unknown journal record type " + type); // Treat as a torn tail
+      }
+      entry.encodedLength = length;
+      return entry;
+    }
+
+    int encodedLength() {
+      return encodedLength;
+    }
+
+    void applyTo(Map<Long, Entry> state) {
+      if (type == ADD) {
+        state.put(id, this);
+      } else if (type == DELETE) {
+        state.remove(id);
+      } else {
+        Entry existing = state.get(id);
+        if (existing != null) {
+          existing.completed = completed;
+        }
+      }
+    }
+
+    // Byte length of a string in DataOutputStream's modified UTF-8
+    private static int utfLength(String value) {
+      int length = 0;
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c >= 0x0001 && c <= 0x007F) {
+          length += 1;
+        } else if (c <= 0x07FF) {
+          length += 2;
+        } else {
+          length += 3;
+        }
+      }
+      return length;
+    }
+  }
+}
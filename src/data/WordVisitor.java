@@ -0,0 +1,8 @@
+package data;
+
+// Receives the words of a file one at a time from DataStorage.forEachWord. The byte array is a
+// reused scratch buffer: only the first length bytes are the word, and they are only valid
+// for the duration of the call.
+public interface WordVisitor {
+  void word(byte[] word, int length, long offset);
+}
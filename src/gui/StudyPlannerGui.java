@@ -5,13 +5,31 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import analytics.RollingWindow;
+import analytics.Rollup;
+import analytics.StudyAnalytics;
+import timer.PomodoroProfile;
 import timer.PomodoroTimer;
+import timer.TimerState;
+import timer.TimerStateWriter;
 import recall_techniques.SpacedRepetition;
 import recall_techniques.ActiveRecall;
+import recall_techniques.QuizResult;
+import tasks.Task;
 import tasks.TaskManager;
 import data.DataStorage;
+import data.NoteHit;
+import data.NoteIndex;
+import data.QuestionBank;
+import data.QuestionBankFile;
+import data.TaskJournal;
 import shared.*;
 
 public class StudyPlannerGui {
@@ -20,9 +38,11 @@ public class StudyPlannerGui {
   private JPanel mainPanel;
   private TaskManager taskManager;
   private PomodoroTimer pomodoroTimer;
+  private List<PomodoroProfile> pomodoroProfiles;
   private File selectedFile;
   private SpacedRepetition spacedRepetition;
   private ActiveRecall activeRecall;
+  private SessionExecutor sessionExecutor; // Runs and tracks spaced repetition and active recall sessions
   private JTextArea questionArea;
   private JTextField answerField;
   private JLabel timerLabel;
@@ -40,8 +60,16 @@ public class StudyPlannerGui {
     frame.setLayout(new BorderLayout());
 
     taskManager = new TaskManager();
-    pomodoroTimer = new PomodoroTimer(25 * 60, 5 * 60, 30 * 60, 4); // 25 mins work, 5 mins short break, 30 mins long
-                                                                    // break
+    try {
+      TaskJournal.open(DataStorage.appDirectory(), taskManager); // Restore saved tasks and persist changes
+    } catch (IOException e) {
+      Log.warn("gui", "Error loading saved tasks: " + e.getMessage());
+    }
+    taskManager.addTaskListener(StudyAnalytics.shared()); // Count completed tasks
+    long loadStart = System.nanoTime();
+    TimerState savedTimer = loadPomodoro(); // Profiles and the state of an interrupted run
+    long loadNanos = System.nanoTime() - loadStart;
+    sessionExecutor = SessionExecutor.create();
 
     // Main panel with CardLayout
     cardLayout = new CardLayout();
@@ -55,9 +83,38 @@ public class StudyPlannerGui {
     setupActiveRecallTab();
     setupTaskSchedulerTab();
 
+    long restoreStart = System.nanoTime();
+    if (savedTimer != null) {
+      pomodoroTimer.restore(savedTimer); // Continue where the last run stopped
+    }
+    long restoreNanos = System.nanoTime() - restoreStart;
+    Log.info("gui", String.format("Restored Pomodoro state in %.2f ms (%.2f ms reading profiles and state).",
+        (loadNanos + restoreNanos) / 1e6, loadNanos / 1e6));
+
     frame.setVisible(true);
   }
 
+  // Load the profiles, create the timer from the saved state's profile and save every transition
+  private TimerState loadPomodoro() {
+    Path directory = DataStorage.appDirectory();
+    Path stateFile = directory.resolve("pomodoro.state");
+    TimerState saved = null;
+    try {
+      pomodoroProfiles = PomodoroProfile.loadAll(directory.resolve("pomodoro-profiles.properties"));
+      saved = TimerState.read(stateFile);
+    } catch (IOException e) {
+      Log.warn("gui", "Error loading Pomodoro settings: " + e.getMessage());
+    }
+    if (pomodoroProfiles == null || pomodoroProfiles.isEmpty()) {
+      pomodoroProfiles = List.of(new PomodoroProfile("Classic", 25 * 60, 5 * 60, 30 * 60, 4));
+    }
+    pomodoroTimer = new PomodoroTimer(
+        PomodoroProfile.named(pomodoroProfiles, saved == null ? "" : saved.getProfileName()));
+    pomodoroTimer.setPhaseListener(StudyAnalytics.shared()::recordPhase); // Count pomodoros and breaks
+    pomodoroTimer.setStateListener(new TimerStateWriter(stateFile)); // Written off the timer thread
+    return saved;
+  }
+
   private void setupHomePage() {
     JPanel homePanel = new JPanel();
     homePanel.setLayout(new BorderLayout());
@@ -72,6 +129,7 @@ public class StudyPlannerGui {
     JButton spacedRepetitionButton = new JButton("Spaced Repetition");
     JButton activeRecallButton = new JButton("Active Recall");
     JButton taskSchedulerButton = new JButton("Task Scheduler");
+    JButton statsButton = new JButton("Stats");
 
     // Action listeners for buttons
     pomodoroButton.addActionListener(e -> cardLayout.show(mainPanel, "Pomodoro")); // Switch to Pomodoro panel
@@ -86,6 +144,8 @@ public class StudyPlannerGui {
     buttonPanel.add(spacedRepetitionButton);
     buttonPanel.add(activeRecallButton);
     buttonPanel.add(taskSchedulerButton);
+    statsButton.addActionListener(e -> showStats());
+    buttonPanel.add(statsButton);
     homePanel.add(buttonPanel, BorderLayout.SOUTH);
 
     mainPanel.add(homePanel, "Home");
@@ -94,14 +154,18 @@ public class StudyPlannerGui {
   // Pomodoro Tab setup
   private void setupPomodoroTab() {
     JPanel pomodoroPanel = new JPanel();
-    JLabel timeLabel = new JLabel("25:00", SwingConstants.CENTER);
+    PomodoroProfile selectedProfile = PomodoroProfile.named(pomodoroProfiles, pomodoroTimer.state().getProfileName());
+    JLabel timeLabel = new JLabel(formatSeconds(selectedProfile.getWorkSeconds()), SwingConstants.CENTER);
     timeLabel.setFont(new Font("Serif", Font.BOLD, 48));
 
     JButton startButton = new JButton("Start");
     JButton pauseButton = new JButton("Pause");
     JButton resetButton = new JButton("Reset");
     JButton backButton = new JButton("Back to Home");
+    JComboBox<PomodoroProfile> profileBox = new JComboBox<>(pomodoroProfiles.toArray(new PomodoroProfile[0]));
+    profileBox.setSelectedItem(selectedProfile);
 
+    pomodoroPanel.add(profileBox);
     pomodoroPanel.add(timeLabel);
     pomodoroPanel.add(startButton);
     pomodoroPanel.add(pauseButton);
@@ -113,9 +177,11 @@ public class StudyPlannerGui {
     // Timer Logic
     startButton.addActionListener(e -> {
       if (!pomodoroTimer.isRunning()) {
-        new Thread(pomodoroTimer).start(); // Start the timer in a separate thread
-        pomodoroTimer.start();
+        pomodoroTimer.start(); // Phases are driven by the shared timing engine, no thread needed
         JOptionPane.showMessageDialog(frame, "Pomodoro timer started.");
+      } else if (pomodoroTimer.isPaused()) {
+        pomodoroTimer.resume();
+        JOptionPane.showMessageDialog(frame, "Pomodoro timer resumed.");
       }
     });
 
@@ -128,17 +194,75 @@ public class StudyPlannerGui {
 
     resetButton.addActionListener(e -> {
       pomodoroTimer.reset();
-      timeLabel.setText("25:00");
+      timeLabel.setText(formatSeconds(((PomodoroProfile) profileBox.getSelectedItem()).getWorkSeconds()));
       JOptionPane.showMessageDialog(frame, "Pomodoro timer reset.");
     });
 
     backButton.addActionListener(e -> cardLayout.show(mainPanel, "Home")); // Back to Home
 
-    pomodoroTimer.addTimerListener(remainingTime -> {
-      int minutes = remainingTime / 60;
-      int seconds = remainingTime % 60;
-      timeLabel.setText(String.format("%02d:%02d", minutes, seconds));
+    profileBox.addActionListener(e -> {
+      PomodoroProfile profile = (PomodoroProfile) profileBox.getSelectedItem();
+      if (profile.getName().equals(pomodoroTimer.state().getProfileName())) {
+        return; // Already in use, e.g. the selection was just reverted
+      }
+      if (pomodoroTimer.applyProfile(profile)) {
+        timeLabel.setText(formatSeconds(profile.getWorkSeconds()));
+      } else {
+        JOptionPane.showMessageDialog(frame, "Reset the timer before switching profiles.");
+        profileBox.setSelectedItem(PomodoroProfile.named(pomodoroProfiles, pomodoroTimer.state().getProfileName()));
+      }
     });
+
+    pomodoroTimer.addTimerListener(remainingTime -> timeLabel.setText(formatSeconds(remainingTime)),
+        SwingUtilities::invokeLater); // Label updates belong on the EDT
+  }
+
+  // Study statistics, read from the pre-aggregated analytics state
+  private void showStats() {
+    StudyAnalytics analytics = StudyAnalytics.shared();
+    LocalDate today = LocalDate.now();
+    StringBuilder stats = new StringBuilder();
+    stats.append("Today: ").append(describe(analytics.day(today))).append("\n");
+    stats.append("This week: ").append(describe(analytics.week(today))).append("\n");
+    stats.append("This month: ").append(describe(analytics.month(today))).append("\n");
+    stats.append("Last 30 days: ").append(describe(analytics.between(today.minusDays(29), today))).append("\n\n");
+
+    stats.append("Weekly answers:\n");
+    for (int i = 7; i >= 0; i--) {
+      LocalDate week = today.minusWeeks(i);
+      Rollup rollup = analytics.week(week);
+      stats.append(String.format("  %s  %4d answers  %5.1f%% correct  %3d pomodoros%n",
+          RollingWindow.Period.WEEK.start(week), rollup.get(Rollup.Counter.ANSWERS), rollup.accuracy(),
+          rollup.get(Rollup.Counter.POMODOROS)));
+    }
+
+    Rollup allTime = analytics.allTime();
+    stats.append("\nAll time: ").append(describe(allTime)).append("\n");
+    stats.append(String.format("Answer time: median %.1f s, 90th percentile %.1f s%n",
+        allTime.latencyPercentile(50) / 1000.0, allTime.latencyPercentile(90) / 1000.0));
+
+    stats.append("\nBy subject:\n");
+    for (Map.Entry<String, Rollup> subject : analytics.subjects().entrySet()) {
+      Rollup rollup = subject.getValue();
+      stats.append(String.format("  %s: %d answers, %.1f%% correct, median %.1f s%n", subject.getKey(),
+          rollup.get(Rollup.Counter.ANSWERS), rollup.accuracy(), rollup.latencyPercentile(50) / 1000.0));
+    }
+
+    JTextArea statsArea = new JTextArea(stats.toString(), 24, 70);
+    statsArea.setEditable(false);
+    statsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    JOptionPane.showMessageDialog(frame, new JScrollPane(statsArea), "Study Stats", JOptionPane.PLAIN_MESSAGE);
+  }
+
+  private static String describe(Rollup rollup) {
+    return String.format("%d pomodoros (%d abandoned), %d breaks (%d skipped), %d answers (%.1f%% correct), "
+        + "%d tasks completed", rollup.get(Rollup.Counter.POMODOROS), rollup.get(Rollup.Counter.POMODOROS_ABANDONED),
+        rollup.get(Rollup.Counter.BREAKS_TAKEN), rollup.get(Rollup.Counter.BREAKS_SKIPPED),
+        rollup.get(Rollup.Counter.ANSWERS), rollup.accuracy(), rollup.get(Rollup.Counter.TASKS_COMPLETED));
+  }
+
+  private static String formatSeconds(int totalSeconds) {
+    return String.format("%02d:%02d", totalSeconds / 60, totalSeconds % 60);
   }
 
   // Spaced Repetition Tab setup
@@ -169,6 +293,7 @@ public class StudyPlannerGui {
     pauseButton.setEnabled(false);
     resetButton.setEnabled(false);
     submitAnswerButton.setEnabled(false);
+    answerField.setEnabled(false); // Until a question is on display
 
     // Panel for answer input
     JPanel answerPanel = new JPanel(new BorderLayout());
@@ -196,7 +321,10 @@ public class StudyPlannerGui {
     mainPanel.add(spacedRepetitionPanel, "SpacedRepetition");
 
     // Action listener for the back button
-    backButton.addActionListener(e -> cardLayout.show(mainPanel, "Home")); // Back to Home
+    backButton.addActionListener(e -> {
+      sessionExecutor.cancel("SpacedRepetition"); // Stop the running session when leaving the tab
+      cardLayout.show(mainPanel, "Home"); // Back to Home
+    });
 
     // DataStorage instance for loading files
     DataStorage dataStorage = new DataStorage();
@@ -222,23 +350,26 @@ public class StudyPlannerGui {
       if (selectedFile != null && selectedFile.exists()) {
         // Create SpacedRepetition instance, passing the DisplayUpdater
         spacedRepetition = new SpacedRepetition(selectedFile, displayUpdater);
-
-        // Start the session in a new thread to avoid blocking the GUI
-        new Thread(() -> {
-          spacedRepetition.startSpacedRepetitionSession(); // Start session without parameters
-        }).start();
+        SpacedRepetition session = spacedRepetition;
+        // Answers are only taken while a question is on display, not during breaks or between questions
+        session.setAnswerListener(() -> SwingUtilities.invokeLater(() -> {
+          boolean enabled = session.isAwaitingAnswer() && !session.isPaused();
+          submitAnswerButton.setEnabled(enabled);
+          answerField.setEnabled(enabled);
+          if (enabled) {
+            answerField.requestFocusInWindow(); // Set focus to the answer field for user convenience
+          }
+        }));
+
+        // Start the session off the EDT to avoid blocking the GUI
+        sessionExecutor.submit("SpacedRepetition", spacedRepetition::startSpacedRepetitionSession);
 
         // Initial GUI setup after starting the session
         SwingUtilities.invokeLater(() -> {
           questionArea.setText("Starting the session..."); // Initial message
           startSessionButton.setEnabled(false);
-          submitAnswerButton.setEnabled(true);
           pauseButton.setEnabled(true);
           resetButton.setEnabled(true);
-
-          // Show answer field for user input
-          answerField.setEnabled(true);
-          answerField.requestFocusInWindow(); // Set focus to the answer field for user convenience
         });
       } else {
         questionArea.setText("Please load a valid questions file first.");
@@ -249,41 +380,45 @@ public class StudyPlannerGui {
     submitAnswerButton.addActionListener(e -> {
       String userAnswer = answerField.getText();
       if (!userAnswer.isEmpty()) {
-        spacedRepetition.submitAnswer(userAnswer); // Submit the answer
-        answerField.setText(""); // Clear the answer field
-
         // Check if session is complete
         if (spacedRepetition.isSessionComplete()) {
+          answerField.setText(""); // Clear the answer field
           questionArea.setText("Session complete! Thank you for participating.");
           submitAnswerButton.setEnabled(false);
           answerField.setEnabled(false); // Disable the answer field after session completion
           pauseButton.setEnabled(false); // Disable pause button after completion
           resetButton.setEnabled(false); // Disable reset button after completion
         } else {
-          // If not complete, load the next question
-          String nextQuestion = "Question " + (spacedRepetition.getCurrentQuestion() + 1) + ": "
-              + spacedRepetition.getCurrentQuestionText();
-          questionArea.setText(nextQuestion);
-          answerField.requestFocusInWindow(); // Keep focus on the answer field
+          // Hand the answer to the session thread; it displays the next question itself. A refused
+          // answer stays in the field for the next question.
+          if (spacedRepetition.submitAnswer(userAnswer)) {
+            answerField.setText(""); // Clear the answer field
+          }
         }
       }
     });
 
     // Pause button action
     pauseButton.addActionListener(e -> {
-      // Logic to pause the session
-      spacedRepetition.setPausedState(true); // Assuming you have a method to set paused state
-      pauseButton.setEnabled(false);
-      // Optionally, show a resume button if necessary (not shown in the code)
+      // Toggle between pausing and resuming the session thread
+      boolean pause = !spacedRepetition.isPaused();
+      spacedRepetition.setPausedState(pause);
+      pauseButton.setText(pause ? "Resume" : "Pause");
+      boolean answering = !pause && spacedRepetition.isAwaitingAnswer(); // No answers while paused
+      submitAnswerButton.setEnabled(answering);
+      answerField.setEnabled(answering);
     });
 
     // Reset button action
     resetButton.addActionListener(e -> {
       // Logic to reset the session
+      sessionExecutor.cancel("SpacedRepetition");
       questionArea.setText("Session reset. Load a questions file to start again.");
       submitAnswerButton.setEnabled(false);
       pauseButton.setEnabled(false);
+      pauseButton.setText("Pause");
       resetButton.setEnabled(false);
+      answerField.setEnabled(false);
       answerField.setText(""); // Clear answer field on reset
       // Optionally, reset the spaced repetition state if necessary
     });
@@ -306,10 +441,13 @@ public class StudyPlannerGui {
     JButton startSessionButton = new JButton("Start Session");
     JButton pauseButton = new JButton("Pause");
     JButton resetButton = new JButton("Reset");
+    JButton exportButton = new JButton("Export Questions");
+    JButton searchButton = new JButton("Search Notes");
     JButton backButton = new JButton("Back to Home"); // Back button
     startSessionButton.setEnabled(false);
     pauseButton.setEnabled(false);
     resetButton.setEnabled(false);
+    exportButton.setEnabled(false); // Enabled once a session has loaded its questions
 
     JPanel buttonPanel = new JPanel();
     buttonPanel.add(loadFileButton);
@@ -317,6 +455,8 @@ public class StudyPlannerGui {
     buttonPanel.add(pauseButton);
     buttonPanel.add(resetButton);
     buttonPanel.add(submitAnswerButton); // Add submit button to panel
+    buttonPanel.add(exportButton);
+    buttonPanel.add(searchButton);
     buttonPanel.add(backButton); // Add back button to the button panel
 
     activeRecallPanel.add(scrollPane, BorderLayout.CENTER);
@@ -326,7 +466,10 @@ public class StudyPlannerGui {
     mainPanel.add(activeRecallPanel, "ActiveRecall");
 
     // Action listener for the back button
-    backButton.addActionListener(e -> cardLayout.show(mainPanel, "Home")); // Back to Home
+    backButton.addActionListener(e -> {
+      sessionExecutor.cancel("ActiveRecall"); // Stop the running session when leaving the tab
+      cardLayout.show(mainPanel, "Home"); // Back to Home
+    });
 
     DataStorage dataStorage = new DataStorage();
 
@@ -340,13 +483,21 @@ public class StudyPlannerGui {
       }
     });
 
+    long[] askedAt = new long[1]; // when the question on display was shown, for the answer latency
     startSessionButton.addActionListener(e -> {
       if (selectedFile != null && selectedFile.exists()) {
         activeRecall = new ActiveRecall(selectedFile);
 
-        // Start the session in a new thread
-        new Thread(() -> {
+        // Start the session off the EDT
+        sessionExecutor.submit("ActiveRecall", () -> {
+          try {
+            activeRecall.loadQuestions();
+          } catch (IOException ex) {
+            SwingUtilities.invokeLater(() -> statusArea.setText("Error loading file: " + ex.getMessage()));
+            return;
+          }
           String firstQuestion = activeRecall.nextQuestion();
+          askedAt[0] = System.currentTimeMillis();
 
           // Update GUI in the event dispatch thread
           SwingUtilities.invokeLater(() -> {
@@ -356,8 +507,9 @@ public class StudyPlannerGui {
             startSessionButton.setEnabled(false);
             pauseButton.setEnabled(true);
             resetButton.setEnabled(true);
+            exportButton.setEnabled(true);
           });
-        }).start();
+        });
       } else {
         statusArea.setText("Please load a valid questions file first.");
       }
@@ -370,18 +522,79 @@ public class StudyPlannerGui {
         return;
       }
 
-      // Store the answer using the getter method
-      activeRecall.getUserAnswers().add(userAnswer);
+      // Grade against the notes and record it in the review history
+      boolean correct = activeRecall.submit(userAnswer, System.currentTimeMillis() - askedAt[0]);
+      String feedback = correct ? "Correct.\n\n" + answeredQuestionSource()
+          : "Not quite. From your notes: " + activeRecall.answer() + "\n\n"; // Shown only once answered
       String nextQuestion = activeRecall.nextQuestion();
+      answerField.setText(""); // Clear the answer field
 
       if (nextQuestion != null) {
-        statusArea.setText(nextQuestion);
-        answerField.setText(""); // Clear the answer field
+        statusArea.setText(feedback + nextQuestion);
+        askedAt[0] = System.currentTimeMillis();
       } else {
-        // Handle end of session
-        statusArea.setText("Session completed. Review your results.");
+        // Handle end of session: save the review history off the EDT, then show the score
         submitAnswerButton.setEnabled(false); // Disable submission when done
+        ActiveRecall finished = activeRecall;
+        sessionExecutor.submit("ActiveRecall", () -> {
+          String results;
+          try {
+            QuizResult result = finished.finishSession();
+            results = String.format("Session completed. %d of %d correct (%.0f%%).%n%s", result.getCorrect(),
+                result.getTotal(), result.accuracyRate(), result.feedback());
+          } catch (IOException ex) {
+            results = "Session completed, but the review history was not saved: " + ex.getMessage();
+          }
+          String text = feedback + results;
+          SwingUtilities.invokeLater(() -> statusArea.setText(text));
+        });
+      }
+    });
+
+    exportButton.addActionListener(e -> {
+      File exportFile = dataStorage.chooseExportFile(frame);
+      if (exportFile == null) {
+        return;
+      }
+      QuestionBank bank = activeRecall.getQuestionBank();
+      sessionExecutor.submit("Export", () -> {
+        try {
+          QuestionBankFile.write(bank, exportFile.toPath());
+          SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame,
+              "Exported " + bank.size() + " questions to " + exportFile.getName()));
+        } catch (IOException ex) {
+          SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame, "Export failed: " + ex.getMessage()));
+        }
+      });
+    });
+
+    searchButton.addActionListener(e -> {
+      String query = JOptionPane.showInputDialog(frame, "Search your notes for:");
+      if (query == null || query.isBlank()) {
+        return;
       }
+      sessionExecutor.submit("Search", () -> {
+        StringBuilder results = new StringBuilder();
+        try {
+          long start = System.nanoTime();
+          List<NoteHit> hits = NoteIndex.shared().search(query, 20);
+          double millis = (System.nanoTime() - start) / 1e6;
+          results.append(hits.size()).append(" matches (").append(String.format("%.2f", millis)).append(" ms)\n\n");
+          for (NoteHit hit : hits) {
+            results.append(hit.getFile().getFileName()).append(": ").append(hit.sentence()).append("\n\n");
+          }
+        } catch (IOException ex) {
+          results.append("Search failed: ").append(ex.getMessage());
+        }
+        SwingUtilities.invokeLater(() -> {
+          JTextArea resultArea = new JTextArea(results.toString(), 20, 60);
+          resultArea.setEditable(false);
+          resultArea.setLineWrap(true);
+          resultArea.setWrapStyleWord(true);
+          JOptionPane.showMessageDialog(frame, new JScrollPane(resultArea), "Search: " + query,
+              JOptionPane.PLAIN_MESSAGE);
+        });
+      });
     });
 
     pauseButton.addActionListener(e -> {
@@ -395,6 +608,7 @@ public class StudyPlannerGui {
     });
 
     resetButton.addActionListener(e -> {
+      sessionExecutor.cancel("ActiveRecall");
       statusArea.setText("Session reset. Load a questions file to start again.");
       answerField.setText(""); // Clear the answer field
       submitAnswerButton.setEnabled(false);
@@ -404,17 +618,30 @@ public class StudyPlannerGui {
     });
   }
 
+  // The sentence of the notes the question just answered came from, as a line to show above the next one
+  private String answeredQuestionSource() {
+    try {
+      String source = activeRecall.lastQuestionSource();
+      return source == null ? "" : "From your notes: " + source + "\n\n";
+    } catch (IOException e) {
+      return "";
+    }
+  }
+
   // Task Scheduler Tab setup
   private void setupTaskSchedulerTab() {
     JPanel taskSchedulerPanel = new JPanel();
     taskSchedulerPanel.setLayout(new BorderLayout());
 
-    // Area to display tasks
-    JTextArea taskArea = new JTextArea();
-    taskArea.setEditable(false);
-    taskArea.setLineWrap(true);
-    taskArea.setWrapStyleWord(true);
-    JScrollPane taskScrollPane = new JScrollPane(taskArea);
+    // Table of tasks; only the visible rows are painted, and changes update single rows
+    TaskTableModel taskModel = TaskTableModel.of(taskManager);
+    JTable taskTable = new JTable(taskModel);
+    taskTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    taskTable.setFillsViewportHeight(true);
+    taskTable.getColumnModel().getColumn(0).setMaxWidth(60);
+    taskTable.getColumnModel().getColumn(2).setMaxWidth(120);
+    taskTable.getColumnModel().getColumn(3).setMaxWidth(90);
+    JScrollPane taskScrollPane = new JScrollPane(taskTable);
     taskScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
 
     // Button to add task
@@ -438,29 +665,37 @@ public class StudyPlannerGui {
 
     mainPanel.add(taskSchedulerPanel, "TaskScheduler");
 
-    // Task Manager instance
-    taskManager = new TaskManager();
+    // Re-arm reminders of tasks restored from disk
+    for (Task task : taskManager.getPendingTasks()) {
+      remindWhenDue(task);
+    }
 
     // Action Listener for Add Task button
     addTaskButton.addActionListener(e -> {
       String taskName = JOptionPane.showInputDialog("Enter task name:");
       String dueDateStr = JOptionPane.showInputDialog("Enter due date (YYYY-MM-DD):");
       if (taskName != null && dueDateStr != null) {
-        taskManager.addTask(taskName, dueDateStr);
-        updateTaskArea(taskArea);
+        try {
+          Task task = taskManager.addTask(taskName, dueDateStr);
+          remindWhenDue(task);
+        } catch (IllegalArgumentException ex) {
+          JOptionPane.showMessageDialog(frame, ex.getMessage());
+        } catch (DateTimeParseException ex) {
+          JOptionPane.showMessageDialog(frame, "Invalid due date. Please use YYYY-MM-DD.");
+        }
       }
     });
 
     // Action Listener for Change Status button
     changeStatusButton.addActionListener(e -> {
-      String taskNumberStr = JOptionPane.showInputDialog("Enter task number to change status:");
+      String taskNumberStr = JOptionPane.showInputDialog("Enter task number to change status:",
+          selectedTaskNumber(taskTable, taskModel));
       if (taskNumberStr != null) {
         try {
-          int taskNumber = Integer.parseInt(taskNumberStr);
+          long taskNumber = Long.parseLong(taskNumberStr);
           String statusStr = JOptionPane.showInputDialog("Is the task completed? (yes/no):");
           boolean isCompleted = "yes".equalsIgnoreCase(statusStr);
           taskManager.changeTaskStatus(taskNumber, isCompleted);
-          updateTaskArea(taskArea);
         } catch (NumberFormatException ex) {
           JOptionPane.showMessageDialog(frame, "Invalid task number.");
         }
@@ -469,12 +704,12 @@ public class StudyPlannerGui {
 
     // Action Listener for Delete Task button
     deleteTaskButton.addActionListener(e -> {
-      String taskNumberStr = JOptionPane.showInputDialog("Enter task number to delete:");
+      String taskNumberStr = JOptionPane.showInputDialog("Enter task number to delete:",
+          selectedTaskNumber(taskTable, taskModel));
       if (taskNumberStr != null) {
         try {
-          int taskNumber = Integer.parseInt(taskNumberStr);
+          long taskNumber = Long.parseLong(taskNumberStr);
           taskManager.deleteTask(taskNumber);
-          updateTaskArea(taskArea);
         } catch (NumberFormatException ex) {
           JOptionPane.showMessageDialog(frame, "Invalid task number.");
         }
@@ -485,13 +720,15 @@ public class StudyPlannerGui {
     backButton.addActionListener(e -> cardLayout.show(mainPanel, "Home")); // Back to Home
   }
 
-  // Helper method to update the task area
-  private void updateTaskArea(JTextArea taskArea) {
-    StringBuilder tasksDisplay = new StringBuilder();
-    for (int i = 0; i < taskManager.getTasks().size(); i++) {
-      tasksDisplay.append((i + 1) + ". " + taskManager.getTasks().get(i) + "\n");
-    }
-    taskArea.setText(tasksDisplay.toString());
+  private void remindWhenDue(Task task) {
+    taskManager.remindWhenDue(task, dueTask -> SwingUtilities.invokeLater(
+        () -> JOptionPane.showMessageDialog(frame, "Reminder: task due today.\n" + dueTask)));
+  }
+
+  // The selected task's number, to pre-fill the task number prompts
+  private String selectedTaskNumber(JTable taskTable, TaskTableModel taskModel) {
+    int row = taskTable.getSelectedRow();
+    return row < 0 ? "" : String.valueOf(taskModel.getTaskAt(taskTable.convertRowIndexToModel(row)).getId());
   }
 
   public static void main(String[] args) {
@@ -0,0 +1,152 @@
+package gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import metrics.Histogram;
+import metrics.Metrics;
+import shared.Log;
+import tasks.Task;
+import tasks.TaskListener;
+import tasks.TaskManager;
+
+// The task list as a table model. The JTable only paints the rows in view, and each TaskManager
+// change is applied as one inserted, deleted or updated row instead of rebuilding the whole list.
+// Changes can come from any thread; they are queued to the EDT and applied there in order. Rows
+// stay in ID (creation) order, so a task's row is found by binary search. The EDT time of each
+// change is recorded in the gui.task_table_edit timer, served by the metrics endpoint.
+public class TaskTableModel extends AbstractTableModel implements TaskListener {
+  private static final long serialVersionUID = 1L;
+  private static final String[] COLUMNS = { "#", "Task", "Due", "Completed" };
+  private static final long BUDGET_NANOS = 2_000_000; // EDT time one change may take before it is reported
+
+  private static final Histogram EDIT_TIME = Metrics.timer("gui.task_table_edit");
+
+  private final transient List<Task> rows = new ArrayList<>();
+  private final transient List<Boolean> completed = new ArrayList<>(); // status as of the last applied change
+
+  private TaskTableModel() {
+  }
+
+  // A model of the manager's tasks that follows its changes. Listens before taking the snapshot,
+  // so no change is missed; changes already in the snapshot are skipped when they arrive. Call on
+  // the EDT.
+  public static TaskTableModel of(TaskManager taskManager) {
+    TaskTableModel model = new TaskTableModel();
+    taskManager.addTaskListener(model);
+    for (Task task : taskManager.getTasks()) {
+      model.rows.add(task);
+      model.completed.add(task.isCompleted());
+    }
+    return model;
+  }
+
+  @Override
+  public int getRowCount() {
+    return rows.size();
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMNS.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMNS[column];
+  }
+
+  @Override
+  public Class<?> getColumnClass(int column) {
+    return column == 0 ? Long.class : column == 3 ? Boolean.class : String.class;
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    Task task = rows.get(row);
+    switch (column) {
+      case 0:
+        return task.getId();
+      case 1:
+        return task.getName();
+      case 2:
+        return task.getDueDate().toString();
+      default:
+        return completed.get(row);
+    }
+  }
+
+  public Task getTaskAt(int row) {
+    return rows.get(row);
+  }
+
+  @Override
+  public void taskAdded(Task task) {
+    SwingUtilities.invokeLater(() -> {
+      long start = System.nanoTime();
+      int row = find(task.getId());
+      if (row < 0) {
+        row = -row - 1; // Usually the end: IDs grow
+        rows.add(row, task);
+        completed.add(row, task.isCompleted());
+        fireTableRowsInserted(row, row);
+      }
+      measure(start, "add");
+    });
+  }
+
+  @Override
+  public void taskDeleted(Task task) {
+    SwingUtilities.invokeLater(() -> {
+      long start = System.nanoTime();
+      int row = find(task.getId());
+      if (row >= 0 && rows.get(row) == task) {
+        rows.remove(row);
+        completed.remove(row);
+        fireTableRowsDeleted(row, row);
+      }
+      measure(start, "delete");
+    });
+  }
+
+  @Override
+  public void taskStatusChanged(Task task, boolean isCompleted) {
+    SwingUtilities.invokeLater(() -> {
+      long start = System.nanoTime();
+      int row = find(task.getId());
+      if (row >= 0 && rows.get(row) == task) {
+        completed.set(row, isCompleted);
+        fireTableRowsUpdated(row, row);
+      }
+      measure(start, "status change");
+    });
+  }
+
+  // Row of the task with this ID, or -(insertion point) - 1
+  private int find(long taskId) {
+    int low = 0;
+    int high = rows.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midId = rows.get(mid).getId();
+      if (midId < taskId) {
+        low = mid + 1;
+      } else if (midId > taskId) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private void measure(long start, String change) {
+    long elapsed = System.nanoTime() - start;
+    EDIT_TIME.record(elapsed);
+    if (elapsed > BUDGET_NANOS) {
+      Log.warn("gui", String.format("Task list %s took %.2f ms on the EDT (budget %.2f ms)", change, elapsed / 1e6,
+          BUDGET_NANOS / 1e6));
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free event counter; increments from many threads do not contend
+public class Counter {
+  private final String name;
+  private final LongAdder value = new LongAdder();
+
+  Counter(String name) {
+    this.name = name;
+  }
+
+  public void increment() {
+    value.increment();
+  }
+
+  public void add(long amount) {
+    value.add(amount);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long get() {
+    return value.sum();
+  }
+}
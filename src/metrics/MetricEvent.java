@@ -0,0 +1,67 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+// One metric's values, emitted once a second while a JFR recording is running and never otherwise,
+// e.g. java -XX:StartFlightRecording=filename=study.jfr ...
+@Name("studyplanner.Metric")
+@Label("Study Planner Metric")
+@Category("Study Planner")
+@Description("Counter value, or count and percentiles of a histogram")
+@Period("1 s")
+public class MetricEvent extends Event {
+  private static boolean registered;
+
+  @Label("Name")
+  String name;
+
+  @Label("Unit")
+  String unit;
+
+  @Label("Count")
+  long count;
+
+  @Label("Median")
+  long p50;
+
+  @Label("99th Percentile")
+  long p99;
+
+  @Label("Maximum")
+  long max;
+
+  // Idempotent
+  public static synchronized void register() {
+    if (registered) {
+      return;
+    }
+    registered = true;
+    FlightRecorder.addPeriodicEvent(MetricEvent.class, MetricEvent::emitAll);
+  }
+
+  private static void emitAll() {
+    for (Counter counter : Metrics.counters()) {
+      MetricEvent event = new MetricEvent();
+      event.name = counter.getName();
+      event.unit = "count";
+      event.count = counter.get();
+      event.commit();
+    }
+    for (Histogram histogram : Metrics.histograms()) {
+      MetricEvent event = new MetricEvent();
+      event.name = histogram.getName();
+      event.unit = histogram.getUnit();
+      event.count = histogram.count();
+      event.p50 = histogram.percentile(50);
+      event.p99 = histogram.percentile(99);
+      event.max = histogram.max();
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Process-wide registry of counters and histograms. Components look their metrics up once, into
+// static fields, and update them lock-free on the hot path. render() gives the Prometheus text
+// format served by MetricsEndpoint; MetricEvent reports the same values to JFR recordings.
+public final class Metrics {
+  private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+  private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+  private static final double[] QUANTILES = { 50, 90, 99, 99.9 };
+  private static final String[] QUANTILE_LABELS = { "0.5", "0.9", "0.99", "0.999" };
+
+  private Metrics() {
+  }
+
+  // Names are dotted, e.g. "tasks.added"; the same name always returns the same counter
+  public static Counter counter(String name) {
+    return COUNTERS.computeIfAbsent(name, Counter::new);
+  }
+
+  // A histogram of durations in nanoseconds
+  public static Histogram timer(String name) {
+    return histogram(name, "nanoseconds");
+  }
+
+  public static Histogram histogram(String name, String unit) {
+    return HISTOGRAMS.computeIfAbsent(name, key -> new Histogram(key, unit));
+  }
+
+  static Iterable<Counter> counters() {
+    return COUNTERS.values();
+  }
+
+  static Iterable<Histogram> histograms() {
+    return HISTOGRAMS.values();
+  }
+
+  // Every metric in the Prometheus text exposition format
+  public static String render() {
+    StringBuilder text = new StringBuilder();
+    for (Counter counter : COUNTERS.values()) {
+      String name = exportName(counter.getName()) + "_total";
+      text.append("# TYPE ").append(name).append(" counter\n");
+      text.append(name).append(' ').append(counter.get()).append('\n');
+    }
+    for (Histogram histogram : HISTOGRAMS.values()) {
+      String name = exportName(histogram.getName()) + "_" + histogram.getUnit();
+      text.append("# TYPE ").append(name).append(" summary\n");
+      for (int i = 0; i < QUANTILES.length; i++) {
+        text.append(name).append("{quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ")
+            .append(histogram.percentile(QUANTILES[i])).append('\n');
+      }
+      text.append(name).append("_sum ").append(histogram.sum()).append('\n');
+      text.append(name).append("_count ").append(histogram.count()).append('\n');
+      text.append("# TYPE ").append(name).append("_max gauge\n");
+      text.append(name).append("_max ").append(histogram.max()).append('\n');
+    }
+    return text.toString();
+  }
+
+  private static String exportName(String name) {
+    return "studyplanner_" + name.replace('.', '_').replace('-', '_');
+  }
+}
@@ -0,0 +1,58 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import shared.Log;
+
+// Serves Metrics.render() at http://localhost:<port>/metrics, for curl or a local Prometheus.
+// Only started by the long-running modes (the GUI and --server), and only when the
+// studyplanner.metrics.port system property is set.
+public final class MetricsEndpoint {
+  private MetricsEndpoint() {
+  }
+
+  // Start the endpoint if configured and register the JFR event either way; returns the server or null
+  public static HttpServer startIfConfigured() {
+    MetricEvent.register();
+    String port = System.getProperty("studyplanner.metrics.port");
+    if (port == null) {
+      return null;
+    }
+    try {
+      HttpServer server = start(Integer.parseInt(port));
+      Log.info("metrics", "Serving metrics at http://localhost:" + server.getAddress().getPort() + "/metrics");
+      return server;
+    } catch (IOException | NumberFormatException e) {
+      Log.warn("metrics", "Metrics endpoint not started: " + e.getMessage());
+      return null;
+    }
+  }
+
+  // Loopback only; port 0 picks a free port
+  public static HttpServer start(int port) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/metrics", MetricsEndpoint::handle);
+    server.start(); // Default executor: requests are handled on the server's own thread
+    return server;
+  }
+
+  private static void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!exchange.getRequestMethod().equals("GET")) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      byte[] body = Metrics.render().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    }
+  }
+}
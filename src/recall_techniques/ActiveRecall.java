@@ -1,25 +1,31 @@
 package recall_techniques;
 
+import analytics.StudyAnalytics;
+import data.NoteIndex;
+import data.QuestionBank;
+import data.QuestionBankFile;
+import data.ReviewLog;
+import data.ReviewTotals;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import shared.Log;
 
 public class ActiveRecall {
+  private static final int ROUND_SIZE = 10; // questions per console round
+
   private File fileName;
-  private List<String> questions;
+  private QuestionBank questionBank; // questions and reference answers, read by index
+  private long deck; // identifies the study file in the review log
   private List<String> userAnswers;
-  private List<String> correctAnswers;
   private int currentQuestion;
   public boolean isPaused;
   private int correctAnswersCount;
 
   public ActiveRecall(File fileName) {
     this.fileName = fileName;
-    this.questions = new ArrayList<>();
     this.userAnswers = new ArrayList<>();
-    this.correctAnswers = new ArrayList<>();
     this.currentQuestion = 0;
     this.isPaused = false;
     this.correctAnswersCount = 0;
@@ -30,6 +36,10 @@ public class ActiveRecall {
     return userAnswers;
   }
 
+  public QuestionBank getQuestionBank() {
+    return questionBank;
+  }
+
   // Getter for isPaused
   public boolean isPaused() {
     return isPaused;
@@ -43,11 +53,10 @@ public class ActiveRecall {
     }
 
     try {
-      String content = new String(Files.readAllBytes(fileName.toPath()));
-      generateQuestions(content);
+      loadQuestions();
 
       // Practice Round: Collect user's answers
-      System.out.println("Practice Round: Answer the following 10 questions.");
+      System.out.println("Practice Round: Answer the following " + roundSize() + " questions.");
       if (collectUserAnswers(scanner))
         return; // Check if 'back' was selected
 
@@ -63,14 +72,14 @@ public class ActiveRecall {
 
   // Practice round where user provides answers to questions
   private boolean collectUserAnswers(Scanner scanner) {
-    while (currentQuestion < 10 && !isPaused) {
-      System.out.println("Question " + (currentQuestion + 1) + ": " + questions.get(currentQuestion));
+    while (currentQuestion < roundSize() && !isPaused) {
+      System.out.println("Question " + (currentQuestion + 1) + ": " + questionBank.question(currentQuestion));
       String answer = scanner.nextLine();
       userAnswers.add(answer); // Store user's answers
       currentQuestion++;
 
       // After each question, handle pause, reset, or go back
-      if (currentQuestion < 10) {
+      if (currentQuestion < roundSize()) {
         System.out.println("Type 'pause' to pause, 'reset' to reset, or 'back' to return to the homescreen:");
         String command = scanner.nextLine();
         if (handleCommand(command, scanner)) {
@@ -85,7 +94,7 @@ public class ActiveRecall {
   // Active Recall round where the same questions are asked in shuffled order
   private boolean activeRecallRound(Scanner scanner) {
     List<Integer> shuffledIndices = new ArrayList<>();
-    for (int i = 0; i < 10; i++) {
+    for (int i = 0; i < roundSize(); i++) {
       shuffledIndices.add(i);
     }
     Collections.shuffle(shuffledIndices); // Shuffle the order of questions
@@ -93,14 +102,12 @@ public class ActiveRecall {
     correctAnswersCount = 0; // Reset correct answers count for Active Recall round
 
     for (int index : shuffledIndices) {
-      System.out.println("Question " + (index + 1) + ": " + questions.get(index));
+      System.out.println("Question " + (index + 1) + ": " + questionBank.question(index));
+      long askedAt = System.currentTimeMillis();
       String answer = scanner.nextLine();
+      boolean correct = grade(index, answer, System.currentTimeMillis() - askedAt);
 
-      // Check if the answer matches the one provided in the practice round
-      if (answer.equalsIgnoreCase(userAnswers.get(index))) {
-        correctAnswersCount++;
-      }
-
+      System.out.println((correct ? "Correct. " : "Not quite. ") + "From your notes: " + questionBank.answer(index));
       System.out.println("Your initial answer was: " + userAnswers.get(index));
 
       // After each question, handle pause, reset, or go back
@@ -111,18 +118,63 @@ public class ActiveRecall {
       }
     }
 
-    showResults(); // Show results after Active Recall round
+    showResults(scanner); // Show results after Active Recall round
     return false; // Return false to indicate the session ended normally
   }
 
+  // Load the questions for a session: exported question banks are mapped directly,
+  // study notes go through the question generator
+  public void loadQuestions() throws IOException {
+    currentQuestion = 0;
+    deck = ReviewLog.deckId(fileName); // By path: no pass over the file, and edits keep the history
+    if (fileName.getName().endsWith("." + QuestionBankFile.EXTENSION)) {
+      questionBank = QuestionBankFile.open(fileName.toPath());
+    } else {
+      generateQuestions(fileName);
+      NoteIndex.shared().add(fileName); // Make the notes searchable and quotable
+    }
+  }
+
+  // The sentence of the notes that the last question's keyword was taken from, or null
+  public String lastQuestionSource() throws IOException {
+    int index = currentQuestion - 1;
+    if (questionBank == null || index < 0 || index >= questionBank.keywordCount()) {
+      return null;
+    }
+    return NoteIndex.shared().sourceSentence(fileName, questionBank.keyword(index).getWord());
+  }
+
+  // Grade the answer to the question nextQuestion() returned last and record it; false if it does
+  // not match the reference answer from the notes, which answer() then returns
+  public boolean submit(String answer, long latencyMillis) {
+    userAnswers.add(answer);
+    return grade(currentQuestion - 1, answer, latencyMillis);
+  }
+
+  // The reference answer to the question nextQuestion() returned last
+  public String answer() {
+    return questionBank.answer(currentQuestion - 1);
+  }
+
+  // Save the review history of the session and return its score
+  public QuizResult finishSession() throws IOException {
+    ReviewLog.shared().flush();
+    return new QuizResult("You", correctAnswersCount, userAnswers.size());
+  }
+
   // Method to return the next question
   public String nextQuestion() {
-    if (currentQuestion < questions.size()) {
-      return questions.get(currentQuestion++);
+    if (questionBank != null && currentQuestion < questionBank.size()) {
+      return questionBank.question(currentQuestion++);
     }
     return null; // No more questions
   }
 
+  // The console rounds ask at most ROUND_SIZE questions, even from a large bank
+  private int roundSize() {
+    return Math.min(ROUND_SIZE, questionBank.size());
+  }
+
   // Handle commands: pause, reset, etc.
   private boolean handleCommand(String command, Scanner scanner) {
     switch (command) {
@@ -160,7 +212,7 @@ public class ActiveRecall {
 
   // Continue the session from where it was paused
   private void continueSession(Scanner scanner) {
-    if (currentQuestion < 10) {
+    if (currentQuestion < roundSize()) {
       if (collectUserAnswers(scanner))
         return; // Check if 'back' was selected
     } else {
@@ -169,46 +221,46 @@ public class ActiveRecall {
     }
   }
 
-  // Generate questions based on the content
-  private void generateQuestions(String content) {
-    // Simulate Named Entity Recognition (NER) and generate 10 questions
-    List<String> words = Arrays.asList(content.split("\\W+"));
-    Map<String, Long> wordCount = words.stream()
-        .collect(Collectors.groupingBy(w -> w, Collectors.counting()));
-
-    // Get the top 10 most used nouns and generate significance questions
-    List<String> topWords = wordCount.entrySet().stream()
-        .filter(entry -> isNoun(entry.getKey())) // Only consider nouns
-        .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-        .limit(10)
-        .map(Map.Entry::getKey)
-        .collect(Collectors.toList());
-
-    // Create questions
-    for (String keyword : topWords) {
-      questions.add("What is the significance of '" + keyword + "'?");
-      correctAnswers.add("The significance of " + keyword + " is related to its context in the text."); // Placeholder
-                                                                                                        // answer
+  // Generate questions based on the file's content; unchanged files are served from the cache
+  private void generateQuestions(File file) throws IOException {
+    questionBank = new QuestionGenerator(ROUND_SIZE).load(file); // Top 10 nouns as significance questions
+  }
+
+  // Check the answer against the reference answer taken from the notes, and append it to the
+  // long-term review history
+  private boolean grade(int index, String answer, long latencyMillis) {
+    boolean correct = AnswerGrader.defaults().matches(questionBank, index, answer);
+    if (correct) {
+      correctAnswersCount++;
+    }
+    try {
+      ReviewLog.shared().record(deck, ReviewLog.cardId(questionBank.question(index)), System.currentTimeMillis(),
+          (int) latencyMillis, correct, ReviewLog.ACTIVE_RECALL);
+      StudyAnalytics.shared().recordAnswer(fileName.getName(), correct, latencyMillis);
+    } catch (IOException e) {
+      Log.warn("reviews", "Error saving review history: " + e.getMessage());
     }
+    return correct;
   }
 
   // Show the results and accuracy rate
-  private void showResults() {
-    double accuracyRate = ((double) correctAnswersCount / 10) * 100;
-    System.out.println("Active Recall round completed. Accuracy rate: " + accuracyRate + "%");
-
-    // Provide feedback based on accuracy
-    if (accuracyRate < 50) {
-      System.out.println("You need improvement in understanding the material.");
-    } else {
-      System.out.println("Good job! Keep practicing to improve further.");
+  private void showResults(Scanner scanner) {
+    QuizResult result = new QuizResult("You", correctAnswersCount, roundSize());
+    System.out.println("Active Recall round completed. Accuracy rate: " + result.accuracyRate() + "%");
+    try {
+      LocalDate today = LocalDate.now();
+      ReviewTotals month = ReviewLog.shared().totals(today.minusDays(29), today);
+      System.out.printf("Last 30 days: %.1f%% accuracy over %d answers.%n", month.accuracy(), month.getReviews());
+    } catch (IOException e) {
+      System.out.println("Error reading review history: " + e.getMessage());
     }
 
+    System.out.println(result.feedback());
+
     // Option to restart or go back
     System.out.println("1. Restart");
     System.out.println("2. Back to homescreen");
 
-    Scanner scanner = new Scanner(System.in);
     String command = scanner.nextLine();
     if (command.equals("1")) {
       resetSession();
@@ -218,11 +270,6 @@ public class ActiveRecall {
     }
   }
 
-  // Check if a word is a noun (simple check for this example)
-  private boolean isNoun(String word) {
-    return Character.isUpperCase(word.charAt(0)) || word.endsWith("s");
-  }
-
   // Reset session state
   private void resetSession() {
     currentQuestion = 0;
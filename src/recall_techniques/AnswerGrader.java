@@ -0,0 +1,313 @@
+package recall_techniques;
+
+import data.QuestionBank;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import metrics.Histogram;
+import metrics.Metrics;
+
+// Grades a typed answer against a reference answer while tolerating what a person would: case,
+// punctuation, extra spaces, word order and a few typos. Answers are compared in stages, cheapest
+// first: normalized text, then the set of words, then a bounded edit distance (Myers' bit-parallel
+// algorithm for references up to 64 characters, a banded DP beyond). All scratch space is reused
+// per thread, so grading allocates nothing once the buffers have grown to fit the answers.
+// Definitions are graded differently: their reference is a whole sentence from the notes, so an
+// answer only has to share enough of its content words to count, in any wording.
+public class AnswerGrader {
+  private static final AnswerGrader DEFAULT = new AnswerGrader(
+      Integer.getInteger("studyplanner.grading.maxEdits", 2),
+      Double.parseDouble(System.getProperty("studyplanner.grading.maxEditRatio", "0.2")));
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+  private static final Histogram MATCH_TIME = Metrics.timer("grading.match");
+  private static final double DEFINITION_SHARE = 0.25; // of the definition's content words
+  private static final int DEFINITION_WORDS = 3; // enough shared content words for any definition
+
+  private final int maxEdits;
+  private final double maxEditRatio;
+
+  // An answer is accepted within min(maxEdits, maxEditRatio * reference length) edits
+  public AnswerGrader(int maxEdits, double maxEditRatio) {
+    this.maxEdits = maxEdits;
+    this.maxEditRatio = maxEditRatio;
+  }
+
+  // Thresholds from the studyplanner.grading.maxEdits and studyplanner.grading.maxEditRatio
+  // system properties, 2 edits and 20% by default
+  public static AnswerGrader defaults() {
+    return DEFAULT;
+  }
+
+  // Grade an answer to one of the bank's questions, by the kind of question it is
+  public boolean matches(QuestionBank bank, int index, String answer) {
+    String term = QuestionGenerator.definedTerm(bank.question(index));
+    return term != null ? coversDefinition(answer, term, bank.answer(index)) : matches(answer, bank.answer(index));
+  }
+
+  public boolean matches(String answer, String reference) {
+    long start = System.nanoTime();
+    boolean matched = compare(answer, reference);
+    MATCH_TIME.recordSince(start);
+    return matched;
+  }
+
+  private boolean compare(String answer, String reference) {
+    Scratch scratch = SCRATCH.get();
+    int answerLength = normalize(answer, scratch.answer = scratch.fit(scratch.answer, answer.length()));
+    int referenceLength = normalize(reference,
+        scratch.reference = scratch.fit(scratch.reference, reference.length()));
+    char[] a = scratch.answer;
+    char[] r = scratch.reference;
+    if (Arrays.equals(a, 0, answerLength, r, 0, referenceLength)) {
+      return true;
+    }
+    if (sameWords(a, answerLength, r, referenceLength, scratch)) {
+      return true;
+    }
+    int allowed = Math.min(maxEdits, (int) (maxEditRatio * referenceLength));
+    return allowed > 0 && editDistance(a, answerLength, r, referenceLength, allowed, scratch) <= allowed;
+  }
+
+  // Whether the answer shares a quarter of the definition's content words (stopwords, short words and
+  // the defined term itself aside), or three of them for long definitions; each may have a typo.
+  // A definition with no other content words is graded like any other answer.
+  public boolean coversDefinition(String answer, String term, String definition) {
+    long start = System.nanoTime();
+    List<String> expected = contentWords(definition, term);
+    boolean matched;
+    if (expected.isEmpty()) {
+      matched = compare(answer, definition);
+    } else {
+      List<String> given = contentWords(answer, term);
+      int needed = Math.min(DEFINITION_WORDS, (int) Math.ceil(expected.size() * DEFINITION_SHARE));
+      int shared = 0;
+      for (String word : expected) {
+        for (String candidate : given) {
+          if (candidate.equals(word) || (word.length() >= 5 && editDistance(candidate, word, 1) <= 1)) {
+            shared++;
+            break;
+          }
+        }
+      }
+      matched = shared >= needed;
+    }
+    MATCH_TIME.recordSince(start);
+    return matched;
+  }
+
+  // Distinct lower-case words of three or more characters that are neither stopwords nor the term
+  private static List<String> contentWords(String text, String term) {
+    Set<String> words = new LinkedHashSet<>();
+    for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+      if (word.length() >= 3 && !word.equalsIgnoreCase(term)
+          && !Stopwords.contains(word.getBytes(StandardCharsets.UTF_8))) {
+        words.add(word);
+      }
+    }
+    return new ArrayList<>(words);
+  }
+
+  // Levenshtein distance between two strings, or max + 1 if it is larger than max
+  public static int editDistance(String a, String b, int max) {
+    Scratch scratch = SCRATCH.get();
+    char[] first = scratch.answer = scratch.fit(scratch.answer, a.length());
+    char[] second = scratch.reference = scratch.fit(scratch.reference, b.length());
+    a.getChars(0, a.length(), first, 0);
+    b.getChars(0, b.length(), second, 0);
+    return editDistance(first, a.length(), second, b.length(), max, scratch);
+  }
+
+  // Lower-case letters and digits with single spaces between words; returns the length
+  private static int normalize(String text, char[] out) {
+    int length = 0;
+    boolean space = false;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        if (space && length > 0) {
+          out[length++] = ' ';
+        }
+        out[length++] = Character.toLowerCase(c);
+        space = false;
+      } else {
+        space = true;
+      }
+    }
+    return length;
+  }
+
+  // Same words regardless of order or repetition, compared by sorted 64-bit word hashes
+  private static boolean sameWords(char[] a, int aLength, char[] b, int bLength, Scratch scratch) {
+    int aWords = wordHashes(a, aLength, scratch.answerWords = scratch.fit(scratch.answerWords, aLength / 2 + 1));
+    int bWords = wordHashes(b, bLength, scratch.referenceWords = scratch.fit(scratch.referenceWords, bLength / 2 + 1));
+    return Arrays.equals(scratch.answerWords, 0, aWords, scratch.referenceWords, 0, bWords);
+  }
+
+  // Sorted, de-duplicated hashes of the space-separated words; returns how many there are
+  private static int wordHashes(char[] text, int length, long[] hashes) {
+    int count = 0;
+    long hash = 0xcbf29ce484222325L; // FNV-1a
+    for (int i = 0; i <= length; i++) {
+      if (i == length || text[i] == ' ') {
+        hashes[count++] = hash;
+        hash = 0xcbf29ce484222325L;
+      } else {
+        hash = (hash ^ text[i]) * 0x100000001b3L;
+      }
+    }
+    if (length == 0) {
+      return 0;
+    }
+    Arrays.sort(hashes, 0, count);
+    int unique = 1;
+    for (int i = 1; i < count; i++) {
+      if (hashes[i] != hashes[unique - 1]) {
+        hashes[unique++] = hashes[i];
+      }
+    }
+    return unique;
+  }
+
+  private static int editDistance(char[] a, int aLength, char[] b, int bLength, int max, Scratch scratch) {
+    if (Math.abs(aLength - bLength) > max) {
+      return max + 1; // Every extra character costs an insertion
+    }
+    if (bLength == 0 || aLength == 0) {
+      return Math.max(aLength, bLength);
+    }
+    if (bLength <= 64) {
+      return myers(a, aLength, b, bLength, max, scratch);
+    }
+    return banded(a, aLength, b, bLength, max, scratch);
+  }
+
+  // Myers/Hyyro bit-parallel global edit distance with the pattern b packed into one long
+  private static int myers(char[] a, int aLength, char[] b, int bLength, int max, Scratch scratch) {
+    long[] ascii = scratch.asciiMasks;
+    int others = 0;
+    for (int i = 0; i < bLength; i++) {
+      char c = b[i];
+      if (c < ascii.length) {
+        ascii[c] |= 1L << i;
+      } else {
+        int slot = 0;
+        while (slot < others && scratch.otherChars[slot] != c) {
+          slot++;
+        }
+        if (slot == others) {
+          scratch.otherChars[others] = c;
+          scratch.otherMasks[others++] = 0;
+        }
+        scratch.otherMasks[slot] |= 1L << i;
+      }
+    }
+
+    long high = 1L << (bLength - 1);
+    long pv = -1L;
+    long mv = 0;
+    int score = bLength;
+    for (int j = 0; j < aLength; j++) {
+      long eq = mask(a[j], ascii, scratch, others);
+      long xv = eq | mv;
+      long xh = (((eq & pv) + pv) ^ pv) | eq;
+      long ph = mv | ~(xh | pv);
+      long mh = pv & xh;
+      if ((ph & high) != 0) {
+        score++;
+      } else if ((mh & high) != 0) {
+        score--;
+      }
+      if (score - (aLength - j - 1) > max) {
+        score = max + 1; // Even all-matching remaining characters could not bring it back
+        break;
+      }
+      ph = (ph << 1) | 1; // Row zero grows by one per column in a global alignment
+      mh <<= 1;
+      pv = mh | ~(xv | ph);
+      mv = ph & xv;
+    }
+
+    for (int i = 0; i < bLength; i++) {
+      if (b[i] < ascii.length) {
+        ascii[b[i]] = 0; // Leave the table clean for the next call
+      }
+    }
+    return Math.min(score, max + 1);
+  }
+
+  private static long mask(char c, long[] ascii, Scratch scratch, int others) {
+    if (c < ascii.length) {
+      return ascii[c];
+    }
+    for (int slot = 0; slot < others; slot++) {
+      if (scratch.otherChars[slot] == c) {
+        return scratch.otherMasks[slot];
+      }
+    }
+    return 0;
+  }
+
+  // Two-row DP restricted to the diagonal band |i - j| <= max, for references too long for myers
+  private static int banded(char[] a, int aLength, char[] b, int bLength, int max, Scratch scratch) {
+    int[] previous = scratch.previousRow = scratch.fit(scratch.previousRow, bLength + 1);
+    int[] current = scratch.currentRow = scratch.fit(scratch.currentRow, bLength + 1);
+    int outside = max + 1;
+    for (int j = 0; j <= bLength; j++) {
+      previous[j] = j <= max ? j : outside;
+    }
+    for (int i = 1; i <= aLength; i++) {
+      int from = Math.max(1, i - max);
+      int to = Math.min(bLength, i + max);
+      current[0] = i <= max ? i : outside;
+      if (from > 1) {
+        current[from - 1] = outside;
+      }
+      int rowMin = current[0];
+      for (int j = from; j <= to; j++) {
+        int cost = a[i - 1] == b[j - 1] ? 0 : 1;
+        int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+        current[j] = Math.min(value, outside);
+        rowMin = Math.min(rowMin, current[j]);
+      }
+      if (to < bLength) {
+        current[to + 1] = outside;
+      }
+      if (rowMin > max) {
+        return outside;
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[bLength];
+  }
+
+  // Per-thread buffers, grown to the largest answer seen so far
+  private static final class Scratch {
+    char[] answer = new char[64];
+    char[] reference = new char[64];
+    long[] answerWords = new long[32];
+    long[] referenceWords = new long[32];
+    final long[] asciiMasks = new long[128];
+    final char[] otherChars = new char[64];
+    final long[] otherMasks = new long[64];
+    int[] previousRow = new int[0];
+    int[] currentRow = new int[0];
+
+    char[] fit(char[] buffer, int length) {
+      return buffer.length >= length ? buffer : new char[Math.max(length, buffer.length * 2)];
+    }
+
+    long[] fit(long[] buffer, int length) {
+      return buffer.length >= length ? buffer : new long[Math.max(length, buffer.length * 2)];
+    }
+
+    int[] fit(int[] buffer, int length) {
+      return buffer.length >= length ? buffer : new int[Math.max(length, buffer.length * 2)];
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package recall_techniques;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+// AnswerGrader against a plain, unbounded Levenshtein DP. First checks the bounded edit distance
+// against the DP on random pairs, short and long (past the 64-character bit-parallel limit), with
+// some non-ASCII text. Then grades typed answers of 20-50 characters, a few edits away from their
+// reference, with both, and checks that grading allocates nothing once warmed up. Also checks that
+// paraphrased definitions are accepted and unrelated ones are not.
+//
+//   java recall_techniques.AnswerGraderBenchmark [answers]
+public class AnswerGraderBenchmark {
+  private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz   .,\u00e9\u00fc\u03b1\u4e2d";
+
+  public static void main(String[] args) {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    SplittableRandom random = new SplittableRandom(42);
+
+    for (int i = 0; i < 300_000; i++) {
+      String a = randomText(random, random.nextInt(i % 10 == 0 ? 200 : 70));
+      String b = random.nextBoolean() ? mutate(random, a, random.nextInt(6)) : randomText(random, random.nextInt(70));
+      int max = random.nextInt(8);
+      int expected = Math.min(levenshtein(a, b), max + 1);
+      int actual = AnswerGrader.editDistance(a, b, max);
+      if (actual != expected) {
+        System.out.println("FAILED: distance(\"" + a + "\", \"" + b + "\", " + max + ") = " + actual + ", expected "
+            + expected);
+        System.exit(1);
+      }
+    }
+    System.out.println("Bounded edit distance agrees with the plain DP on 300,000 random pairs");
+    checkDefinitions();
+
+    String[] references = new String[1024];
+    String[] answers = new String[references.length];
+    for (int i = 0; i < references.length; i++) {
+      references[i] = randomText(random, 20 + random.nextInt(31));
+      answers[i] = mutate(random, references[i], random.nextInt(4));
+    }
+    AnswerGrader grader = AnswerGrader.defaults();
+    for (int i = 0; i < 100_000; i++) { // warm up, and grow the scratch buffers
+      grader.matches(answers[i % answers.length], references[i % references.length]);
+      levenshtein(answers[i % answers.length], references[i % references.length]);
+    }
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long allocated = threads.getCurrentThreadAllocatedBytes();
+    long start = System.nanoTime();
+    int accepted = 0;
+    for (int i = 0; i < count; i++) {
+      accepted += grader.matches(answers[i % answers.length], references[i % references.length]) ? 1 : 0;
+    }
+    long graderNanos = System.nanoTime() - start;
+    allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+    start = System.nanoTime();
+    long sink = 0;
+    for (int i = 0; i < count; i++) {
+      sink += levenshtein(answers[i % answers.length], references[i % references.length]);
+    }
+    long dpNanos = System.nanoTime() - start;
+    System.out.printf("%,d answers: AnswerGrader %.2f us each (%d%% accepted, %,d bytes allocated), "
+        + "plain DP %.2f us each (%d)%n", count, graderNanos / 1e3 / count, accepted * 100L / count, allocated,
+        dpNanos / 1e3 / count, sink % 2);
+    if (allocated > 64 * 1024) { // room for the odd JIT or metrics allocation, not one per answer
+      System.out.println("FAILED: grading allocated " + allocated + " bytes");
+      System.exit(1);
+    }
+    System.out.println("OK");
+  }
+
+  private static void checkDefinitions() {
+    String definition = "Photosynthesis is the process by which green plants use sunlight to turn carbon dioxide and "
+        + "water into glucose and oxygen, mostly in the leaves.";
+    String[][] answers = {
+        { "plants using sunlight to make glucose", "true" },
+        { "The proccess where plants turn water and carbon dioxide into sugar", "true" },
+        { "Photosynthesis is how green plants use sunlight to turn carbon dioxide and water into glucose and "
+            + "oxygen.", "true" },
+        { "photosynthesis", "false" },
+        { "A type of cell division in animals", "false" },
+        { "the process", "false" } };
+    AnswerGrader grader = AnswerGrader.defaults();
+    for (String[] answer : answers) {
+      boolean expected = Boolean.parseBoolean(answer[1]);
+      if (grader.coversDefinition(answer[0], "Photosynthesis", definition) != expected) {
+        System.out.println("FAILED: \"" + answer[0] + "\" graded " + !expected + " as a definition");
+        System.exit(1);
+      }
+      if (!expected || answer[0].length() > 60) {
+        continue;
+      }
+      if (grader.matches(answer[0], definition)) {
+        System.out.println("FAILED: \"" + answer[0] + "\" already matched the whole sentence");
+        System.exit(1);
+      }
+    }
+    System.out.println("Definitions: " + answers.length + " paraphrased and unrelated answers graded as expected");
+  }
+
+  private static String randomText(SplittableRandom random, int length) {
+    StringBuilder text = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+    }
+    return text.toString();
+  }
+
+  // Apply random insertions, deletions and substitutions
+  private static String mutate(SplittableRandom random, String text, int edits) {
+    StringBuilder result = new StringBuilder(text);
+    for (int i = 0; i < edits; i++) {
+      int at = random.nextInt(result.length() + 1);
+      char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+      int kind = result.length() == 0 ? 0 : random.nextInt(3);
+      if (kind == 0) {
+        result.insert(at, c);
+      } else if (at < result.length()) {
+        if (kind == 1) {
+          result.deleteCharAt(at);
+        } else {
+          result.setCharAt(at, c);
+        }
+      }
+    }
+    return result.toString();
+  }
+
+  // The textbook DP over every cell, allocating its two rows per call
+  private static int levenshtein(String a, String b) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      for (int j = 1; j <= b.length(); j++) {
+        int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[b.length()];
+  }
+}
@@ -0,0 +1,28 @@
+package recall_techniques;
+
+import java.util.List;
+
+// One student's submitted answers, by question index
+public class AnswerSet {
+  private final String student;
+  private final List<String> answers;
+
+  public AnswerSet(String student, List<String> answers) {
+    this.student = student;
+    this.answers = List.copyOf(answers);
+  }
+
+  // Parse an answer sheet line: the student, then one answer per question, separated by tabs
+  public static AnswerSet parse(String line) {
+    String[] fields = line.split("\t", -1);
+    return new AnswerSet(fields[0], List.of(fields).subList(1, fields.length));
+  }
+
+  public String getStudent() {
+    return student;
+  }
+
+  public List<String> getAnswers() {
+    return answers;
+  }
+}
@@ -0,0 +1,65 @@
+package recall_techniques;
+
+import data.QuestionBank;
+import data.QuestionBankFile;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Grades submitted answer sets against a question bank's reference answers without any console
+// interaction, e.g. for a class-wide quiz. Answer sets are independent, so they are graded in
+// parallel across all cores; AnswerGrader keeps its scratch space per thread.
+public class BatchGrader {
+  private final QuestionBank questionBank;
+  private final AnswerGrader grader;
+
+  public BatchGrader(QuestionBank questionBank, AnswerGrader grader) {
+    this.questionBank = questionBank;
+    this.grader = grader;
+  }
+
+  // Unanswered questions count as wrong; answers beyond the bank are ignored
+  public QuizResult grade(AnswerSet answerSet) {
+    List<String> answers = answerSet.getAnswers();
+    int answered = Math.min(answers.size(), questionBank.size());
+    int correct = 0;
+    for (int i = 0; i < answered; i++) {
+      if (grader.matches(questionBank, i, answers.get(i))) {
+        correct++;
+      }
+    }
+    return new QuizResult(answerSet.getStudent(), correct, questionBank.size());
+  }
+
+  // Grade every answer set in parallel; results come back in the order the sets were submitted
+  public List<QuizResult> gradeAll(Stream<AnswerSet> answerSets) {
+    return answerSets.parallel().map(this::grade).collect(Collectors.toList());
+  }
+
+  // Answer sheets, one AnswerSet.parse line per student; blank lines are skipped
+  public static Stream<AnswerSet> readAnswerSheets(Path file) throws IOException {
+    return Files.lines(file).filter(line -> !line.isBlank()).map(AnswerSet::parse);
+  }
+
+  // Grade a sheet file against an exported question bank and print each student's result
+  public static void run(Path bankFile, Path sheetFile, PrintStream out) throws IOException {
+    QuestionBank bank = QuestionBankFile.open(bankFile);
+    BatchGrader batchGrader = new BatchGrader(bank, AnswerGrader.defaults());
+    long start = System.nanoTime();
+    List<QuizResult> results;
+    try (Stream<AnswerSet> sheets = readAnswerSheets(sheetFile)) {
+      results = batchGrader.gradeAll(sheets);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    for (QuizResult result : results) {
+      out.println(result + " " + result.feedback());
+    }
+    out.printf("Graded %d answer sets in %.2f s (%.0f sets/s).%n", results.size(), seconds,
+        results.size() / Math.max(seconds, 1e-9));
+  }
+}
@@ -0,0 +1,346 @@
+package recall_techniques;
+
+import data.ContentChunks;
+import data.DataStorage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import shared.Keyword;
+import shared.Log;
+
+// Keeps the keyword counts of one study file up to date as it is edited. The file is cut into
+// content-defined chunks (see ContentChunks), so an edit only changes the chunks around it and
+// every other chunk keeps its content key. Each chunk remembers the words it contributed, in a
+// spill file rather than on the heap, so memory holds one table of the file's distinct words
+// however large the file is. A refresh subtracts the chunks that disappeared and tokenizes only
+// the new ones, a batch at a time; unchanged chunks cost just the hashing pass. New chunks are
+// tokenized in parallel or not as the KeywordExtractor mode decides for their total size. A
+// WatchService can refresh in the background as soon as the file is saved.
+public class IncrementalAnalyzer {
+  private static final long DEBOUNCE_MILLIS = 300; // editors save in several writes
+  private static final int MAX_ANALYZERS = 2; // files kept analyzed; each holds a table of its words
+  private static final int BATCH = Math.max(1, ForkJoinPool.getCommonPoolParallelism()); // chunks tokenized at once
+  private static final long SPILL_SLACK = 64L << 20; // bytes of dropped chunks kept in the spill file
+  private static final Map<Path, IncrementalAnalyzer> ANALYZERS = new LinkedHashMap<>(4, 0.75f, true);
+
+  private final Path file;
+  private final KeywordExtractor extractor; // decides whether new chunks are tokenized in parallel
+  private KeywordCounts counts = new KeywordCounts();
+  private final Map<Long, Chunk> chunks = new HashMap<>(); // by content hash and length
+  private Path spillFile; // word ids and counts of each chunk, read back when its copies change
+  private FileChannel spill;
+  private long spillLength;
+  private long liveSpillBytes; // the part of the spill file that belongs to current chunks
+  private long analyzedSize = -1;
+  private long analyzedModified = -1;
+  private int changedChunks;
+  private int reusedChunks;
+  private Thread watcher;
+
+  // An analyzer of its own, not shared through forFile; for comparing modes
+  IncrementalAnalyzer(File file, KeywordExtractor.Mode mode) {
+    this(file.toPath().toAbsolutePath(), new KeywordExtractor(mode));
+  }
+
+  private IncrementalAnalyzer(Path file, KeywordExtractor extractor) {
+    this.file = file;
+    this.extractor = extractor;
+  }
+
+  // The analyzer for this file, shared so a reload can build on the previous analysis
+  public static IncrementalAnalyzer forFile(File file) {
+    Path path = file.toPath().toAbsolutePath();
+    synchronized (ANALYZERS) {
+      IncrementalAnalyzer analyzer = ANALYZERS.get(path);
+      if (analyzer == null) {
+        analyzer = new IncrementalAnalyzer(path, new KeywordExtractor()); // Mode from the system property
+        ANALYZERS.put(path, analyzer);
+        if (ANALYZERS.size() > MAX_ANALYZERS) {
+          IncrementalAnalyzer eldest = ANALYZERS.values().iterator().next();
+          ANALYZERS.remove(eldest.file);
+          eldest.close();
+        }
+      }
+      return analyzer;
+    }
+  }
+
+  // The k most frequent accepted words of the file's current content, most frequent first
+  public synchronized List<Keyword> top(int k, KeywordCounts.WordFilter filter) throws IOException {
+    refresh();
+    return counts.top(k, filter);
+  }
+
+  // Bring the counts up to date with the file, touching only the chunks that changed
+  public synchronized void refresh() throws IOException {
+    File current = file.toFile();
+    if (current.length() == analyzedSize && current.lastModified() == analyzedModified) {
+      return;
+    }
+    ContentChunks split = ContentChunks.of(current);
+    Map<Long, List<long[]>> found = new HashMap<>(); // content key -> [offset, length] of each copy
+    for (int i = 0; i < split.count(); i++) {
+      found.computeIfAbsent(split.key(i), k -> new ArrayList<>(1)).add(new long[] { split.offset(i), split.length(i) });
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      openSpill();
+      changedChunks = 0;
+      reusedChunks = 0;
+
+      // Subtract copies that are gone, including every copy of chunks that disappeared
+      for (Chunk chunk : new ArrayList<>(chunks.values())) {
+        List<long[]> copies = found.get(chunk.key);
+        int remaining = copies == null ? 0 : copies.size();
+        if (remaining < chunk.copies) {
+          apply(chunk, remaining - chunk.copies);
+          chunk.copies = remaining;
+        }
+        if (remaining == 0) {
+          chunks.remove(chunk.key);
+          liveSpillBytes -= chunk.bytes();
+        }
+      }
+
+      // Tokenize new chunk contents, in parallel if the mode says so for their size, a batch at a
+      // time, and fold each batch into the counts before the next, so only a batch of per-chunk
+      // tables is ever in memory
+      List<Map.Entry<Long, List<long[]>>> added = new ArrayList<>();
+      long addedBytes = 0;
+      for (Map.Entry<Long, List<long[]>> entry : found.entrySet()) {
+        if (!chunks.containsKey(entry.getKey())) {
+          added.add(entry);
+          addedBytes += entry.getValue().get(0)[1];
+        }
+      }
+      boolean parallel = extractor.countsInParallel(addedBytes);
+      int batchSize = parallel ? BATCH : 1;
+      for (int from = 0; from < added.size(); from += batchSize) {
+        List<Map.Entry<Long, List<long[]>>> batch = added.subList(from, Math.min(added.size(), from + batchSize));
+        List<KeywordCounts> tokenized;
+        try {
+          tokenized = (parallel ? batch.parallelStream() : batch.stream())
+              .map(entry -> tokenize(channel, entry.getValue().get(0))).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+          throw e.getCause();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+          Chunk chunk = store(batch.get(i).getKey(), tokenized.get(i), batch.get(i).getValue().size());
+          chunks.put(chunk.key, chunk);
+          changedChunks++;
+        }
+      }
+
+      // Add copies of known chunks that now appear more often
+      for (Map.Entry<Long, List<long[]>> entry : found.entrySet()) {
+        Chunk chunk = chunks.get(entry.getKey());
+        int wanted = entry.getValue().size();
+        if (wanted > chunk.copies) {
+          apply(chunk, wanted - chunk.copies);
+          chunk.copies = wanted;
+        }
+        reusedChunks += wanted;
+      }
+      reusedChunks -= changedChunks;
+      if (spillLength - liveSpillBytes > Math.max(SPILL_SLACK, liveSpillBytes)) {
+        compactSpill();
+      }
+    }
+    analyzedSize = split.size();
+    analyzedModified = split.modified();
+  }
+
+  // Chunks tokenized by the last refresh that changed anything
+  public synchronized int changedChunks() {
+    return changedChunks;
+  }
+
+  // Chunks the last refresh found unchanged
+  public synchronized int reusedChunks() {
+    return reusedChunks;
+  }
+
+  // Refresh in the background whenever the file is saved, then run onChange; idempotent
+  public synchronized void watch(Runnable onChange) throws IOException {
+    if (watcher != null) {
+      return;
+    }
+    WatchService service = file.getFileSystem().newWatchService();
+    file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    watcher = new Thread(() -> watchLoop(service, onChange), "notes-watcher-" + file.getFileName());
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  // Stop watching and drop the analysis; a later refresh starts over
+  public synchronized void close() {
+    if (watcher != null) {
+      watcher.interrupt();
+      watcher = null;
+    }
+    chunks.clear();
+    counts = new KeywordCounts();
+    analyzedSize = -1;
+    analyzedModified = -1;
+    if (spill != null) {
+      try {
+        spill.close();
+        Files.deleteIfExists(spillFile);
+      } catch (IOException e) {
+        Log.warn("questions", "Error removing " + spillFile + ": " + e.getMessage());
+      }
+      spill = null;
+    }
+  }
+
+  private void watchLoop(WatchService service, Runnable onChange) {
+    try (service) {
+      while (true) {
+        WatchKey key = service.take();
+        boolean changed = false;
+        do {
+          for (WatchEvent<?> event : key.pollEvents()) {
+            changed |= file.getFileName().equals(event.context());
+          }
+          key.reset();
+          key = service.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS); // Wait for the save to settle
+        } while (key != null);
+        if (changed && Files.exists(file)) {
+          try {
+            refresh();
+            onChange.run();
+          } catch (IOException e) {
+            Log.warn("questions", "Error re-analyzing " + file.getFileName() + ": " + e.getMessage());
+          }
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // Closed: stop watching
+    } catch (IOException e) {
+      Log.warn("questions", "Stopped watching " + file.getFileName() + ": " + e.getMessage());
+    }
+  }
+
+  private static KeywordCounts tokenize(FileChannel channel, long[] range) {
+    KeywordCounts local = new KeywordCounts();
+    try {
+      DataStorage.forEachWord(channel, range[0], range[0] + range[1], local);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return local;
+  }
+
+  private void openSpill() throws IOException {
+    if (spill == null) {
+      spillFile = Files.createTempFile("studyplanner-chunks", ".spill");
+      spillFile.toFile().deleteOnExit();
+      spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      spillLength = 0;
+      liveSpillBytes = 0;
+    }
+  }
+
+  // Add a new chunk's words to the counts, copies times, and append their ids and counts to the spill
+  private Chunk store(long key, KeywordCounts local, int copies) throws IOException {
+    ByteBuffer entries = ByteBuffer.allocate(local.size() * Chunk.ENTRY_BYTES);
+    for (int id = 0; id < local.size(); id++) {
+      byte[] word = local.wordBytes(id);
+      int shared = counts.intern(word, word.length);
+      long count = local.count(id); // At most a chunk's length, so it fits an int
+      counts.increment(shared, count * copies);
+      entries.putInt(shared).putInt((int) count);
+    }
+    Chunk chunk = new Chunk(key, spillLength, local.size(), copies);
+    entries.flip();
+    writeFully(spill, entries, spillLength);
+    spillLength += chunk.bytes();
+    liveSpillBytes += chunk.bytes();
+    return chunk;
+  }
+
+  // Add or subtract copies of a chunk's words, read back from the spill
+  private void apply(Chunk chunk, int copyDelta) throws IOException {
+    ByteBuffer entries = ByteBuffer.allocate((int) chunk.bytes());
+    while (entries.hasRemaining()) {
+      if (spill.read(entries, chunk.offset + entries.position()) < 0) {
+        throw new IOException("Spill file " + spillFile + " is truncated");
+      }
+    }
+    entries.flip();
+    for (int i = 0; i < chunk.entries; i++) {
+      counts.increment(entries.getInt(), (long) entries.getInt() * copyDelta);
+    }
+  }
+
+  // Copy the current chunks' entries to a new spill file, leaving the dropped ones behind
+  private void compactSpill() throws IOException {
+    Path compacted = Files.createTempFile("studyplanner-chunks", ".spill");
+    compacted.toFile().deleteOnExit();
+    FileChannel target = FileChannel.open(compacted, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long length = 0;
+    try {
+      for (Chunk chunk : chunks.values()) {
+        for (long copied = 0; copied < chunk.bytes();) {
+          copied += spill.transferTo(chunk.offset + copied, chunk.bytes() - copied, target);
+        }
+        chunk.offset = length;
+        length += chunk.bytes();
+      }
+    } catch (IOException e) {
+      target.close();
+      Files.deleteIfExists(compacted);
+      throw e;
+    }
+    spill.close();
+    Files.deleteIfExists(spillFile);
+    spill = target;
+    spillFile = compacted;
+    spillLength = length;
+    liveSpillBytes = length;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  // One distinct chunk content: where the ids and counts of its words are in the spill file
+  private static final class Chunk {
+    static final int ENTRY_BYTES = 8; // word id in the shared table, count in the chunk
+
+    final long key;
+    final int entries;
+    long offset;
+    int copies;
+
+    Chunk(long key, long offset, int entries, int copies) {
+      this.key = key;
+      this.offset = offset;
+      this.entries = entries;
+      this.copies = copies;
+    }
+
+    long bytes() {
+      return (long) entries * ENTRY_BYTES;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package recall_techniques;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import shared.Keyword;
+
+// Top-10 noun extraction with KeywordExtractor against the stream pipeline it replaced (read the
+// whole file, split on \W+, groupingBy/counting, sort every entry). Corpora are generated with a
+// Zipf-like vocabulary; the best of three runs is reported, and both must agree on the counts.
+//
+//   java recall_techniques.KeywordBenchmark [size in MB]...
+public class KeywordBenchmark {
+  private static final int VOCABULARY = 50_000;
+  private static final int K = 10;
+
+  public static void main(String[] args) throws IOException {
+    int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[] { 1, 16, 256 };
+    for (int megabytes : sizes) {
+      Path corpus = Files.createTempFile("keywords", ".txt");
+      try {
+        generate(corpus, megabytes * (1L << 20), 42);
+        File file = corpus.toFile();
+        KeywordExtractor extractor = new KeywordExtractor(KeywordExtractor.Mode.SEQUENTIAL);
+        List<Keyword> top = extractor.topNouns(file, K);
+        long extractorNanos = best(() -> extractor.topNouns(file, K));
+        String stream;
+        try {
+          List<Long> streamCounts = streamPipeline(file);
+          List<Long> counts = top.stream().map(Keyword::getCount).collect(Collectors.toList());
+          if (!streamCounts.equals(counts)) {
+            System.out.println("FAILED: counts differ: " + counts + " vs " + streamCounts);
+            System.exit(1);
+          }
+          stream = String.format("%,8d ms", best(() -> streamPipeline(file)) / 1_000_000);
+        } catch (OutOfMemoryError e) {
+          stream = "out of memory";
+        }
+        System.out.printf("%5d MB: KeywordExtractor %,8d ms   stream pipeline %s   (heap %d MB)%n", megabytes,
+            extractorNanos / 1_000_000, stream, Runtime.getRuntime().maxMemory() >> 20);
+      } finally {
+        Files.deleteIfExists(corpus);
+      }
+    }
+  }
+
+  private interface Run {
+    Object run() throws IOException;
+  }
+
+  private static long best(Run run) throws IOException {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < 3; i++) {
+      long start = System.nanoTime();
+      run.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best;
+  }
+
+  // The pre-KeywordExtractor code path, returning the top counts
+  private static List<Long> streamPipeline(File file) throws IOException {
+    String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+    Map<String, Long> wordCount = Arrays.asList(content.split("\\W+")).stream()
+        .collect(Collectors.groupingBy(w -> w, Collectors.counting()));
+    return wordCount.entrySet().stream()
+        .filter(entry -> !entry.getKey().isEmpty()
+            && (Character.isUpperCase(entry.getKey().charAt(0)) || entry.getKey().endsWith("s")))
+        .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+        .limit(K)
+        .map(Map.Entry::getValue)
+        .collect(Collectors.toList());
+  }
+
+  // Sentences of words drawn with probability about 1/rank, some capitalized or plural
+  static void generate(Path file, long bytes, long seed) throws IOException {
+    SplittableRandom random = new SplittableRandom(seed);
+    String[] vocabulary = new String[VOCABULARY];
+    for (int i = 0; i < VOCABULARY; i++) {
+      StringBuilder word = new StringBuilder();
+      for (int length = 3 + random.nextInt(8); word.length() < length;) {
+        word.append((char) ('a' + random.nextInt(26)));
+      }
+      if (i % 5 == 0) {
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+      } else if (i % 5 == 1) {
+        word.append('s');
+      }
+      vocabulary[i] = word.toString();
+    }
+    double logRange = Math.log(VOCABULARY);
+    List<String> sentence = new ArrayList<>();
+    try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+      long written = 0;
+      while (written < bytes) {
+        sentence.clear();
+        for (int words = 5 + random.nextInt(15); sentence.size() < words;) {
+          sentence.add(vocabulary[(int) Math.exp(random.nextDouble() * logRange) - 1]);
+        }
+        String line = String.join(random.nextInt(4) == 0 ? ", " : " ", sentence) + ".\n";
+        out.write(line);
+        written += line.length();
+      }
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package recall_techniques;
+
+import data.WordVisitor;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import shared.Keyword;
+
+// Word counts in an open-addressing hash table keyed directly by the word's bytes. Counting a word
+// that is already known allocates nothing; each distinct word gets a dense, stable id, and its
+// bytes are copied once when it is first seen.
+public class KeywordCounts implements WordVisitor {
+  // Decides which words may become keywords, looking at the raw word bytes
+  public interface WordFilter {
+    boolean accept(byte[] word);
+  }
+
+  private int[] slots; // open-addressing table of id + 1, 0 marks an empty slot
+  private int[] hashes; // per id
+  private byte[][] words; // per id
+  private long[] counts; // per id
+  private int size;
+
+  public KeywordCounts() {
+    slots = new int[1024];
+    hashes = new int[512];
+    words = new byte[512][];
+    counts = new long[512];
+  }
+
+  @Override
+  public void word(byte[] word, int length, long offset) {
+    int id = intern(word, length); // Intern first: it may grow the counts array
+    counts[id]++;
+  }
+
+  // Id of the word, registering it with a zero count if it is new
+  public int intern(byte[] word, int length) {
+    int hash = hash(word, length);
+    int mask = slots.length - 1;
+    for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+      int entry = slots[slot];
+      if (entry == 0) {
+        return insert(slot, Arrays.copyOf(word, length), hash);
+      }
+      int id = entry - 1;
+      if (hashes[id] == hash && Arrays.equals(words[id], 0, words[id].length, word, 0, length)) {
+        return id;
+      }
+    }
+  }
+
+  // Id of the word, or -1 if it has never been counted
+  public int find(byte[] word, int length) {
+    int hash = hash(word, length);
+    int mask = slots.length - 1;
+    for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+      int entry = slots[slot];
+      if (entry == 0) {
+        return -1;
+      }
+      int id = entry - 1;
+      if (hashes[id] == hash && Arrays.equals(words[id], 0, words[id].length, word, 0, length)) {
+        return id;
+      }
+    }
+  }
+
+  public void increment(int id, long delta) {
+    counts[id] += delta;
+  }
+
+  // Add every count of the other table into this one
+  public void addAll(KeywordCounts other) {
+    for (int id = 0; id < other.size; id++) {
+      int target = intern(other.words[id], other.words[id].length);
+      counts[target] += other.counts[id];
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long count(int id) {
+    return counts[id];
+  }
+
+  public byte[] wordBytes(int id) {
+    return words[id];
+  }
+
+  public String word(int id) {
+    return new String(words[id], StandardCharsets.US_ASCII);
+  }
+
+  // The k accepted words with the highest counts, best first, selected with a bounded min-heap in
+  // O(n log k). Ties go to the alphabetically smaller word so the result is deterministic.
+  public List<Keyword> top(int k, WordFilter filter) {
+    int[] heap = new int[Math.max(k, 0)];
+    int heapSize = 0;
+    for (int id = 0; id < size && k > 0; id++) {
+      if (counts[id] <= 0 || !filter.accept(words[id])) {
+        continue;
+      }
+      if (heapSize < k) {
+        heap[heapSize] = id;
+        siftUp(heap, heapSize++);
+      } else if (better(id, heap[0])) {
+        heap[0] = id; // Replace the weakest of the current top k
+        siftDown(heap, heapSize);
+      }
+    }
+    List<Keyword> result = new ArrayList<>(heapSize);
+    while (heapSize > 0) {
+      int id = heap[0];
+      heap[0] = heap[--heapSize];
+      siftDown(heap, heapSize);
+      result.add(new Keyword(word(id), counts[id]));
+    }
+    Collections.reverse(result); // The heap yields the weakest first
+    return result;
+  }
+
+  private boolean better(int a, int b) {
+    if (counts[a] != counts[b]) {
+      return counts[a] > counts[b];
+    }
+    return Arrays.compare(words[a], words[b]) < 0;
+  }
+
+  private void siftUp(int[] heap, int index) {
+    int id = heap[index];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (!better(heap[parent], id)) {
+        break;
+      }
+      heap[index] = heap[parent];
+      index = parent;
+    }
+    heap[index] = id;
+  }
+
+  private void siftDown(int[] heap, int heapSize) {
+    if (heapSize == 0) {
+      return;
+    }
+    int id = heap[0];
+    int index = 0;
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && better(heap[child], heap[child + 1])) {
+        child++; // Pick the weaker child
+      }
+      if (!better(id, heap[child])) {
+        break;
+      }
+      heap[index] = heap[child];
+      index = child;
+    }
+    heap[index] = id;
+  }
+
+  private int insert(int slot, byte[] word, int hash) {
+    int id = size++;
+    if (id == words.length) {
+      int capacity = words.length * 2;
+      hashes = Arrays.copyOf(hashes, capacity);
+      words = Arrays.copyOf(words, capacity);
+      counts = Arrays.copyOf(counts, capacity);
+    }
+    hashes[id] = hash;
+    words[id] = word;
+    slots[slot] = id + 1;
+    if (size * 2 > slots.length) {
+      rehash(); // Keep the load factor at or below 1/2
+    }
+    return id;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int id = 0; id < size; id++) {
+      int slot = hashes[id] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = id + 1;
+    }
+  }
+
+  private static int hash(byte[] word, int length) {
+    int hash = 0x811C9DC5; // FNV-1a
+    for (int i = 0; i < length; i++) {
+      hash = (hash ^ word[i]) * 0x01000193;
+    }
+    return hash ^ (hash >>> 16);
+  }
+}
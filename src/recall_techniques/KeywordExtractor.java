@@ -0,0 +1,108 @@
+package recall_techniques;
+
+import data.DataStorage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import shared.Keyword;
+
+// Picks the most frequent noun-like words of a study file; shared by both recall techniques
+public class KeywordExtractor {
+  // How the file is counted. PARALLEL splits it at word boundaries and counts the pieces on a
+  // ForkJoinPool; both modes produce exactly the same keywords.
+  public enum Mode {
+    SEQUENTIAL, PARALLEL, AUTO
+  }
+
+  private static final long PARALLEL_THRESHOLD = 64L << 20; // AUTO counts files at least this big in parallel
+  static final long SPLIT_SIZE = 16L << 20; // bytes counted by one fork-join leaf
+
+  private final Mode mode;
+
+  // Mode taken from the studyplanner.keywords.mode system property, AUTO by default
+  public KeywordExtractor() {
+    this(Mode.valueOf(System.getProperty("studyplanner.keywords.mode", "auto").toUpperCase(Locale.ROOT)));
+  }
+
+  public KeywordExtractor(Mode mode) {
+    this.mode = mode;
+  }
+
+  // The k most frequent nouns in the file, most frequent first
+  public List<Keyword> topNouns(File file, int k) throws IOException {
+    return count(file).top(k, KeywordExtractor::isNoun);
+  }
+
+  public KeywordCounts count(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (!countsInParallel(size)) {
+        KeywordCounts counts = new KeywordCounts();
+        DataStorage.forEachWord(channel, 0, size, counts);
+        return counts;
+      }
+      try {
+        return ForkJoinPool.commonPool().invoke(new CountTask(channel, 0, size));
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  // Whether this many bytes are counted in parallel; IncrementalAnalyzer asks the same of new chunks
+  boolean countsInParallel(long bytes) {
+    return mode == Mode.PARALLEL || (mode == Mode.AUTO && bytes >= PARALLEL_THRESHOLD);
+  }
+
+  // Check if a word is a noun (simple check: capitalized or plural-looking)
+  public static boolean isNoun(byte[] word) {
+    return (word[0] >= 'A' && word[0] <= 'Z') || word[word.length - 1] == 's';
+  }
+
+  // Counts the words starting in [from, to) with a table local to the worker, then merges upwards
+  private static final class CountTask extends RecursiveTask<KeywordCounts> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient FileChannel channel;
+    private final long from;
+    private final long to;
+
+    CountTask(FileChannel channel, long from, long to) {
+      this.channel = channel;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected KeywordCounts compute() {
+      if (to - from <= SPLIT_SIZE) {
+        KeywordCounts counts = new KeywordCounts();
+        try {
+          // Range reads own the words that start inside them, so pieces never split a word
+          DataStorage.forEachWord(channel, from, to, counts);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return counts;
+      }
+      long middle = from + (to - from) / 2;
+      CountTask right = new CountTask(channel, middle, to);
+      right.fork();
+      KeywordCounts left = new CountTask(channel, from, middle).compute();
+      KeywordCounts rightCounts = right.join();
+      // Fold the smaller table into the larger one
+      if (left.size() >= rightCounts.size()) {
+        left.addAll(rightCounts);
+        return left;
+      }
+      rightCounts.addAll(left);
+      return rightCounts;
+    }
+  }
+}
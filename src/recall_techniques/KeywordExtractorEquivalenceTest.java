@@ -0,0 +1,154 @@
+package recall_techniques;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import shared.Keyword;
+
+// Checks that PARALLEL counting gives exactly the same keywords as SEQUENTIAL on files that span
+// several fork-join leaves. At every point where the parallel count splits the file, a word is
+// planted across the split, right after it, or a run of word bytes too long to count is laid
+// over it; the 1 MB read chunks inside each leaf are crossed by ordinary words everywhere.
+// IncrementalAnalyzer, which builds the question banks, must give the same counts in both modes,
+// on the file as generated and after a paragraph is inserted in the middle.
+//
+//   java recall_techniques.KeywordExtractorEquivalenceTest [size in MB]...
+public class KeywordExtractorEquivalenceTest {
+  private static final int TOO_LONG = (1 << 16) + 10; // over DataStorage's longest countable word
+
+  public static void main(String[] args) throws IOException {
+    long[] sizes = { KeywordExtractor.SPLIT_SIZE + 1, 40L << 20, (64L << 20) + 13 };
+    if (args.length > 0) {
+      sizes = new long[args.length];
+      for (int i = 0; i < args.length; i++) {
+        sizes[i] = Long.parseLong(args[i]) << 20;
+      }
+    }
+    KeywordExtractor sequential = new KeywordExtractor(KeywordExtractor.Mode.SEQUENTIAL);
+    KeywordExtractor parallel = new KeywordExtractor(KeywordExtractor.Mode.PARALLEL);
+    for (long size : sizes) {
+      Path corpus = Files.createTempFile("equivalence", ".txt");
+      try {
+        KeywordBenchmark.generate(corpus, size, size);
+        List<Long> splits = new ArrayList<>();
+        splitPoints(0, Files.size(corpus), splits);
+        plant(corpus, splits);
+        File file = corpus.toFile();
+
+        KeywordCounts expected = sequential.count(file);
+        KeywordCounts actual = parallel.count(file);
+        List<Keyword> expectedAll = expected.top(expected.size(), word -> true);
+        List<Keyword> actualAll = actual.top(actual.size(), word -> true);
+        check(expected.size() == actual.size(), size, "distinct words " + expected.size() + " vs " + actual.size());
+        check(same(expectedAll, actualAll), size, "word counts differ");
+        check(same(sequential.topNouns(file, 10), parallel.topNouns(file, 10)), size, "top nouns differ");
+        checkIncremental(file, sequential, size);
+        System.out.printf("%,d bytes, %d split points: %,d distinct words, identical counts%n", Files.size(corpus),
+            splits.size(), expected.size());
+      } finally {
+        Files.deleteIfExists(corpus);
+      }
+    }
+    System.out.println("OK");
+  }
+
+  // Both modes of IncrementalAnalyzer against a sequential recount, before and after an edit that
+  // changes the chunks around the middle of the file
+  private static void checkIncremental(File file, KeywordExtractor sequential, long size) throws IOException {
+    IncrementalAnalyzer[] analyzers = {
+        new IncrementalAnalyzer(file, KeywordExtractor.Mode.SEQUENTIAL),
+        new IncrementalAnalyzer(file, KeywordExtractor.Mode.PARALLEL) };
+    try {
+      for (int edit = 0; edit < 2; edit++) {
+        if (edit > 0) {
+          insertParagraph(file.toPath(), Files.size(file.toPath()) / 2);
+        }
+        KeywordCounts expected = sequential.count(file);
+        List<Keyword> expectedAll = expected.top(expected.size(), word -> true);
+        for (IncrementalAnalyzer analyzer : analyzers) {
+          check(same(expectedAll, analyzer.top(expected.size() + 1, word -> true)), size,
+              "incremental counts differ from a recount" + (edit > 0 ? " after an edit" : ""));
+        }
+      }
+    } finally {
+      for (IncrementalAnalyzer analyzer : analyzers) {
+        analyzer.close();
+      }
+    }
+  }
+
+  private static void insertParagraph(Path file, long at) throws IOException {
+    Path edited = Files.createTempFile("equivalence", ".txt");
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(edited, StandardOpenOption.WRITE)) {
+      in.transferTo(0, at, out);
+      out.write(ByteBuffer.wrap("\n\nInserted Paragraphs mention Chloroplasts and Mitochondria.\n\n"
+          .getBytes(StandardCharsets.US_ASCII)));
+      in.transferTo(at, in.size() - at, out);
+    }
+    Files.move(edited, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  // Where KeywordExtractor's fork-join count splits [from, to)
+  private static void splitPoints(long from, long to, List<Long> splits) {
+    if (to - from <= KeywordExtractor.SPLIT_SIZE) {
+      return;
+    }
+    long middle = from + (to - from) / 2;
+    splits.add(middle);
+    splitPoints(from, middle, splits);
+    splitPoints(middle, to, splits);
+  }
+
+  // Cycle through: a word straddling the split, a word starting exactly at it, an uncountable run
+  private static void plant(Path file, List<Long> splits) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      for (int i = 0; i < splits.size(); i++) {
+        long split = splits.get(i);
+        String text;
+        long at;
+        switch (i % 3) {
+          case 0:
+            text = " Straddling ";
+            at = split - 5;
+            break;
+          case 1:
+            text = " Starting ";
+            at = split - 1;
+            break;
+          default:
+            text = " " + "x".repeat(TOO_LONG) + " ";
+            at = split - TOO_LONG / 2;
+        }
+        channel.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)), at);
+      }
+    }
+  }
+
+  private static boolean same(List<Keyword> a, List<Keyword> b) {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      if (!a.get(i).getWord().equals(b.get(i).getWord()) || a.get(i).getCount() != b.get(i).getCount()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void check(boolean condition, long size, String failure) {
+    if (!condition) {
+      System.out.println("FAILED at " + size + " bytes: " + failure);
+      System.exit(1);
+    }
+  }
+}
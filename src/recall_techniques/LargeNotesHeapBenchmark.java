@@ -0,0 +1,74 @@
+package recall_techniques;
+
+import data.DataStorage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+// Heap use while loading multi-GB notes. For each size, generates a notes file in a scratch
+// directory, streams it through DataStorage.forEachWord, then loads it the way both recall
+// techniques do (ActiveRecall.loadQuestions and SpacedRepetition's loader: keyword counts, note
+// index, question bank), sampling the live heap of each step with LiveHeap. Fails if a step adds
+// more than its bound at any size, so the heap has to stay flat however large the file grows.
+//
+//   java recall_techniques.LargeNotesHeapBenchmark [notes size in MB]...
+public class LargeNotesHeapBenchmark {
+  private static final long MAX_STREAM_HEAP = 8L << 20; // one 1 MB read buffer and the current word
+  // As in QuestionPipelineBenchmark: word tables, a chunk's index table and the chunks being tokenized
+  private static final long MAX_LOADER_HEAP = (32L << 20) + ForkJoinPool.getCommonPoolParallelism() * (8L << 20);
+
+  public static void main(String[] args) throws Exception {
+    int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+        : new int[] { 1024, 2048, 4096 };
+    Path home = Files.createTempDirectory("studyplanner-large-notes");
+    System.setProperty("studyplanner.home", home.toString());
+    for (int megabytes : sizes) {
+      Path notes = home.resolve("notes-" + megabytes + ".txt");
+      KeywordBenchmark.generate(notes, megabytes * (1L << 20), megabytes);
+      File file = notes.toFile();
+
+      LiveHeap heap = new LiveHeap();
+      long before = heap.before();
+      long start = System.nanoTime();
+      long[] words = new long[1];
+      DataStorage.forEachWord(file, (word, length, offset) -> words[0]++);
+      long streamMillis = (System.nanoTime() - start) / 1_000_000;
+      long stream = heap.added();
+
+      heap = new LiveHeap();
+      start = System.nanoTime();
+      ActiveRecall activeRecall = new ActiveRecall(file);
+      activeRecall.loadQuestions();
+      long activeMillis = (System.nanoTime() - start) / 1_000_000;
+      long active = heap.added();
+
+      heap = new LiveHeap();
+      start = System.nanoTime();
+      SpacedRepetition spacedRepetition = new SpacedRepetition(file, message -> {
+      });
+      spacedRepetition.loadQuestions();
+      long spacedMillis = (System.nanoTime() - start) / 1_000_000;
+      long spaced = heap.added();
+
+      System.out.printf("%,6d MB notes, %,d words. Live heap added (time): forEachWord +%d MB (%,d ms), "
+          + "Active Recall load +%d MB (%,d ms), Spaced Repetition load +%d MB (%,d ms); %d MB before%n",
+          megabytes, words[0], stream >> 20, streamMillis, active >> 20, activeMillis, spaced >> 20, spacedMillis,
+          before >> 20);
+      check(activeRecall.getQuestionBank().size() > 0, "no questions from " + megabytes + " MB of notes");
+      check(stream <= MAX_STREAM_HEAP, "forEachWord kept " + (stream >> 20) + " MB on " + megabytes + " MB");
+      check(active <= MAX_LOADER_HEAP, "Active Recall kept " + (active >> 20) + " MB on " + megabytes + " MB");
+      check(spaced <= MAX_LOADER_HEAP, "Spaced Repetition kept " + (spaced >> 20) + " MB on " + megabytes + " MB");
+      Files.delete(notes); // The next size needs the disk space more
+    }
+    System.out.println("OK");
+  }
+
+  private static void check(boolean condition, String failure) {
+    if (!condition) {
+      System.out.println("FAILED: " + failure);
+      System.exit(1);
+    }
+  }
+}
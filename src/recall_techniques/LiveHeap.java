@@ -0,0 +1,45 @@
+package recall_techniques;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Samples the live heap while a benchmark run goes on: a full collection every SAMPLE_MILLIS, then
+// the heap in use. Heap usage alone also counts garbage not yet collected, which grows with the
+// length of the run rather than with what the run holds on to.
+final class LiveHeap {
+  private static final long SAMPLE_MILLIS = 250;
+
+  private final long before = collect();
+  private final AtomicLong peak = new AtomicLong(before);
+  private final Thread sampler = new Thread(() -> {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        Thread.sleep(SAMPLE_MILLIS);
+        peak.accumulateAndGet(collect(), Math::max);
+      }
+    } catch (InterruptedException e) {
+      // Stopped
+    }
+  }, "live-heap");
+
+  LiveHeap() {
+    sampler.setDaemon(true);
+    sampler.start();
+  }
+
+  long before() {
+    return before;
+  }
+
+  // Stop sampling and return the most live heap seen over what was live at the start
+  long added() throws InterruptedException {
+    sampler.interrupt();
+    sampler.join();
+    return Math.max(peak.get(), collect()) - before;
+  }
+
+  private static long collect() {
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
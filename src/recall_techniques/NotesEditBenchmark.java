@@ -0,0 +1,143 @@
+package recall_techniques;
+
+import data.NoteHit;
+import data.NoteIndex;
+import data.QuestionBank;
+import data.QuestionBankCache;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import shared.Keyword;
+
+// What the notes watcher does after a save, step by step: refresh the keyword counts, hash the
+// content for the question bank cache, bring the note index up to date and generate the new
+// bank. A paragraph is inserted in the middle of a large notes file; each step is timed against
+// what it costs for the whole file (a SHA-256 of every byte, indexing into an empty index). The
+// updated index must then answer exactly like one built from scratch, and the digest must match
+// one computed without any earlier chunking. Runs in a scratch directory.
+//
+//   java recall_techniques.NotesEditBenchmark [notes size in MB]
+public class NotesEditBenchmark {
+  public static void main(String[] args) throws Exception {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+    Path home = Files.createTempDirectory("studyplanner-edit");
+    System.setProperty("studyplanner.home", home.toString());
+    Path notes = home.resolve("notes.txt");
+    KeywordBenchmark.generate(notes, megabytes * (1L << 20), 11);
+    File file = notes.toFile();
+    QuestionGenerator generator = new QuestionGenerator(10);
+
+    long start = System.nanoTime();
+    QuestionBankCache.shared().get(file, generator.cacheKey(), generator::generate);
+    System.out.printf("%d MB notes, first load: %.0f ms%n", megabytes, (System.nanoTime() - start) / 1e6);
+
+    insertParagraph(notes, "Mitochondria are the powerhouse of the cell, and Ribosomes build its proteins.\n");
+    IncrementalAnalyzer analyzer = IncrementalAnalyzer.forFile(file);
+    start = System.nanoTime();
+    analyzer.refresh();
+    long refresh = System.nanoTime() - start;
+    start = System.nanoTime();
+    String digest = QuestionBankCache.shared().contentHash(file);
+    long hash = System.nanoTime() - start;
+    start = System.nanoTime();
+    NoteIndex.shared().add(file);
+    long index = System.nanoTime() - start;
+    start = System.nanoTime();
+    QuestionBank bank = QuestionBankCache.shared().get(file, generator.cacheKey(), generator::generate);
+    long generate = System.nanoTime() - start;
+    System.out.printf("After the edit (%d of %d chunks changed): refresh %.0f ms, content hash %.0f ms, "
+        + "note index %.0f ms, new bank %.0f ms%n", analyzer.changedChunks(),
+        analyzer.changedChunks() + analyzer.reusedChunks(), refresh / 1e6, hash / 1e6, index / 1e6, generate / 1e6);
+
+    start = System.nanoTime();
+    sha256(notes);
+    long wholeHash = System.nanoTime() - start;
+    NoteIndex fresh = new NoteIndex(home.resolve("fresh-index"));
+    start = System.nanoTime();
+    fresh.add(file);
+    long wholeIndex = System.nanoTime() - start;
+    System.out.printf("Whole file: SHA-256 %.0f ms, indexing %.0f ms%n", wholeHash / 1e6, wholeIndex / 1e6);
+
+    Path copy = home.resolve("copy.txt");
+    Files.copy(notes, copy);
+    String expected = new QuestionBankCache(home.resolve("fresh-cache"), 1, Long.MAX_VALUE).contentHash(copy.toFile());
+    check(digest.equals(expected), "the digest after the edit differs from one computed from scratch");
+    List<Keyword> keywords = new ArrayList<>(analyzer.top(200, QuestionGenerator::isCandidate));
+    keywords.add(new Keyword("Ribosomes", 1));
+    for (Keyword keyword : keywords) {
+      String word = keyword.getWord();
+      check(same(NoteIndex.shared().search(word, 100), fresh.search(word, 100)), "search for " + word + " differs");
+      check(String.valueOf(NoteIndex.shared().sourceSentence(file, word))
+          .equals(String.valueOf(fresh.sourceSentence(file, word))), "source sentence of " + word + " differs");
+    }
+    check(NoteIndex.shared().sourceSentence(file, "Ribosomes").contains("powerhouse"), "the edit is not indexed");
+    System.out.printf("Updated index matches a fresh one on %d terms; %d questions generated%n", keywords.size(),
+        bank.size());
+    System.out.println("OK");
+  }
+
+  // Rewrite the file with the paragraph added after the line closest to its middle
+  private static void insertParagraph(Path file, String paragraph) throws IOException {
+    Path edited = file.resolveSibling(file.getFileName() + ".edited");
+    long middle = Files.size(file) / 2;
+    try (InputStream in = Files.newInputStream(file); OutputStream out = Files.newOutputStream(edited)) {
+      byte[] buffer = new byte[1 << 16];
+      long copied = 0;
+      boolean inserted = false;
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        int from = 0;
+        for (int i = 0; i < read && !inserted; i++) {
+          if (copied + i >= middle && buffer[i] == '\n') {
+            out.write(buffer, 0, i + 1);
+            out.write(paragraph.getBytes(StandardCharsets.US_ASCII));
+            from = i + 1;
+            inserted = true;
+          }
+        }
+        out.write(buffer, from, read - from);
+        copied += read;
+      }
+    }
+    Files.move(edited, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static boolean same(List<NoteHit> a, List<NoteHit> b) {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      if (a.get(i).getOffset() != b.get(i).getOffset()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void sha256(Path file) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    byte[] buffer = new byte[1 << 20];
+    try (InputStream in = Files.newInputStream(file)) {
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    digest.digest();
+  }
+
+  private static void check(boolean condition, String failure) {
+    if (!condition) {
+      System.out.println("FAILED: " + failure);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package recall_techniques;
+
+import data.InMemoryQuestionBank;
+import data.QuestionBank;
+import data.QuestionBankCache;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Session start-up through the question bank cache: a cold start that analyzes the notes, a warm
+// start from the in-memory tier and one from the disk tier (a fresh cache over the same
+// directory, as after a restart). Then fills a disk tier with a small byte budget and checks that
+// it stays within budget, evicting least recently used banks first. Last, several threads miss on
+// the same notes at once, as the notes watcher and a session starting do: the bank must be
+// generated once, with no temp files left over. Runs in a scratch directory.
+//
+//   java recall_techniques.QuestionCacheBenchmark [notes size in MB]
+public class QuestionCacheBenchmark {
+  public static void main(String[] args) throws Exception {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    Path home = Files.createTempDirectory("studyplanner-cache");
+    System.setProperty("studyplanner.home", home.toString());
+    Path notes = home.resolve("notes.txt");
+    KeywordBenchmark.generate(notes, megabytes * (1L << 20), 7);
+    File file = notes.toFile();
+
+    QuestionGenerator generator = new QuestionGenerator(10);
+    long start = System.nanoTime();
+    generator.load(file);
+    long cold = System.nanoTime() - start;
+    start = System.nanoTime();
+    generator.load(file);
+    long memory = System.nanoTime() - start;
+    QuestionBankCache restarted = new QuestionBankCache(home.resolve("question-banks"), 32, Long.MAX_VALUE);
+    start = System.nanoTime();
+    restarted.get(file, generator.cacheKey(), generator::generate);
+    long disk = System.nanoTime() - start;
+    System.out.printf("%d MB notes: cold %.1f ms, memory tier %.3f ms, disk tier %.3f ms%n", megabytes, cold / 1e6,
+        memory / 1e6, disk / 1e6);
+    System.out.println("Shared cache: " + QuestionBankCache.shared() + "; restarted cache: " + restarted);
+
+    // Disk tier budget: room for three banks, no memory tier so every hit goes to disk
+    Path directory = home.resolve("bounded");
+    long bankBytes = bankFileSize(home);
+    QuestionBankCache bounded = new QuestionBankCache(directory, 0, 3 * bankBytes + bankBytes / 2);
+    Path first = null;
+    for (int i = 0; i < 10; i++) {
+      Path study = home.resolve("study-" + i + ".txt");
+      Files.writeString(study, "Study file " + i + "\n");
+      first = first == null ? study : first;
+      bounded.get(study.toFile(), "fixed", QuestionCacheBenchmark::fixedBank);
+      bounded.get(first.toFile(), "fixed", QuestionCacheBenchmark::fixedBank); // Keep the first one in use
+      Thread.sleep(5); // Distinct modification times
+    }
+    long used = directorySize(directory);
+    System.out.printf("Bounded disk tier: %d bytes used of %d, %s%n", used, 3 * bankBytes + bankBytes / 2, bounded);
+    if (used > 3 * bankBytes + bankBytes / 2 || bounded.getDiskEvictions() == 0
+        || bounded.getMisses() != 10) {
+      System.out.println("FAILED: disk tier not bounded, or the most recently used bank was evicted");
+      System.exit(1);
+    }
+
+    Path concurrent = home.resolve("concurrent");
+    QuestionBankCache shared = new QuestionBankCache(concurrent, 32, Long.MAX_VALUE);
+    AtomicInteger generated = new AtomicInteger();
+    CountDownLatch ready = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    List<QuestionBank> banks = new CopyOnWriteArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Thread thread = new Thread(() -> {
+        try {
+          ready.await();
+          banks.add(shared.get(file, generator.cacheKey(), notesFile -> {
+            generated.incrementAndGet();
+            return generator.generate(notesFile);
+          }));
+        } catch (IOException | InterruptedException e) {
+          System.out.println("FAILED: " + e);
+          System.exit(1);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    ready.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long leftovers;
+    try (Stream<Path> files = Files.list(concurrent)) {
+      leftovers = files.filter(path -> path.toString().endsWith(".tmp")).count();
+    }
+    System.out.printf("8 concurrent misses: generated %d time(s), %d temp files left%n", generated.get(), leftovers);
+    if (generated.get() != 1 || leftovers != 0 || banks.size() != 8 || banks.stream().distinct().count() != 1) {
+      System.out.println("FAILED: concurrent misses were not served by one generation");
+      System.exit(1);
+    }
+    System.out.println("OK");
+  }
+
+  private static QuestionBank fixedBank(File file) {
+    return new InMemoryQuestionBank(List.of("Question from " + file.getName()), List.of("Answer"), List.of());
+  }
+
+  private static long bankFileSize(Path home) throws IOException {
+    Path study = home.resolve("sizing.txt");
+    Files.writeString(study, "Study file 0\n");
+    Path directory = home.resolve("sizing");
+    new QuestionBankCache(directory, 0, Long.MAX_VALUE).get(study.toFile(), "fixed", QuestionCacheBenchmark::fixedBank);
+    return directorySize(directory);
+  }
+
+  private static long directorySize(Path directory) throws IOException {
+    long total = 0;
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (file.toString().endsWith(".qbank")) {
+          total += Files.size(file);
+        }
+      }
+    }
+    return total;
+  }
+}
@@ -0,0 +1,187 @@
+package recall_techniques;
+
+import data.InMemoryQuestionBank;
+import data.NoteIndex;
+import data.QuestionBank;
+import data.QuestionBankCache;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import metrics.Histogram;
+import metrics.Metrics;
+import shared.Keyword;
+import shared.Log;
+
+// Turns a study file into questions in stages: count the words (incrementally, see
+// IncrementalAnalyzer), drop stopwords, rank the most frequent remaining words by TF-IDF across
+// every indexed study file, then build a definition or cloze question from the sentence each
+// keyword first appears in. Goes through the question bank cache so unchanged files are not
+// analyzed again; edited files are re-analyzed in the background as soon as they are saved.
+public class QuestionGenerator {
+  private static final int CANDIDATES_PER_QUESTION = 20; // frequent words re-ranked by TF-IDF
+  private static final int MAX_SENTENCE = 300; // longer source sentences are trimmed around the keyword
+  private static final Histogram GENERATE_TIME = Metrics.timer("questions.generate");
+  private static final String DEFINITION_VERBS = "s? (is|are|was|were|means|refers to|describes) ";
+  private static final String DEFINE = "Define '"; // a definition question: "Define '<keyword>'."
+
+  private final int questionCount;
+
+  public QuestionGenerator(int questionCount) {
+    this.questionCount = questionCount;
+  }
+
+  public QuestionBank load(File file) throws IOException {
+    IncrementalAnalyzer.forFile(file).watch(() -> prepare(file));
+    return QuestionBankCache.shared().get(file, cacheKey(), this::generate);
+  }
+
+  // Names the generator's settings and version in the question bank cache; banks made before one
+  // question per sentence are not reused
+  public String cacheKey() {
+    return "sentences2-" + questionCount;
+  }
+
+  // Redo the work of a reload right after the file is saved, so the reload itself is near-instant
+  private void prepare(File file) {
+    try {
+      QuestionBankCache.shared().get(file, cacheKey(), this::generate);
+    } catch (IOException e) {
+      Log.warn("questions", "Error re-analyzing " + file.getName() + ": " + e.getMessage());
+    }
+  }
+
+  public QuestionBank generate(File file) throws IOException {
+    long start = System.nanoTime();
+    QuestionBank bank = build(file);
+    GENERATE_TIME.recordSince(start);
+    return bank;
+  }
+
+  private QuestionBank build(File file) throws IOException {
+    NoteIndex index = NoteIndex.shared();
+    index.add(file); // Sentence lookups and document frequencies come from the index
+    List<Keyword> keywords = rank(IncrementalAnalyzer.forFile(file)
+        .top(questionCount * CANDIDATES_PER_QUESTION, QuestionGenerator::isCandidate), index);
+
+    List<String> questions = new ArrayList<>();
+    List<String> answers = new ArrayList<>();
+    List<Keyword> asked = new ArrayList<>(); // the keywords that got a question, in question order
+    Set<String> usedSentences = new HashSet<>(); // one question per sentence, or one would give away another
+    for (Keyword topWord : keywords) {
+      if (questions.size() == questionCount) {
+        break;
+      }
+      String keyword = topWord.getWord();
+      String sentence = index.sourceSentence(file, keyword);
+      if (sentence == null || sentence.isEmpty()) {
+        asked.add(topWord);
+        questions.add("What is the significance of '" + keyword + "'?");
+        answers.add("The significance of " + keyword + " is related to its context in the text."); // Placeholder answer
+        continue;
+      }
+      if (!usedSentences.add(sentence)) {
+        continue; // Fall through to the next best keyword
+      }
+      asked.add(topWord);
+      sentence = shorten(sentence, keyword);
+      if (definesKeyword(sentence, keyword)) {
+        questions.add(DEFINE + keyword + "'.");
+        answers.add(sentence); // The notes' own definition; see AnswerGrader.coversDefinition
+      } else {
+        questions.add("Fill in the blank: " + blankOut(sentence, keyword));
+        answers.add(keyword);
+      }
+    }
+    return new InMemoryQuestionBank(questions, answers, asked);
+  }
+
+  // The term a definition question asks for, or null for any other kind of question
+  static String definedTerm(String question) {
+    if (!question.startsWith(DEFINE) || !question.endsWith("'.")) {
+      return null;
+    }
+    return question.substring(DEFINE.length(), question.length() - 2);
+  }
+
+  // Content words only: no stopwords, no numbers, nothing shorter than three letters
+  static boolean isCandidate(byte[] word) {
+    if (word.length < 3 || Stopwords.contains(word)) {
+      return false;
+    }
+    for (byte b : word) {
+      if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Merge case variants, then order by count * idf with idf = ln((1 + N) / (1 + df)) + 1. Every
+  // candidate is kept: a keyword whose sentence another question already uses makes way for the next.
+  private List<Keyword> rank(List<Keyword> candidates, NoteIndex index) throws IOException {
+    Map<String, Keyword> merged = new LinkedHashMap<>(); // lower-case -> most frequent spelling, summed count
+    for (Keyword candidate : candidates) {
+      String key = candidate.getWord().toLowerCase(Locale.ROOT);
+      Keyword known = merged.get(key);
+      merged.put(key, known == null ? candidate : new Keyword(known.getWord(), known.getCount() + candidate.getCount()));
+    }
+    List<Keyword> terms = new ArrayList<>(merged.values());
+    List<String> words = new ArrayList<>(merged.keySet());
+    int[] frequencies = index.documentFrequencies(words);
+    int documents = index.documentCount();
+    double[] scores = new double[terms.size()];
+    for (int i = 0; i < scores.length; i++) {
+      double idf = Math.log((1.0 + documents) / (1.0 + frequencies[i])) + 1;
+      scores[i] = terms.get(i).getCount() * idf;
+    }
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < terms.size(); i++) {
+      order.add(i);
+    }
+    order.sort(Comparator.comparingDouble((Integer i) -> -scores[i]).thenComparing(i -> terms.get(i).getWord()));
+
+    List<Keyword> ranked = new ArrayList<>(order.size());
+    for (int i = 0; i < order.size(); i++) {
+      ranked.add(terms.get(order.get(i)));
+    }
+    return ranked;
+  }
+
+  // At most MAX_SENTENCE characters of the sentence, keeping the keyword's first occurrence in view
+  private static String shorten(String sentence, String keyword) {
+    if (sentence.length() <= MAX_SENTENCE) {
+      return sentence;
+    }
+    int at = Math.max(0, sentence.toLowerCase(Locale.ROOT).indexOf(keyword.toLowerCase(Locale.ROOT)));
+    int start = Math.max(0, Math.min(at - MAX_SENTENCE / 3, sentence.length() - MAX_SENTENCE));
+    if (start > 0) {
+      start = sentence.indexOf(' ', start) + 1; // Do not start mid-word
+    }
+    int end = Math.min(sentence.length(), start + MAX_SENTENCE);
+    if (end < sentence.length()) {
+      end = Math.max(sentence.lastIndexOf(' ', end), at + keyword.length());
+    }
+    return (start > 0 ? "... " : "") + sentence.substring(start, end) + (end < sentence.length() ? " ..." : "");
+  }
+
+  // "Photosynthesis is ...", "Enzymes are ..." and the like
+  private static boolean definesKeyword(String sentence, String keyword) {
+    Pattern definition = Pattern.compile("\\b" + Pattern.quote(keyword) + DEFINITION_VERBS, Pattern.CASE_INSENSITIVE);
+    return definition.matcher(sentence).find();
+  }
+
+  // The sentence with every whole-word occurrence of the keyword replaced by a blank
+  private static String blankOut(String sentence, String keyword) {
+    Pattern word = Pattern.compile("\\b" + Pattern.quote(keyword) + "\\b", Pattern.CASE_INSENSITIVE);
+    return word.matcher(sentence).replaceAll(Matcher.quoteReplacement("_____"));
+  }
+}
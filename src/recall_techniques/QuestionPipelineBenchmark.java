@@ -0,0 +1,220 @@
+package recall_techniques;
+
+import data.NoteIndex;
+import data.QuestionBank;
+import data.QuestionBankCache;
+import data.ReviewEvent;
+import data.ReviewLog;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// The question pipeline end to end. For each notes size: generate a bank from cold (counting,
+// TF-IDF ranking against the note index, sentence lookup, templates), then load it again from
+// the cache, reporting the live heap of the cold run: the most in use right after the full
+// collections it samples, over what was in use before. That must stay under a bound that does not
+// grow with the notes, at every size. Then plays an Active Recall console session
+// and the first answers of a Spaced Repetition session on the smallest notes, answering every
+// second question with the reference answer from the notes and the others wrongly, and checks
+// that exactly those answers were graded correct; the same through the submit calls the GUI makes.
+// A 500-question bank of the smallest notes must not use any sentence twice.
+// Runs in a scratch directory.
+//
+//   java recall_techniques.QuestionPipelineBenchmark [notes size in MB]...
+public class QuestionPipelineBenchmark {
+  // Live heap a cold build may add whatever the notes size: the file's word table, the note index's
+  // table for the chunk it is indexing (up to 64 offsets per distinct word), and the chunks being
+  // tokenized at once, each up to 4 MB of text and its words
+  private static final long MAX_LIVE_HEAP = (32L << 20) + ForkJoinPool.getCommonPoolParallelism() * (8L << 20);
+
+  public static void main(String[] args) throws Exception {
+    int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[] { 1, 64, 256 };
+    Path home = Files.createTempDirectory("studyplanner-pipeline");
+    System.setProperty("studyplanner.home", home.toString());
+    QuestionGenerator generator = new QuestionGenerator(10);
+    List<File> files = new ArrayList<>();
+    for (int megabytes : sizes) {
+      Path notes = home.resolve("notes-" + megabytes + ".txt");
+      KeywordBenchmark.generate(notes, megabytes * (1L << 20), megabytes);
+      File file = notes.toFile();
+      files.add(file);
+      LiveHeap liveHeap = new LiveHeap();
+      long start = System.nanoTime();
+      QuestionBank bank = QuestionBankCache.shared().get(file, generator.cacheKey(), generator::generate);
+      long cold = System.nanoTime() - start;
+      long live = liveHeap.added();
+      start = System.nanoTime();
+      QuestionBankCache.shared().get(file, generator.cacheKey(), generator::generate);
+      long cached = System.nanoTime() - start;
+      System.out.printf("%4d MB notes: cold %,7.0f ms, cached %6.2f ms, live heap +%d MB (%d MB before); "
+          + "%d questions, e.g. %s%n", megabytes, cold / 1e6, cached / 1e6, live >> 20, liveHeap.before() >> 20,
+          bank.size(), bank.question(0));
+      check(live <= MAX_LIVE_HEAP, "the cold run on " + megabytes + " MB of notes kept " + (live >> 20)
+          + " MB of heap, more than " + (MAX_LIVE_HEAP >> 20) + " MB");
+    }
+
+    File smallest = files.get(0);
+    checkOneQuestionPerSentence(smallest, new QuestionGenerator(500).load(smallest));
+    checkActiveRecall(smallest);
+    checkActiveRecallSubmit(smallest);
+    checkSpacedRepetition(smallest);
+    System.out.println("OK");
+  }
+
+  // No two questions may come from the same sentence, or one would show another's answer
+  private static void checkOneQuestionPerSentence(File file, QuestionBank bank) throws IOException {
+    Set<String> sentences = new HashSet<>();
+    for (int i = 0; i < bank.keywordCount(); i++) {
+      String sentence = NoteIndex.shared().sourceSentence(file, bank.keyword(i).getWord());
+      check(sentence == null || sentences.add(sentence), "question " + (i + 1) + " reuses the sentence " + sentence);
+    }
+    System.out.printf("%d questions, each from a sentence of its own%n", bank.keywordCount());
+  }
+
+  // Answer even-numbered questions from the notes and odd ones wrongly, through the console
+  private static void checkActiveRecall(File file) throws Exception {
+    ActiveRecall session = new ActiveRecall(file);
+    session.loadQuestions();
+    QuestionBank bank = session.getQuestionBank();
+    PipedOutputStream typed = new PipedOutputStream();
+    Scanner scanner = new Scanner(new PipedInputStream(typed, 1 << 16), StandardCharsets.UTF_8);
+    PrintStream console = System.out;
+    System.setOut(new PrintStream(new Responder(typed, bank), true, StandardCharsets.UTF_8));
+    try {
+      session.startRecallSession(scanner);
+    } finally {
+      System.setOut(console);
+    }
+
+    int questions = Math.min(10, bank.size());
+    for (int i = 0; i < questions; i++) {
+      List<ReviewEvent> history = ReviewLog.shared().history(ReviewLog.deckId(file),
+          ReviewLog.cardId(bank.question(i)));
+      boolean expected = (i + 1) % 2 == 0;
+      check(history.size() == 1 && history.get(0).isCorrect() == expected,
+          "Active Recall graded question " + (i + 1) + " as " + history);
+    }
+    System.out.printf("Active Recall: %d questions graded against the notes' answers%n", questions);
+  }
+
+  // The GUI's path through a session: every answer is graded and recorded as it is submitted
+  private static void checkActiveRecallSubmit(File file) throws Exception {
+    ActiveRecall session = new ActiveRecall(file);
+    session.loadQuestions();
+    QuestionBank bank = session.getQuestionBank();
+    List<Integer> before = new ArrayList<>();
+    for (int i = 0; i < bank.size(); i++) {
+      before.add(ReviewLog.shared().history(ReviewLog.deckId(file), ReviewLog.cardId(bank.question(i))).size());
+    }
+    int questions = 0;
+    while (session.nextQuestion() != null) {
+      boolean right = questions % 2 == 0;
+      boolean correct = session.submit(right ? bank.answer(questions) : "quite wrong", 1000);
+      check(correct == right, "submitted answer " + (questions + 1) + " graded " + correct);
+      check(correct || session.answer().equals(bank.answer(questions)), "the reference shown on a miss differs");
+      questions++;
+    }
+    QuizResult result = session.finishSession();
+    check(result.getTotal() == questions && result.getCorrect() == (questions + 1) / 2, "session score " + result);
+    for (int i = 0; i < questions; i++) {
+      List<ReviewEvent> history = ReviewLog.shared().history(ReviewLog.deckId(file),
+          ReviewLog.cardId(bank.question(i)));
+      check(history.size() == before.get(i) + 1 && history.get(history.size() - 1).isCorrect() == (i % 2 == 0),
+          "submitted answer " + (i + 1) + " recorded as " + history);
+    }
+    System.out.printf("Active Recall, answers submitted one by one: %d graded and recorded%n", questions);
+  }
+
+  // Reads the session's console output line by line and types the learner's side
+  private static final class Responder extends OutputStream {
+    private final PipedOutputStream typed;
+    private final QuestionBank bank;
+    private final StringBuilder line = new StringBuilder();
+    private boolean recalling;
+
+    Responder(PipedOutputStream typed, QuestionBank bank) {
+      this.typed = typed;
+      this.bank = bank;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (b != '\n') {
+        line.append((char) b);
+        return;
+      }
+      String text = line.toString();
+      line.setLength(0);
+      if (text.startsWith("Active Recall Round")) {
+        recalling = true;
+      } else if (text.startsWith("Question ")) {
+        int number = Integer.parseInt(text.substring("Question ".length(), text.indexOf(':')));
+        type(!recalling ? "practice answer" : number % 2 == 0 ? bank.answer(number - 1) : "quite wrong");
+      } else if (text.startsWith("Type 'pause'")) {
+        type("next");
+      } else if (text.startsWith("2. Back to homescreen")) {
+        type("2");
+      }
+    }
+
+    private void type(String input) throws IOException {
+      typed.write((input + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  // The first answer to each new card is graded against the notes too
+  private static void checkSpacedRepetition(File file) throws Exception {
+    BlockingQueue<String> displayed = new LinkedBlockingQueue<>();
+    SpacedRepetition session = new SpacedRepetition(file, displayed::add);
+    Thread thread = new Thread(session::startSpacedRepetitionSession, "pipeline-session");
+    thread.start();
+    QuestionBank bank = new QuestionGenerator(500).load(file);
+    int answered = 0;
+    int wrong = 0;
+    int flagged = 0;
+    while (answered < 5) {
+      String message = displayed.poll(30, TimeUnit.SECONDS);
+      check(message != null, "Spaced Repetition showed no question");
+      if (message.startsWith("Not quite.")) {
+        flagged++;
+      } else if (message.startsWith("New question ")) {
+        int index = Integer.parseInt(message.substring("New question ".length(), message.indexOf(':'))) - 1;
+        boolean right = answered % 2 == 1;
+        wrong += right ? 0 : 1;
+        check(session.submitAnswer(right ? bank.answer(index) : "quite wrong"), "answer refused");
+        answered++;
+      }
+    }
+    String message;
+    while ((message = displayed.poll(1, TimeUnit.SECONDS)) != null) {
+      flagged += message.startsWith("Not quite.") ? 1 : 0;
+    }
+    thread.interrupt();
+    thread.join();
+    check(flagged == wrong, "Spaced Repetition flagged " + flagged + " wrong answers, expected " + wrong);
+    System.out.printf("Spaced Repetition: %d new cards, %d wrong answers flagged%n", answered, flagged);
+  }
+
+  private static void check(boolean condition, String failure) {
+    if (!condition) {
+      System.out.println("FAILED: " + failure);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package recall_techniques;
+
+// How one student (or one console round) scored on a quiz
+public class QuizResult {
+  private final String student;
+  private final int correct;
+  private final int total;
+
+  public QuizResult(String student, int correct, int total) {
+    this.student = student;
+    this.correct = correct;
+    this.total = total;
+  }
+
+  public String getStudent() {
+    return student;
+  }
+
+  public int getCorrect() {
+    return correct;
+  }
+
+  public int getTotal() {
+    return total;
+  }
+
+  // Percentage of questions answered correctly
+  public double accuracyRate() {
+    return total == 0 ? 0 : ((double) correct / total) * 100;
+  }
+
+  // Provide feedback based on accuracy
+  public String feedback() {
+    if (accuracyRate() < 50) {
+      return "You need improvement in understanding the material.";
+    }
+    return "Good job! Keep practicing to improve further.";
+  }
+
+  @Override
+  public String toString() {
+    return student + ": " + correct + "/" + total + " (" + accuracyRate() + "%)";
+  }
+}
@@ -0,0 +1,41 @@
+package recall_techniques;
+
+// Scheduling state of one question in a spaced repetition deck
+public class ReviewCard {
+  private final int questionIndex; // index of the question in its question bank
+  double easeFactor; // SM-2 ease, never below 1.3
+  int intervalDays; // current review interval once graduated
+  int repetitions; // successful reviews in a row since graduating
+  int learningStep; // index into the learning steps; equal to their count once graduated
+  long dueMillis; // wall-clock time the card is next due
+  String referenceAnswer; // the question bank's answer, set once the card has been introduced
+
+  ReviewCard(int questionIndex) {
+    this.questionIndex = questionIndex;
+    this.easeFactor = 2.5;
+  }
+
+  public int getQuestionIndex() {
+    return questionIndex;
+  }
+
+  public double getEaseFactor() {
+    return easeFactor;
+  }
+
+  public int getIntervalDays() {
+    return intervalDays;
+  }
+
+  public long getDueMillis() {
+    return dueMillis;
+  }
+
+  public String getReferenceAnswer() {
+    return referenceAnswer;
+  }
+
+  public boolean isNew() {
+    return referenceAnswer == null;
+  }
+}
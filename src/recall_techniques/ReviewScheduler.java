@@ -0,0 +1,202 @@
+package recall_techniques;
+
+import data.QuestionBank;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+// SM-2 style scheduler for a deck of cards. Cards in rotation sit in a priority queue ordered by
+// due time, so finding and rescheduling the next due card is O(log n) however large the deck.
+// New cards first go through short learning steps within a session, then graduate to SM-2
+// intervals measured in days; a lapse sends a card back through the learning steps.
+public class ReviewScheduler {
+  private static final int DECK_MAGIC = 0x44454B32; // "DEK2": cards keyed by question text
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+  private final long[] learningSteps; // delays after each learning answer, in milliseconds
+  private final PriorityQueue<ReviewCard> due;
+  private final Deque<ReviewCard> unseen; // cards never shown yet, in question bank order
+
+  public ReviewScheduler(int questionCount, long... learningSteps) {
+    this.learningSteps = learningSteps.clone();
+    this.due = new PriorityQueue<>(Comparator.comparingLong(ReviewCard::getDueMillis)
+        .thenComparingInt(ReviewCard::getQuestionIndex));
+    this.unseen = new ArrayDeque<>();
+    for (int i = 0; i < questionCount; i++) {
+      unseen.add(new ReviewCard(i));
+    }
+  }
+
+  // Move up to count unseen cards into rotation, due immediately
+  public int introduceNewCards(int count, long now) {
+    int introduced = 0;
+    while (introduced < count && !unseen.isEmpty()) {
+      ReviewCard card = unseen.poll();
+      card.dueMillis = now;
+      due.add(card);
+      introduced++;
+    }
+    return introduced;
+  }
+
+  // The card due soonest, without removing it
+  public ReviewCard peek() {
+    return due.peek();
+  }
+
+  // Remove and return the card due soonest if it is due by the given time
+  public ReviewCard pollDue(long until) {
+    ReviewCard card = due.peek();
+    if (card == null || card.dueMillis > until) {
+      return null;
+    }
+    return due.poll();
+  }
+
+  // First answer to a new card: remember the reference answer from the question bank and start
+  // the learning steps
+  public void introduce(ReviewCard card, String referenceAnswer, long now) {
+    card.referenceAnswer = referenceAnswer;
+    card.learningStep = 0;
+    schedule(card, now);
+  }
+
+  // Reschedule a card after a graded review
+  public void review(ReviewCard card, boolean correct, long now) {
+    if (card.learningStep < learningSteps.length) {
+      card.learningStep = correct ? card.learningStep + 1 : 0;
+      if (card.learningStep == learningSteps.length) {
+        card.repetitions = 1; // Graduated: first review tomorrow
+        card.intervalDays = 1;
+      }
+    } else {
+      int quality = correct ? 4 : 2; // SM-2 response quality on its 0-5 scale
+      card.easeFactor = Math.max(1.3, card.easeFactor + 0.1 - (5 - quality) * (0.08 + (5 - quality) * 0.02));
+      if (correct) {
+        card.repetitions++;
+        card.intervalDays = card.repetitions == 2 ? 6 : (int) Math.round(card.intervalDays * card.easeFactor);
+      } else {
+        card.repetitions = 0; // Lapse: relearn from the first step
+        card.learningStep = 0;
+      }
+    }
+    schedule(card, now);
+  }
+
+  public int size() {
+    return due.size() + unseen.size();
+  }
+
+  public int inRotation() {
+    return due.size();
+  }
+
+  private void schedule(ReviewCard card, long now) {
+    if (card.learningStep < learningSteps.length) {
+      card.dueMillis = now + learningSteps[card.learningStep];
+    } else {
+      card.dueMillis = now + card.intervalDays * DAY;
+    }
+    due.add(card);
+  }
+
+  // Load a saved deck, matching its cards to the question bank by question text so edits to the
+  // notes keep the history of questions that survived them. Cards whose question is gone are
+  // dropped; questions the deck does not know about (or a missing file) start out unseen.
+  public static ReviewScheduler load(Path file, QuestionBank bank, long... learningSteps) throws IOException {
+    ReviewScheduler scheduler = new ReviewScheduler(0, learningSteps);
+    ReviewCard[] cards = new ReviewCard[bank.size()];
+    if (Files.exists(file)) {
+      Map<String, Deque<Integer>> indices = new HashMap<>(); // repeated questions match in order
+      for (int i = 0; i < bank.size(); i++) {
+        indices.computeIfAbsent(bank.question(i), question -> new ArrayDeque<>()).add(i);
+      }
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        if (in.readInt() != DECK_MAGIC) {
+          throw new IOException("Not a review deck: " + file);
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+          Deque<Integer> matching = indices.get(readString(in));
+          ReviewCard card = new ReviewCard(matching == null || matching.isEmpty() ? -1 : matching.poll());
+          card.easeFactor = in.readDouble();
+          card.intervalDays = in.readInt();
+          card.repetitions = in.readInt();
+          card.learningStep = in.readInt();
+          card.dueMillis = in.readLong();
+          readString(in); // the reference when saved; the bank's current answer replaces it
+          if (card.getQuestionIndex() >= 0) {
+            card.referenceAnswer = bank.answer(card.getQuestionIndex());
+            cards[card.getQuestionIndex()] = card;
+          }
+        }
+      }
+    }
+    for (int i = 0; i < cards.length; i++) {
+      if (cards[i] != null) {
+        scheduler.due.add(cards[i]);
+      } else {
+        scheduler.unseen.add(new ReviewCard(i));
+      }
+    }
+    return scheduler;
+  }
+
+  // Save the cards that have been answered at least once, keyed by their question text; the rest
+  // start out unseen next time
+  public void save(Path file, QuestionBank bank) throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+    int answered = 0;
+    for (ReviewCard card : due) {
+      answered += card.isNew() ? 0 : 1;
+    }
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(DECK_MAGIC);
+        out.writeInt(answered);
+        for (ReviewCard card : due) {
+          if (card.isNew()) {
+            continue;
+          }
+          writeString(out, bank.question(card.getQuestionIndex()));
+          out.writeDouble(card.easeFactor);
+          out.writeInt(card.intervalDays);
+          out.writeInt(card.repetitions);
+          out.writeInt(card.learningStep);
+          out.writeLong(card.dueMillis);
+          writeString(out, card.referenceAnswer);
+        }
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  // Length-prefixed UTF-8, since questions and answers may exceed writeUTF's 64 KB limit
+  private static void writeString(DataOutputStream out, String text) throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,131 @@
+package recall_techniques;
+
+import data.InMemoryQuestionBank;
+import data.QuestionBank;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// A full day's reviews on a large deck. The deck is first built up by simulating earlier days
+// (new cards every day, every due card answered, 85% of answers correct), then one more day is
+// timed, against the cost per review of the linear scan for the next due card it replaced. Then
+// saves and reloads the deck, with a question removed from the bank, and checks every other card
+// kept its schedule.
+//
+//   java recall_techniques.ReviewSchedulerBenchmark [cards] [days of history]
+public class ReviewSchedulerBenchmark {
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+  private static final long[] LEARNING_STEPS = { 5 * MINUTE, 7 * MINUTE, 10 * MINUTE };
+
+  public static void main(String[] args) throws Exception {
+    int cards = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+    int days = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+    List<String> questions = new ArrayList<>(cards);
+    List<String> answers = new ArrayList<>(cards);
+    for (int i = 0; i < cards; i++) {
+      questions.add("What is the significance of term" + i + "?");
+      answers.add("Term" + i + " is significant.");
+    }
+    QuestionBank bank = new InMemoryQuestionBank(questions, answers, List.of());
+    ReviewScheduler scheduler = new ReviewScheduler(cards, LEARNING_STEPS);
+    SplittableRandom random = new SplittableRandom(42);
+    long start = System.currentTimeMillis();
+    for (int day = 0; day < days; day++) {
+      simulateDay(scheduler, bank, start + day * DAY, cards / days, random);
+    }
+
+    long today = start + days * DAY;
+    long begin = System.nanoTime();
+    int reviews = simulateDay(scheduler, bank, today, cards / days, random);
+    long dayNanos = System.nanoTime() - begin;
+    System.out.printf("%,d cards, %,d in rotation after %d days: a day's %,d reviews took %.1f ms (%.2f us each)%n",
+        scheduler.size(), scheduler.inRotation(), days, reviews, dayNanos / 1e6, dayNanos / 1e3 / reviews);
+
+    // The replaced approach: scan every card for the earliest due time before each review
+    long[] dueTimes = new long[cards];
+    for (int i = 0; i < cards; i++) {
+      dueTimes[i] = today + random.nextLong(DAY);
+    }
+    int scans = 200;
+    long sink = 0;
+    begin = System.nanoTime();
+    for (int s = 0; s < scans; s++) {
+      int earliest = 0;
+      for (int i = 1; i < cards; i++) {
+        earliest = dueTimes[i] < dueTimes[earliest] ? i : earliest;
+      }
+      sink += earliest;
+      dueTimes[earliest] += DAY;
+    }
+    double scanNanos = (double) (System.nanoTime() - begin) / scans;
+    System.out.printf("Linear scan: %.2f us per review, %.1f s for the same day (%d)%n", scanNanos / 1e3,
+        scanNanos * reviews / 1e9, sink % 2);
+
+    checkSaveAndLoad(scheduler, bank, questions, answers);
+    System.out.println("OK");
+  }
+
+  // Introduce new cards at the start of the day and answer every card that comes due before it ends
+  private static int simulateDay(ReviewScheduler scheduler, QuestionBank bank, long morning, int newCards,
+      SplittableRandom random) {
+    scheduler.introduceNewCards(newCards, morning);
+    int reviews = 0;
+    long now = morning;
+    ReviewCard card;
+    while ((card = scheduler.pollDue(morning + DAY - 1)) != null) {
+      now = Math.max(now, card.getDueMillis()) + 10_000; // ten seconds to answer
+      if (card.isNew()) {
+        scheduler.introduce(card, bank.answer(card.getQuestionIndex()), now);
+      } else {
+        scheduler.review(card, random.nextInt(100) < 85, now);
+      }
+      reviews++;
+    }
+    return reviews;
+  }
+
+  // Save, then load against a bank with the first question removed, so every index shifts by one
+  private static void checkSaveAndLoad(ReviewScheduler scheduler, QuestionBank bank, List<String> questions,
+      List<String> answers) throws Exception {
+    Path file = Files.createTempFile("benchmark", ".deck");
+    try {
+      long begin = System.nanoTime();
+      scheduler.save(file, bank);
+      long saveNanos = System.nanoTime() - begin;
+      QuestionBank edited = new InMemoryQuestionBank(questions.subList(1, questions.size()),
+          answers.subList(1, answers.size()), List.of());
+      begin = System.nanoTime();
+      ReviewScheduler loaded = ReviewScheduler.load(file, edited, LEARNING_STEPS);
+      long loadNanos = System.nanoTime() - begin;
+      System.out.printf("Deck file %,d bytes: save %.1f ms, load %.1f ms%n", Files.size(file), saveNanos / 1e6,
+          loadNanos / 1e6);
+
+      int saved = scheduler.inRotation(); // every card in rotation has been answered
+      long[] expected = new long[questions.size()];
+      ReviewCard card;
+      while ((card = scheduler.pollDue(Long.MAX_VALUE)) != null) {
+        expected[card.getQuestionIndex()] = card.getDueMillis();
+      }
+      int kept = 0;
+      while ((card = loaded.pollDue(Long.MAX_VALUE)) != null) {
+        if (card.getDueMillis() != expected[card.getQuestionIndex() + 1]) {
+          System.out.println("FAILED: card \"" + edited.question(card.getQuestionIndex()) + "\" lost its schedule");
+          System.exit(1);
+        }
+        kept++;
+      }
+      int dropped = expected[0] == 0 ? 0 : 1; // the removed question's card, if it was saved
+      if (kept + dropped != saved) {
+        System.out.println("FAILED: " + kept + " cards kept after the edit");
+        System.exit(1);
+      }
+      System.out.printf("After removing one question: %,d cards kept their schedule%n", kept);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
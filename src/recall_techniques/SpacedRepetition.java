@@ -1,151 +1,240 @@
 package recall_techniques;
 
+import analytics.StudyAnalytics;
+import data.DataStorage;
+import data.NoteIndex;
+import data.QuestionBank;
+import data.QuestionBankFile;
+import data.ReviewLog;
 import shared.DisplayUpdater;
+import timer.Deadline;
+import timer.TimingEngine;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class SpacedRepetition {
+    private static final int DECK_SIZE = 500; // questions generated from study notes, at most
+    private static final int NEW_CARDS_PER_SESSION = 5;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long[] LEARNING_STEPS = { 5 * MINUTE, 7 * MINUTE, 10 * MINUTE }; // before graduating
+    private static final long SESSION_HORIZON = TimeUnit.HOURS.toMillis(1); // later reviews wait for another session
+
     private File fileName;
-    private List<String> questions;
+    private QuestionBank questionBank; // questions read by index
     private List<String> userAnswers;
-    private int currentQuestion;
-    private boolean isPaused;
-    private int sessionCount;
+    private final BlockingQueue<String> pendingAnswers; // Answers handed off from the GUI thread
+    private volatile int currentQuestion;
+    private volatile boolean isPaused;
+    private volatile boolean sessionComplete;
+    private boolean awaitingAnswer; // A question is on display and unanswered; guarded by this
+    private Runnable answerListener = () -> { }; // Told when answers start or stop being taken
+    private ReviewScheduler scheduler; // what is due when, for this file's deck
+    private long deck; // identifies the study file in the review log
     private DisplayUpdater displayUpdater;
+    private Deadline breakDeadline; // Pending end of the current break, if any
 
     public SpacedRepetition(File fileName, DisplayUpdater displayUpdater) {
         this.fileName = fileName;
-        this.questions = new ArrayList<>();
         this.userAnswers = new ArrayList<>();
+        this.pendingAnswers = new LinkedBlockingQueue<>();
         this.currentQuestion = 0;
         this.isPaused = false;
-        this.sessionCount = 0;
+        this.sessionComplete = false;
         this.displayUpdater = displayUpdater;
     }
 
-    // Start the Spaced Repetition process
+    // Start the Spaced Repetition process: introduce a few new cards, then keep reviewing whatever
+    // the scheduler says is due, taking breaks until the next card comes due
     public void startSpacedRepetitionSession() {
         if (fileName == null || !fileName.exists()) {
             displayUpdater.updateDisplay("No file provided. Please ensure the file is correctly selected.");
             return;
         }
 
+        Path deckFile = null;
         try {
-            String content = new String(Files.readAllBytes(fileName.toPath()));
-            generateQuestions(content); // Ensure this method populates the questions list
-
-            // Define break durations for each session part
-            int[] breakDurations = { 5, 7, 10 }; // Break durations in minutes
-            int breakIndex = 0; // To keep track of the current break duration
-
-            for (sessionCount = 1; sessionCount <= 4; sessionCount++) {
-                displayUpdater.updateDisplay("\nSession " + sessionCount + ":");
-
-                // Conduct practice and spaced repetition rounds
-                if (!practiceRound())
-                    return; // Exit if back command is issued
-                if (!spacedRepetitionRound())
-                    return; // Exit if back command is issued
-
-                // Check if there are breaks to take
-                if (sessionCount < 4) {
-                    int breakDuration = breakDurations[breakIndex];
-                    takeBreak(breakDuration); // Take a break after the two rounds
-                    breakIndex = (breakIndex + 1) % breakDurations.length; // Move to the next break duration
-                }
-            }
+            loadQuestions(); // Ensure this method populates the question bank
+            deck = ReviewLog.deckId(fileName); // Keyed by path, so editing the notes keeps the deck
+            deckFile = DataStorage.appDirectory().resolve("decks").resolve(Long.toHexString(deck) + ".deck");
+            scheduler = ReviewScheduler.load(deckFile, questionBank, LEARNING_STEPS);
+            scheduler.introduceNewCards(NEW_CARDS_PER_SESSION, System.currentTimeMillis());
+
+            reviewRound();
 
             // Notify the user that the session is over
             displayUpdater.updateDisplay("\nAll sessions complete! Thank you for participating.");
         } catch (IOException e) {
             displayUpdater.updateDisplay("Error loading file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Session was cancelled; the caller owns the display
+        } finally {
+            saveDeck(deckFile); // Keep review progress even when the session was cut short
+            sessionComplete = true;
+            setAwaitingAnswer(false);
         }
     }
 
-    private boolean practiceRound() {
-        currentQuestion = 0; // Reset question index for the practice round
-        displayUpdater.updateDisplay("Practice Round: Answer the following questions.");
+    private void reviewRound() throws InterruptedException {
+        displayUpdater.updateDisplay("Spaced Repetition Round: answer each question as it comes due.");
+        long horizon = System.currentTimeMillis() + SESSION_HORIZON;
 
-        for (int i = 0; i < 5 && !isPaused; i++) {
-            displayUpdater.updateDisplay("Question " + (i + 1) + ": " + questions.get(i));
-            // Wait for user input here; return false to indicate waiting
-            while (!isSessionComplete() && !isPaused) {
-                // This loop is to wait for the answer to be submitted
-                // You will need to implement a mechanism to wait for user input from the GUI
+        ReviewCard card;
+        while ((card = scheduler.peek()) != null && card.getDueMillis() <= horizon) {
+            long wait = card.getDueMillis() - System.currentTimeMillis();
+            if (wait > 0) {
+                takeBreak(wait); // Nothing is due yet
+                continue;
+            }
+            currentQuestion = card.getQuestionIndex();
+            String label = card.isNew() ? "New question " : "Question ";
+            setAwaitingAnswer(true); // Before the question shows, so an answer to it is never refused
+            displayUpdater.updateDisplay(label + (currentQuestion + 1) + ": " + questionBank.question(currentQuestion));
+            long askedAt = System.currentTimeMillis();
+            String answer = awaitAnswer(); // Block until the GUI hands over an answer
+            userAnswers.add(answer);
+
+            long now = System.currentTimeMillis();
+            scheduler.pollDue(now); // Only leaves the queue once answered, so a cancelled session keeps it
+            String reference = questionBank.answer(currentQuestion);
+            boolean correct = AnswerGrader.defaults().matches(questionBank, currentQuestion, answer); // Against the notes
+            if (card.isNew()) {
+                scheduler.introduce(card, reference, now); // Starts the learning steps either way
+            } else {
+                scheduler.review(card, correct, now);
+            }
+            recordReview(card, now - askedAt, correct);
+            if (!correct) {
+                displayUpdater.updateDisplay("Not quite. From your notes: " + reference);
             }
         }
-        currentQuestion = 0; // Reset the current question index after practice
-        return true; // Return true to indicate session should continue
     }
 
-    private boolean spacedRepetitionRound() {
-        displayUpdater.updateDisplay("\nSpaced Repetition Round: Let's review the questions again.");
+    private void recordReview(ReviewCard card, long latencyMillis, boolean correct) {
+        try {
+            ReviewLog.shared().record(deck, ReviewLog.cardId(questionBank.question(card.getQuestionIndex())),
+                    System.currentTimeMillis(), (int) latencyMillis, correct, ReviewLog.SPACED_REPETITION);
+            StudyAnalytics.shared().recordAnswer(fileName.getName(), correct, latencyMillis);
+        } catch (IOException e) {
+            displayUpdater.updateDisplay("Error saving review history: " + e.getMessage());
+        }
+    }
 
-        List<Integer> shuffledIndices = new ArrayList<>();
-        for (int i = 0; i < questions.size(); i++) {
-            shuffledIndices.add(i);
+    private void saveDeck(Path deckFile) {
+        if (deckFile == null || scheduler == null) {
+            return;
         }
-        Collections.shuffle(shuffledIndices); // Shuffle the order of questions
-
-        for (int index : shuffledIndices) {
-            displayUpdater.updateDisplay("Question " + (index + 1) + ": " + questions.get(index));
-            // Wait for user input here; return false to indicate waiting
-            while (!isSessionComplete() && !isPaused) {
-                // This loop is to wait for the answer to be submitted
-                // You will need to implement a mechanism to wait for user input from the GUI
+        try {
+            scheduler.save(deckFile, questionBank);
+            ReviewLog.shared().flush();
+        } catch (IOException e) {
+            displayUpdater.updateDisplay("Error saving review progress: " + e.getMessage());
+        }
+    }
+
+    // Park the session thread until an answer is submitted; a paused session also waits for resume
+    private String awaitAnswer() throws InterruptedException {
+        String answer = pendingAnswers.take();
+        synchronized (this) {
+            while (isPaused) {
+                wait(); // Wait until notified by setPausedState(false)
             }
         }
-        return true; // Return true to indicate session should continue
+        return answer;
     }
 
-    private void takeBreak(int minutes) {
+    private void takeBreak(long millis) throws InterruptedException {
+        long minutes = (millis + MINUTE - 1) / MINUTE;
         displayUpdater.updateDisplay("Taking a " + minutes + " minute break.");
+        Deadline deadline;
+        synchronized (this) {
+            // Register the break with the shared timing engine; pausing the session pauses the break too
+            deadline = TimingEngine.shared().schedule(millis, TimeUnit.MILLISECONDS, () -> {
+            });
+            breakDeadline = deadline;
+            if (isPaused) {
+                deadline.pause();
+            }
+        }
         try {
-            Thread.sleep(minutes * 60 * 1000); // Sleep for the duration of the break
+            deadline.await();
         } catch (InterruptedException e) {
-            displayUpdater.updateDisplay("Break interrupted.");
+            deadline.cancel();
+            throw e;
+        } finally {
+            synchronized (this) {
+                breakDeadline = null;
+            }
         }
         displayUpdater.updateDisplay("Break over! Let's continue.");
     }
 
-    public void submitAnswer(String answer) {
-        if (currentQuestion < questions.size()) {
-            userAnswers.add(answer); // Store the user's answer
-            currentQuestion++;
+    // Hand an answer from the GUI over to the waiting session thread. Only one answer per displayed
+    // question is taken; answers during breaks, between questions or while paused are refused, since
+    // they would be graded against a card the user has not seen yet.
+    public boolean submitAnswer(String answer) {
+        synchronized (this) {
+            if (sessionComplete || isPaused || !awaitingAnswer || !pendingAnswers.offer(answer)) {
+                return false;
+            }
         }
+        setAwaitingAnswer(false);
+        return true;
     }
 
-    public boolean isSessionComplete() {
-        return currentQuestion >= questions.size();
+    // Whether a displayed question is waiting for its answer
+    public synchronized boolean isAwaitingAnswer() {
+        return awaitingAnswer;
     }
 
-    private void generateQuestions(String content) {
-        List<String> words = Arrays.asList(content.split("\\W+"));
-        Map<String, Long> wordCount = words.stream()
-                .collect(Collectors.groupingBy(w -> w, Collectors.counting()));
+    // Run when a question starts waiting for an answer and when it has one or the session ends, on
+    // the thread that made the change
+    public void setAnswerListener(Runnable listener) {
+        answerListener = listener;
+    }
 
-        List<String> topWords = wordCount.entrySet().stream()
-                .filter(entry -> isNoun(entry.getKey())) // Only consider nouns
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(5)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+    private void setAwaitingAnswer(boolean awaiting) {
+        synchronized (this) {
+            awaitingAnswer = awaiting;
+        }
+        answerListener.run();
+    }
+
+    public boolean isSessionComplete() {
+        return sessionComplete;
+    }
 
-        // Create questions
-        for (String keyword : topWords) {
-            questions.add("What is the significance of '" + keyword + "'?");
+    // Exported question banks are mapped directly, study notes go through the question generator
+    void loadQuestions() throws IOException {
+        if (fileName.getName().endsWith("." + QuestionBankFile.EXTENSION)) {
+            questionBank = QuestionBankFile.open(fileName.toPath());
+        } else {
+            generateQuestions(fileName);
+            NoteIndex.shared().add(fileName); // Make the notes searchable and quotable
         }
     }
 
-    private boolean isNoun(String word) {
-        return Character.isUpperCase(word.charAt(0)) || word.endsWith("s");
+    private void generateQuestions(File file) throws IOException {
+        // The whole deck of significance questions; unchanged files are served from the cache
+        questionBank = new QuestionGenerator(DECK_SIZE).load(file);
     }
 
-    public void setPausedState(boolean paused) {
+    public synchronized void setPausedState(boolean paused) {
         this.isPaused = paused;
+        if (breakDeadline != null) {
+            if (paused) {
+                breakDeadline.pause(); // Freeze the remaining break time
+            } else {
+                breakDeadline.resume();
+            }
+        }
+        if (!paused) {
+            notifyAll(); // Wake the session thread if it is waiting to resume
+        }
     }
 
     public boolean isPaused() {
@@ -159,7 +248,7 @@ public class SpacedRepetition {
 
     // Get the current question text
     public String getCurrentQuestionText() {
-        return questions.get(currentQuestion); // Return the question text at the current index
+        return questionBank.question(currentQuestion); // Return the question text at the current index
     }
 
     // Additional methods...
@@ -0,0 +1,72 @@
+package recall_techniques;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Checks that a spaced repetition session waiting for an answer uses (almost) no CPU, and that
+// answers submitted while it is paused, or after the displayed question already has one, are
+// refused. Runs against a scratch data directory.
+//
+//   java recall_techniques.SpacedRepetitionIdleTest [seconds]
+public class SpacedRepetitionIdleTest {
+  private static final long MAX_CPU_MILLIS = 50; // a spinning session burns a full core
+
+  public static void main(String[] args) throws Exception {
+    int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+    Path home = Files.createTempDirectory("studyplanner-idle");
+    System.setProperty("studyplanner.home", home.toString());
+    Path notes = home.resolve("notes.txt");
+    Files.writeString(notes, "Photosynthesis is the process plants use to turn light into sugar. "
+        + "Chlorophyll absorbs light in the chloroplasts. Mitochondria release energy from sugar. "
+        + "Enzymes are proteins that speed up reactions. Osmosis moves water across membranes.\n");
+
+    BlockingQueue<String> displayed = new LinkedBlockingQueue<>();
+    SpacedRepetition session = new SpacedRepetition(new File(notes.toString()), displayed::add);
+    Thread thread = new Thread(session::startSpacedRepetitionSession, "idle-session");
+    thread.start();
+    String question = awaitQuestion(displayed);
+
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    long cpuBefore = threads.getThreadCpuTime(thread.getId());
+    Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+    long cpuMillis = TimeUnit.NANOSECONDS.toMillis(threads.getThreadCpuTime(thread.getId()) - cpuBefore);
+    System.out.printf("Session thread CPU time while waiting %d s for an answer: %d ms%n", seconds, cpuMillis);
+    check(cpuMillis <= MAX_CPU_MILLIS, "waiting session used " + cpuMillis + " ms of CPU");
+
+    session.setPausedState(true);
+    check(!session.submitAnswer("ignored"), "answer accepted while paused");
+    session.setPausedState(false);
+    check(session.submitAnswer("an answer"), "answer refused after resume");
+    check(!session.submitAnswer("another answer"), "second answer accepted for one question");
+    String next = awaitQuestion(displayed);
+    System.out.println("Asked: " + question + "\nThen:  " + next);
+
+    thread.interrupt();
+    thread.join(TimeUnit.SECONDS.toMillis(5));
+    check(!thread.isAlive(), "session did not stop when interrupted");
+    System.out.println("OK");
+  }
+
+  private static String awaitQuestion(BlockingQueue<String> displayed) throws InterruptedException {
+    while (true) {
+      String message = displayed.poll(30, TimeUnit.SECONDS);
+      check(message != null, "no question displayed");
+      if (message.startsWith("Question ") || message.startsWith("New question ")) {
+        return message;
+      }
+    }
+  }
+
+  private static void check(boolean condition, String failure) {
+    if (!condition) {
+      System.out.println("FAILED: " + failure);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package recall_techniques;
+
+import java.nio.charset.StandardCharsets;
+
+// Common English words that never make good keywords, checked against raw word bytes
+public final class Stopwords {
+  private static final String[] WORDS = {
+      "a", "about", "above", "after", "again", "against", "all", "also", "am", "an", "and", "any", "are", "as",
+      "at", "be", "because", "been", "before", "being", "below", "between", "both", "but", "by", "can",
+      "could", "did", "do", "does", "doing", "down", "during", "each", "either", "etc", "even", "every",
+      "few", "for", "from", "further", "had", "has", "have", "having", "he", "her", "here", "hers",
+      "herself", "him", "himself", "his", "how", "however", "i", "if", "in", "into", "is", "it", "its",
+      "itself", "just", "many", "may", "me", "might", "more", "most", "much", "must", "my", "myself", "no",
+      "nor", "not", "now", "of", "off", "on", "once", "one", "only", "or", "other", "our", "ours",
+      "ourselves", "out", "over", "own", "same", "she", "should", "since", "so", "some", "such", "than",
+      "that", "the", "their", "theirs", "them", "themselves", "then", "there", "these", "they", "this",
+      "those", "through", "thus", "to", "too", "two", "under", "until", "up", "upon", "us", "use", "used",
+      "using", "very", "was", "we", "were", "what", "when", "where", "whether", "which", "while", "who",
+      "whom", "why", "will", "with", "within", "without", "would", "yet", "you", "your", "yours",
+      "yourself", "yourselves" };
+  private static final KeywordCounts TABLE = new KeywordCounts();
+
+  static {
+    for (String word : WORDS) {
+      byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+      TABLE.intern(bytes, bytes.length);
+    }
+  }
+
+  private Stopwords() {
+  }
+
+  // Case-insensitive; only words with upper-case letters are copied to be lower-cased
+  public static boolean contains(byte[] word) {
+    byte[] lower = word;
+    for (int i = 0; i < word.length; i++) {
+      if (word[i] >= 'A' && word[i] <= 'Z') {
+        if (lower == word) {
+          lower = word.clone();
+        }
+        lower[i] += 'a' - 'A';
+      }
+    }
+    return TABLE.find(lower, lower.length) >= 0;
+  }
+}
@@ -0,0 +1,176 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Load harness for TimerServer: spreads many timers over a few client connections, subscribes to
+// every one, and reports how far apart consecutive ticks of the same timer arrive (ideally exactly
+// one second). Starts an in-process server unless a port is given; the in-process server is then
+// checked to close the timers of a client that disconnects without closing them.
+//
+//   java server.TimerLoadTest [timers] [connections] [seconds] [port]
+public class TimerLoadTest {
+  public static void main(String[] args) throws Exception {
+    int timers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int connections = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    TimerServer server = null;
+    int port;
+    if (args.length > 3) {
+      port = Integer.parseInt(args[3]);
+    } else {
+      server = new TimerServer(0);
+      port = server.port();
+      TimerServer serving = server;
+      Thread thread = new Thread(() -> {
+        try {
+          serving.serve();
+        } catch (IOException e) {
+          System.out.println("Timer server failed: " + e.getMessage());
+        }
+      }, "timer-server");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    ExecutorService clients = Executors.newFixedThreadPool(connections);
+    List<Future<long[]>> results = new ArrayList<>();
+    long start = System.nanoTime();
+    for (int c = 0; c < connections; c++) {
+      int share = timers / connections + (c < timers % connections ? 1 : 0);
+      results.add(clients.submit(() -> runClient(port, share, seconds)));
+    }
+    long ticks = 0;
+    List<Long> gaps = new ArrayList<>(); // milliseconds between consecutive ticks of a timer
+    for (Future<long[]> result : results) {
+      long[] clientGaps = result.get();
+      ticks += clientGaps.length;
+      for (long gap : clientGaps) {
+        gaps.add(gap);
+      }
+    }
+    double elapsed = (System.nanoTime() - start) / 1e9;
+    clients.shutdown();
+
+    long[] sorted = gaps.stream().mapToLong(Long::longValue).map(gap -> Math.abs(gap - 1000)).sorted().toArray();
+    System.out.printf("%d timers over %d connections for %d s: %d tick intervals in %.1f s%n", timers, connections,
+        seconds, ticks, elapsed);
+    if (sorted.length > 0) {
+      System.out.printf("Deviation from 1 s: p50 %d ms, p99 %d ms, max %d ms%n", sorted[sorted.length / 2],
+          sorted[(int) (sorted.length * 0.99)], sorted[sorted.length - 1]);
+    }
+    if (server != null) {
+      checkDisconnect(server, port);
+      server.close();
+    }
+  }
+
+  // A client that goes away mid-run, as if killed, must not leave its timers on the server
+  private static void checkDisconnect(TimerServer server, int port) throws Exception {
+    int before = server.timerCount();
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      OutputStream out = socket.getOutputStream();
+      for (int i = 0; i < 100; i++) {
+        out.write("CREATE 60 10 20 4\n".getBytes(StandardCharsets.US_ASCII));
+        long id = Long.parseLong(expectOk(in.readLine()).substring(3));
+        out.write(("START " + id + "\n").getBytes(StandardCharsets.US_ASCII));
+        expectOk(in.readLine());
+      }
+    }
+    long deadline = System.nanoTime() + 5_000_000_000L;
+    while (server.timerCount() > before && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    if (server.timerCount() > before) {
+      System.out.println("FAILED: " + (server.timerCount() - before) + " timers left after their client disconnected");
+      System.exit(1);
+    }
+    System.out.println("A disconnected client's 100 running timers were closed");
+  }
+
+  // Create, subscribe to and start this connection's timers, then collect tick gaps until they end
+  private static long[] runClient(int port, int timers, int seconds) throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      socket.setTcpNoDelay(true);
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      OutputStream out = socket.getOutputStream();
+
+      StringBuilder commands = new StringBuilder();
+      for (int i = 0; i < timers; i++) {
+        commands.append("CREATE ").append(seconds).append(" 1 1 1\n"); // One work phase, then a long break
+      }
+      out.write(commands.toString().getBytes(StandardCharsets.US_ASCII));
+      long[] ids = new long[timers];
+      for (int i = 0; i < timers; i++) {
+        ids[i] = Long.parseLong(expectOk(in.readLine()).substring(3));
+      }
+      commands.setLength(0);
+      for (long id : ids) {
+        commands.append("SUBSCRIBE ").append(id).append("\nSTART ").append(id).append('\n');
+      }
+      out.write(commands.toString().getBytes(StandardCharsets.US_ASCII));
+
+      Map<Long, Long> lastTick = new HashMap<>(timers * 2);
+      long[] gaps = new long[timers * seconds];
+      int gapCount = 0;
+      int okCount = 0;
+      socket.setSoTimeout(3000); // Ticks stop after the last timer's work phase
+      long end = System.nanoTime() + (seconds + 1) * 1_000_000_000L;
+      String line;
+      try {
+        while (System.nanoTime() < end && (line = in.readLine()) != null) {
+          if (line.startsWith("OK")) {
+            okCount++;
+            continue;
+          }
+          String[] parts = line.split(" ");
+          if (!parts[0].equals("TICK")) {
+            expectOk(line);
+          }
+          if (!parts[2].equals("WORK")) {
+            continue; // The final break's ticks are not measured
+          }
+          long now = System.nanoTime() / 1_000_000;
+          Long previous = lastTick.put(Long.parseLong(parts[1]), now);
+          if (previous != null && gapCount < gaps.length) {
+            gaps[gapCount++] = now - previous;
+          }
+        }
+      } catch (SocketTimeoutException e) {
+        // Every timer has finished its work phase
+      }
+      if (okCount != 2 * timers) {
+        System.out.println("Missing replies: " + (2 * timers - okCount));
+      }
+
+      commands.setLength(0);
+      for (long id : ids) {
+        commands.append("CLOSE ").append(id).append('\n');
+      }
+      out.write(commands.toString().getBytes(StandardCharsets.US_ASCII));
+      return Arrays.copyOf(gaps, gapCount);
+    }
+  }
+
+  private static String expectOk(String line) throws IOException {
+    if (line == null || !line.startsWith("OK")) {
+      throw new IOException("Unexpected reply: " + line);
+    }
+    return line;
+  }
+}
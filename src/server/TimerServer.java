@@ -0,0 +1,376 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import metrics.Counter;
+import metrics.Metrics;
+import timer.PomodoroTimer;
+import timer.TimerListenerBus;
+import timer.TimingEngine;
+
+// Headless host for many independent Pomodoro timers, e.g. one per student plus group timers for a
+// study hall. All timers share one TimingEngine, so an idle timer is just a pair of queued
+// deadlines. Clients talk a line protocol over a localhost socket; one selector thread does all
+// network I/O, and tick deliveries are queued to it through the timers' listener buses.
+//
+//   CREATE <work> <short break> <long break> <cycles>   (seconds)  -> OK <id>
+//   START|PAUSE|RESUME|RESET|CLOSE <id>                            -> OK
+//   STATUS <id>                        -> OK <id> <running|paused|stopped> <phase> <cycle>
+//   SUBSCRIBE|UNSUBSCRIBE <id>         -> OK, then TICK <id> <phase> <remaining seconds> lines
+// Errors are answered with ERR <reason>. A client's timers are closed when it disconnects.
+public class TimerServer implements Closeable {
+  public static final int DEFAULT_PORT = 7070;
+  private static final int MAX_TIMERS = 100_000;
+  private static final int MAX_LINE = 1024;
+  private static final int MAX_PENDING_OUTPUT = 1 << 20; // past this, ticks for a slow client are dropped
+  private static final Counter COMMANDS = Metrics.counter("server.commands");
+  private static final Counter TICKS_SENT = Metrics.counter("server.ticks_sent");
+  private static final Counter TICKS_DROPPED = Metrics.counter("server.ticks_dropped");
+
+  private final Selector selector;
+  private final ServerSocketChannel serverChannel;
+  private final TimingEngine engine;
+  private final Map<Long, PomodoroTimer> timers = new ConcurrentHashMap<>();
+  private final AtomicLong nextId = new AtomicLong(1);
+  private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>(); // ticks waiting to be written
+  private final List<Connection> unflushed = new ArrayList<>(); // selector thread only
+  private final AtomicBoolean wakeupPending = new AtomicBoolean();
+  private final Executor selectorExecutor = this::runOnSelector;
+  private volatile boolean running = true;
+  private volatile boolean serving;
+
+  // Listens on the loopback interface only; port 0 picks a free port
+  public TimerServer(int port) throws IOException {
+    this.selector = Selector.open();
+    this.serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 512);
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    this.engine = new TimingEngine(Math.max(2, Runtime.getRuntime().availableProcessors()));
+  }
+
+  // Serve until closed: --server [port]
+  public static void run(int port, PrintStream out) throws IOException {
+    try (TimerServer server = new TimerServer(port)) {
+      out.println("Timer server listening on localhost:" + server.port());
+      server.serve();
+    }
+  }
+
+  public int port() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  public int timerCount() {
+    return timers.size();
+  }
+
+  // Run the selector loop on the calling thread until close()
+  public void serve() throws IOException {
+    serving = true;
+    try {
+      loop();
+    } finally {
+      release();
+    }
+  }
+
+  private void loop() throws IOException {
+    while (running) {
+      selector.select();
+      wakeupPending.set(false); // Before draining, so a task queued meanwhile wakes the next select
+      Runnable task;
+      while ((task = selectorTasks.poll()) != null) {
+        task.run();
+      }
+      for (Connection connection : unflushed) { // One write per connection for a whole batch of ticks
+        connection.flushQuietly();
+      }
+      unflushed.clear();
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        try {
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+          } else {
+            Connection connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+              connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+              connection.flush();
+            }
+          }
+        } catch (IOException e) {
+          if (key.attachment() instanceof Connection) {
+            ((Connection) key.attachment()).close(); // Client went away
+          }
+        }
+      }
+    }
+  }
+
+  // Stops serve(); the selector thread releases the sockets and timers on its way out
+  @Override
+  public void close() throws IOException {
+    running = false;
+    if (serving) {
+      selector.wakeup();
+    } else {
+      release();
+    }
+  }
+
+  private void release() throws IOException {
+    for (PomodoroTimer timer : timers.values()) {
+      timer.stop();
+    }
+    timers.clear();
+    engine.shutdown();
+    for (SelectionKey key : selector.keys()) {
+      key.channel().close();
+    }
+    selector.close();
+  }
+
+  // Queue work for the selector thread, waking it once per batch rather than once per task
+  private void runOnSelector(Runnable task) {
+    selectorTasks.add(task);
+    if (wakeupPending.compareAndSet(false, true)) {
+      selector.wakeup();
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    Connection connection = new Connection(channel);
+    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+  }
+
+  private String handle(Connection connection, String line) {
+    COMMANDS.increment();
+    String[] parts = line.trim().split("\\s+");
+    String command = parts[0].toUpperCase(Locale.ROOT);
+    try {
+      if (command.equals("CREATE")) {
+        if (parts.length != 5) {
+          return "ERR usage: CREATE <work> <short break> <long break> <cycles>";
+        }
+        int[] values = new int[4];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = Integer.parseInt(parts[i + 1]);
+          if (values[i] <= 0) {
+            return "ERR durations and cycles must be positive";
+          }
+        }
+        if (timers.size() >= MAX_TIMERS) {
+          return "ERR too many timers";
+        }
+        long id = nextId.getAndIncrement();
+        timers.put(id, new PomodoroTimer(values[0], values[1], values[2], values[3], engine));
+        connection.owned.add(id);
+        return "OK " + id;
+      }
+      if (parts.length != 2) {
+        return parts[0].isEmpty() ? "ERR empty command" : "ERR usage: " + command + " <id>";
+      }
+      long id = Long.parseLong(parts[1]);
+      PomodoroTimer timer = timers.get(id);
+      if (timer == null) {
+        return "ERR no timer " + id;
+      }
+      switch (command) {
+        case "START":
+          timer.start();
+          return "OK";
+        case "PAUSE":
+          timer.pause();
+          return "OK";
+        case "RESUME":
+          timer.resume();
+          return "OK";
+        case "RESET":
+          timer.reset();
+          return "OK";
+        case "CLOSE":
+          closeTimer(id);
+          connection.owned.remove(id);
+          return "OK";
+        case "STATUS":
+          String state = !timer.isRunning() ? "stopped" : timer.isPaused() ? "paused" : "running";
+          return "OK " + id + " " + state + " " + timer.getPhase() + " " + timer.getCurrentCycle();
+        case "SUBSCRIBE":
+          connection.subscribe(id, timer);
+          return "OK";
+        case "UNSUBSCRIBE":
+          connection.unsubscribe(id);
+          return "OK";
+        default:
+          return "ERR unknown command " + command;
+      }
+    } catch (NumberFormatException e) {
+      return "ERR not a number: " + e.getMessage();
+    }
+  }
+
+  private void closeTimer(long id) {
+    PomodoroTimer timer = timers.remove(id);
+    if (timer != null) {
+      timer.stop();
+    }
+  }
+
+  // One client: a line-assembling input buffer, a growable output buffer, its subscriptions and the
+  // timers it created
+  private final class Connection {
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+    private ByteBuffer out = ByteBuffer.allocate(4096); // in write mode; touched by the selector thread only
+    private final Map<Long, TimerListenerBus.Subscription<Integer>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<Long> owned = new HashSet<>(); // selector thread only
+    private SelectionKey key;
+    private boolean closed;
+    private boolean dirty; // queued in unflushed
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    void read() throws IOException {
+      if (channel.read(in) < 0) {
+        close();
+        return;
+      }
+      in.flip();
+      int lineStart = 0;
+      for (int i = in.position(); i < in.limit(); i++) {
+        if (in.get(i) == '\n') {
+          String line = new String(in.array(), lineStart, i - lineStart, StandardCharsets.US_ASCII);
+          write(handle(this, line));
+          lineStart = i + 1;
+        }
+      }
+      in.position(lineStart);
+      in.compact();
+      if (!in.hasRemaining()) {
+        write("ERR line too long");
+        flush();
+        close();
+        return;
+      }
+      flush();
+    }
+
+    void subscribe(long id, PomodoroTimer timer) {
+      if (subscriptions.containsKey(id)) {
+        return;
+      }
+      subscriptions.put(id, timer.addTimerListener(remaining -> {
+        if (closed) {
+          return;
+        }
+        if (out.position() >= MAX_PENDING_OUTPUT) {
+          TICKS_DROPPED.increment(); // A newer tick follows within a second
+          return;
+        }
+        write("TICK " + id + " " + timer.getPhase() + " " + remaining);
+        TICKS_SENT.increment();
+        if (!dirty) {
+          dirty = true;
+          unflushed.add(this);
+        }
+      }, selectorExecutor));
+    }
+
+    void unsubscribe(long id) {
+      TimerListenerBus.Subscription<Integer> subscription = subscriptions.remove(id);
+      if (subscription != null) {
+        subscription.close();
+      }
+    }
+
+    private void write(String line) {
+      byte[] bytes = (line + "\n").getBytes(StandardCharsets.US_ASCII);
+      if (out.remaining() < bytes.length) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes.length));
+        out.flip();
+        larger.put(out);
+        out = larger;
+      }
+      out.put(bytes);
+    }
+
+    // Write what the socket takes now; wait for OP_WRITE for the rest
+    void flush() throws IOException {
+      if (closed) {
+        return;
+      }
+      out.flip();
+      channel.write(out);
+      out.compact();
+      key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    void flushQuietly() {
+      dirty = false;
+      try {
+        flush();
+      } catch (IOException e) {
+        close();
+      }
+    }
+
+    void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      for (TimerListenerBus.Subscription<Integer> subscription : subscriptions.values()) {
+        subscription.close();
+      }
+      subscriptions.clear();
+      for (long id : owned) { // A client that crashed or was killed never sends CLOSE
+        closeTimer(id);
+      }
+      owned.clear();
+      key.cancel();
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // Already gone
+      }
+    }
+  }
+}
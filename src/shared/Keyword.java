@@ -0,0 +1,39 @@
+package shared;
+
+// A keyword picked from study material together with how often it occurs
+public class Keyword {
+  private final String word;
+  private final long count;
+
+  public Keyword(String word, long count) {
+    this.word = word;
+    this.count = count;
+  }
+
+  public String getWord() {
+    return word;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof Keyword)) {
+      return false;
+    }
+    Keyword keyword = (Keyword) other;
+    return count == keyword.count && word.equals(keyword.word);
+  }
+
+  @Override
+  public int hashCode() {
+    return word.hashCode() * 31 + Long.hashCode(count);
+  }
+
+  @Override
+  public String toString() {
+    return word + " (" + count + ")";
+  }
+}
@@ -0,0 +1,152 @@
+package shared;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import metrics.Counter;
+import metrics.Metrics;
+
+// Status and error messages of the background components. By default they are printed to the
+// console as plain lines, as before. With -Dstudyplanner.log=async they become structured
+// key=value records that the caller only queues; a writer thread formats and writes them in
+// batches, to the console or to -Dstudyplanner.log.file. When the queue is full records are
+// dropped and counted rather than blocking the caller. Interactive prompts do not go through here.
+public final class Log {
+  private static final boolean ASYNC = "async".equals(System.getProperty("studyplanner.log"));
+  private static final int QUEUE_CAPACITY = 16_384;
+  private static final int BATCH = 512;
+  private static final BlockingQueue<Entry> QUEUE = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private static final Counter DROPPED = Metrics.counter("log.dropped"); // since startup
+  private static final AtomicLong UNREPORTED = new AtomicLong(); // dropped since the last warning written
+  private static PrintStream out;
+
+  static {
+    if (ASYNC) {
+      out = openOutput();
+      Thread writer = new Thread(Log::writeLoop, "log-writer");
+      writer.setDaemon(true);
+      writer.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(Log::drain, "log-shutdown"));
+    }
+  }
+
+  private Log() {
+  }
+
+  public static void info(String component, String message) {
+    log("INFO", component, message);
+  }
+
+  public static void warn(String component, String message) {
+    log("WARN", component, message);
+  }
+
+  public static boolean isAsync() {
+    return ASYNC;
+  }
+
+  // Records lost since startup because the writer fell behind
+  public static long dropped() {
+    return DROPPED.get();
+  }
+
+  private static void log(String level, String component, String message) {
+    if (!ASYNC) {
+      System.out.println(message);
+      return;
+    }
+    Entry entry = new Entry(System.currentTimeMillis(), level, component, Thread.currentThread().getName(), message);
+    if (!QUEUE.offer(entry)) {
+      DROPPED.increment();
+      UNREPORTED.incrementAndGet();
+    }
+  }
+
+  private static PrintStream openOutput() {
+    String file = System.getProperty("studyplanner.log.file");
+    if (file != null) {
+      try {
+        return new PrintStream(new FileOutputStream(file, true), false, StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        System.out.println("Logging to the console, cannot open " + file + ": " + e.getMessage());
+      }
+    }
+    return System.out;
+  }
+
+  private static void writeLoop() {
+    List<Entry> batch = new ArrayList<>(BATCH);
+    StringBuilder text = new StringBuilder();
+    try {
+      while (true) {
+        batch.add(QUEUE.take());
+        QUEUE.drainTo(batch, BATCH - 1);
+        write(batch, text);
+      }
+    } catch (InterruptedException e) {
+      // Stopped
+    }
+  }
+
+  // Write whatever is still queued, e.g. at shutdown
+  private static synchronized void drain() {
+    List<Entry> batch = new ArrayList<>();
+    QUEUE.drainTo(batch);
+    write(batch, new StringBuilder());
+  }
+
+  private static synchronized void write(List<Entry> batch, StringBuilder text) {
+    text.setLength(0);
+    for (Entry entry : batch) {
+      text.append(Instant.ofEpochMilli(entry.time)).append(" level=").append(entry.level)
+          .append(" component=").append(entry.component).append(" thread=").append(quote(entry.thread))
+          .append(" msg=").append(quote(entry.message)).append('\n');
+    }
+    long dropped = UNREPORTED.getAndSet(0);
+    if (dropped > 0) {
+      text.append(Instant.now()).append(" level=WARN component=log msg=\"dropped ").append(dropped)
+          .append(" records\"\n");
+    }
+    out.print(text);
+    out.flush(); // One flush per batch
+    batch.clear();
+  }
+
+  private static String quote(String value) {
+    StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      } else if (c == '\n') {
+        quoted.append("\\n");
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  private static final class Entry {
+    final long time;
+    final String level;
+    final String component;
+    final String thread;
+    final String message;
+
+    Entry(long time, String level, String component, String thread, String message) {
+      this.time = time;
+      this.level = level;
+      this.component = component;
+      this.thread = thread;
+      this.message = message;
+    }
+  }
+}
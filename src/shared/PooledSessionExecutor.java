@@ -0,0 +1,27 @@
+package shared;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Fallback for runtimes without virtual threads: a fixed number of daemon platform threads,
+// with sessions beyond that queued until a thread frees up
+public class PooledSessionExecutor extends TrackingSessionExecutor {
+
+  public PooledSessionExecutor(int maxThreads) {
+    super(newPool(maxThreads));
+  }
+
+  private static ThreadPoolExecutor newPool(int maxThreads) {
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), runnable -> {
+          Thread thread = new Thread(runnable, "study-session-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    pool.allowCoreThreadTimeOut(true); // Idle session threads are reclaimed
+    return pool;
+  }
+}
@@ -0,0 +1,25 @@
+package shared;
+
+import java.util.concurrent.Future;
+
+// Runs study sessions off the EDT and keeps track of the live ones per session key
+// (e.g. one key per GUI tab), so a tab can cancel its sessions on reset or back-navigation
+public interface SessionExecutor {
+  Future<?> submit(String sessionKey, Runnable session);
+
+  // Interrupt every live session registered under the key
+  void cancel(String sessionKey);
+
+  int liveSessions();
+
+  void shutdown();
+
+  // Virtual threads when the runtime has them (Java 21+), otherwise a bounded platform pool
+  static SessionExecutor create() {
+    SessionExecutor executor = VirtualThreadSessionExecutor.createIfSupported();
+    if (executor != null) {
+      return executor;
+    }
+    return new PooledSessionExecutor(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+  }
+}
@@ -0,0 +1,61 @@
+package shared;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Session bookkeeping shared by the executor implementations; subclasses only supply the threads
+abstract class TrackingSessionExecutor implements SessionExecutor {
+  private final ExecutorService executor;
+  private final Map<String, Set<Future<?>>> liveSessions = new ConcurrentHashMap<>();
+  private final AtomicInteger liveCount = new AtomicInteger();
+
+  TrackingSessionExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public Future<?> submit(String sessionKey, Runnable session) {
+    Set<Future<?>> sessions = liveSessions.computeIfAbsent(sessionKey, key -> ConcurrentHashMap.newKeySet());
+    FutureTask<Void> task = new FutureTask<>(session, null);
+    sessions.add(task);
+    liveCount.incrementAndGet();
+    executor.execute(() -> {
+      try {
+        task.run();
+      } finally {
+        // Forget the session once it has finished, whether normally or by cancellation
+        sessions.remove(task);
+        liveCount.decrementAndGet();
+      }
+    });
+    return task;
+  }
+
+  @Override
+  public void cancel(String sessionKey) {
+    Set<Future<?>> sessions = liveSessions.get(sessionKey);
+    if (sessions != null) {
+      for (Future<?> session : sessions) {
+        session.cancel(true); // Interrupt the session thread
+      }
+    }
+  }
+
+  @Override
+  public int liveSessions() {
+    return liveCount.get();
+  }
+
+  @Override
+  public void shutdown() {
+    for (String sessionKey : liveSessions.keySet()) {
+      cancel(sessionKey);
+    }
+    executor.shutdown();
+  }
+}
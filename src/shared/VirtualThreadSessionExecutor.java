@@ -0,0 +1,23 @@
+package shared;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// One virtual thread per session (Java 21+). Sessions mostly park waiting for answers or breaks,
+// so thousands of them cost only heap, not native threads.
+public class VirtualThreadSessionExecutor extends TrackingSessionExecutor {
+
+  private VirtualThreadSessionExecutor(ExecutorService executor) {
+    super(executor);
+  }
+
+  // Looked up reflectively so the project still compiles and runs on older JDKs
+  static VirtualThreadSessionExecutor createIfSupported() {
+    try {
+      Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      return new VirtualThreadSessionExecutor((ExecutorService) executor);
+    } catch (ReflectiveOperationException e) {
+      return null; // Runtime without virtual threads
+    }
+  }
+}
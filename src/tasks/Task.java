@@ -3,16 +3,22 @@ package tasks;
 import java.time.LocalDate;
 
 public class Task {
+  private final long id; // stable identifier assigned by TaskManager
   private String name;
   private LocalDate dueDate;
-  private boolean completed;
+  private volatile boolean completed; // written by TaskManager under the task's lock, read lock-free
 
-  public Task(String name, LocalDate dueDate) {
+  public Task(long id, String name, LocalDate dueDate) {
+    this.id = id;
     this.name = name;
     this.dueDate = dueDate;
     this.completed = false;
   }
 
+  public long getId() {
+    return id;
+  }
+
   public String getName() {
     return name;
   }
@@ -25,7 +31,8 @@ public class Task {
     return completed;
   }
 
-  public void setCompleted(boolean completed) {
+  // Only TaskManager may change it, under the task's lock: the due-date indexes depend on it
+  void setCompleted(boolean completed) {
     this.completed = completed;
   }
 
@@ -0,0 +1,14 @@
+package tasks;
+
+// Notified after every change TaskManager makes. Calls for the same task arrive in the order the
+// changes were applied, on the thread that made them.
+public interface TaskListener {
+  default void taskAdded(Task task) {
+  }
+
+  default void taskDeleted(Task task) {
+  }
+
+  default void taskStatusChanged(Task task, boolean completed) {
+  }
+}
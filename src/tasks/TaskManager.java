@@ -1,71 +1,244 @@
 package tasks;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Metrics;
+import shared.Log;
+import timer.Deadline;
+import timer.TimingEngine;
 
+// Safe for concurrent readers and writers: the indexes are lock-free skip lists, and writers that
+// touch the same task serialize on that task's monitor. Readers get snapshots and never block,
+// but a task whose status is changing may briefly be missing from the pending/completed views.
 public class TaskManager {
-  private List<Task> tasks;
+  // Due date first, then ID, so every task has its own slot in the due-date indexes
+  private static final Comparator<Task> BY_DUE_DATE = Comparator.comparing(Task::getDueDate)
+      .thenComparingLong(Task::getId);
+
+  public static final int MAX_NAME_LENGTH = 1000; // characters; names must fit a journal record
+
+  private static final Counter ADDED = Metrics.counter("tasks.added");
+  private static final Counter DELETED = Metrics.counter("tasks.deleted");
+  private static final Counter STATUS_CHANGED = Metrics.counter("tasks.status_changed");
+  private static final Histogram MUTATION_TIME = Metrics.timer("tasks.mutation"); // indexes and listeners
+
+  private final ConcurrentNavigableMap<Long, Task> tasks; // Task ID -> task; IDs grow, so this is creation order
+  private final NavigableSet<Task> pendingByDueDate; // Due-date index over tasks not yet completed
+  private final NavigableSet<Task> completedByDueDate; // Due-date index over completed tasks
+  private final AtomicLong nextId;
+  private final List<TaskListener> listeners = new CopyOnWriteArrayList<>();
 
   public TaskManager() {
-    this.tasks = new ArrayList<>();
+    this.tasks = new ConcurrentSkipListMap<>();
+    this.pendingByDueDate = new ConcurrentSkipListSet<>(BY_DUE_DATE);
+    this.completedByDueDate = new ConcurrentSkipListSet<>(BY_DUE_DATE);
+    this.nextId = new AtomicLong(1);
   }
 
-  // Add task method
-  public void addTask(String taskName, String dueDateStr) {
+  // Add task method; throws IllegalArgumentException for a name over MAX_NAME_LENGTH characters
+  public Task addTask(String taskName, String dueDateStr) {
+    if (taskName.length() > MAX_NAME_LENGTH) {
+      throw new IllegalArgumentException("Task names are limited to " + MAX_NAME_LENGTH + " characters.");
+    }
     LocalDate dueDate = LocalDate.parse(dueDateStr);
-    Task task = new Task(taskName, dueDate);
-    tasks.add(task);
-    System.out.println("Task added: " + task);
+    long start = System.nanoTime();
+    Task task = new Task(nextId.getAndIncrement(), taskName, dueDate);
+    synchronized (task) {
+      pendingByDueDate.add(task); // Index first, so a task visible by ID is always in an index
+      tasks.put(task.getId(), task);
+      for (TaskListener listener : listeners) {
+        listener.taskAdded(task);
+      }
+    }
+    MUTATION_TIME.recordSince(start);
+    ADDED.increment();
+    Log.info("tasks", "Task added: " + task);
+    return task;
   }
 
-  // View tasks method
-  public void viewTasks() {
-    if (tasks.isEmpty()) {
-      System.out.println("No tasks available.");
-      return;
-    }
-    for (int i = 0; i < tasks.size(); i++) {
-      System.out.println((i + 1) + ". " + tasks.get(i));
+  // Re-create a task with its original ID, e.g. when loading persisted tasks. Listeners are not notified.
+  public Task restoreTask(long taskId, String taskName, LocalDate dueDate, boolean completed) {
+    Task task = new Task(taskId, taskName, dueDate);
+    task.setCompleted(completed);
+    indexFor(task).add(task);
+    tasks.put(taskId, task);
+    nextId.accumulateAndGet(taskId + 1, Math::max); // Never hand out a restored ID again
+    return task;
+  }
+
+  public void addTaskListener(TaskListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeTaskListener(TaskListener listener) {
+    listeners.remove(listener);
+  }
+
+  // Register a reminder with the shared timing engine for the start of the task's due date.
+  // Returns null when that moment has already passed.
+  public Deadline remindWhenDue(Task task, Consumer<Task> reminder) {
+    long delayMillis = Duration.between(LocalDateTime.now(), task.getDueDate().atStartOfDay()).toMillis();
+    if (delayMillis <= 0) {
+      return null;
     }
+    return TimingEngine.shared().schedule(delayMillis, TimeUnit.MILLISECONDS, () -> {
+      // Skip reminders for tasks that were deleted or completed in the meantime
+      if (tasks.get(task.getId()) == task && !task.isCompleted()) {
+        reminder.accept(task);
+      }
+    });
   }
 
-  // Get tasks method
+  // Get tasks method: an immutable snapshot in creation order
   public List<Task> getTasks() {
-    return tasks; // Return the list of tasks
+    return List.copyOf(tasks.values());
+  }
+
+  public Task getTask(long taskId) {
+    return tasks.get(taskId);
   }
 
   // Delete task method
-  public void deleteTask(int taskNumber) {
+  public void deleteTask(long taskId) {
     if (!hasTasks()) {
-      System.out.println("No tasks available to delete.");
+      Log.warn("tasks", "No tasks available to delete.");
       return;
     }
-    if (taskNumber < 1 || taskNumber > tasks.size()) {
-      System.out.println("Invalid task number. Please try again.");
-    } else {
-      Task removedTask = tasks.remove(taskNumber - 1); // Adjust for 1-based input
-      System.out.println("Task deleted: " + removedTask);
+    long start = System.nanoTime();
+    Task removedTask = tasks.get(taskId);
+    if (removedTask == null) {
+      Log.warn("tasks", "Invalid task number. Please try again.");
+      return;
+    }
+    synchronized (removedTask) {
+      if (!tasks.remove(taskId, removedTask)) {
+        Log.warn("tasks", "Invalid task number. Please try again."); // Deleted concurrently
+        return;
+      }
+      indexFor(removedTask).remove(removedTask);
+      for (TaskListener listener : listeners) {
+        listener.taskDeleted(removedTask);
+      }
     }
+    MUTATION_TIME.recordSince(start);
+    DELETED.increment();
+    Log.info("tasks", "Task deleted: " + removedTask);
   }
 
   // Change task status method
-  public void changeTaskStatus(int taskNumber, boolean isCompleted) {
+  public void changeTaskStatus(long taskId, boolean isCompleted) {
     if (!hasTasks()) {
-      System.out.println("No tasks available to change status.");
+      Log.warn("tasks", "No tasks available to change status.");
+      return;
+    }
+    long start = System.nanoTime();
+    Task task = tasks.get(taskId);
+    if (task == null) {
+      Log.warn("tasks", "Invalid task number. Please try again.");
       return;
     }
-    if (taskNumber < 1 || taskNumber > tasks.size()) {
-      System.out.println("Invalid task number. Please try again.");
-    } else {
-      Task task = tasks.get(taskNumber - 1);
+    synchronized (task) {
+      if (tasks.get(taskId) != task) {
+        Log.warn("tasks", "Invalid task number. Please try again."); // Deleted concurrently
+        return;
+      }
+      if (task.isCompleted() == isCompleted) {
+        Log.info("tasks", "Task status unchanged: " + task); // Nothing to journal or count
+        return;
+      }
+      // Move the task across the completed/pending partition
+      indexFor(task).remove(task);
       task.setCompleted(isCompleted);
-      System.out.println("Task status updated: " + task);
+      indexFor(task).add(task);
+      for (TaskListener listener : listeners) {
+        listener.taskStatusChanged(task, isCompleted);
+      }
     }
+    MUTATION_TIME.recordSince(start);
+    STATUS_CHANGED.increment();
+    Log.info("tasks", "Task status updated: " + task);
+  }
+
+  // Tasks of either status due between the two dates (inclusive), ordered by due date
+  public List<Task> tasksDueBetween(LocalDate from, LocalDate to) {
+    List<Task> result = new ArrayList<>();
+    if (from.isAfter(to)) {
+      return result;
+    }
+    Task low = bound(from, Long.MIN_VALUE);
+    Task high = bound(to, Long.MAX_VALUE);
+    Iterator<Task> pending = pendingByDueDate.subSet(low, true, high, true).iterator();
+    Iterator<Task> completed = completedByDueDate.subSet(low, true, high, true).iterator();
+    // Merge the two already-sorted partitions
+    Task nextPending = pending.hasNext() ? pending.next() : null;
+    Task nextCompleted = completed.hasNext() ? completed.next() : null;
+    while (nextPending != null || nextCompleted != null) {
+      if (nextCompleted == null || (nextPending != null && BY_DUE_DATE.compare(nextPending, nextCompleted) < 0)) {
+        result.add(nextPending);
+        nextPending = pending.hasNext() ? pending.next() : null;
+      } else {
+        result.add(nextCompleted);
+        nextCompleted = completed.hasNext() ? completed.next() : null;
+      }
+    }
+    return result;
+  }
+
+  public List<Task> tasksDueOn(LocalDate date) {
+    return tasksDueBetween(date, date);
+  }
+
+  // Pending tasks whose due date is before the given day
+  public List<Task> overdueTasks(LocalDate today) {
+    return List.copyOf(pendingByDueDate.headSet(bound(today, Long.MIN_VALUE), false));
+  }
+
+  // The next n pending tasks due today or later, earliest first
+  public List<Task> nextDue(int n) {
+    List<Task> result = new ArrayList<>();
+    for (Task task : pendingByDueDate.tailSet(bound(LocalDate.now(), Long.MIN_VALUE), true)) {
+      if (result.size() >= n) {
+        break;
+      }
+      result.add(task);
+    }
+    return result;
+  }
+
+  public List<Task> getPendingTasks() {
+    return List.copyOf(pendingByDueDate);
+  }
+
+  public List<Task> getCompletedTasks() {
+    return List.copyOf(completedByDueDate);
   }
 
   // Helper method to check if tasks exist
   public boolean hasTasks() {
     return !tasks.isEmpty();
   }
+
+  private NavigableSet<Task> indexFor(Task task) {
+    return task.isCompleted() ? completedByDueDate : pendingByDueDate;
+  }
+
+  // Probe task used only as a range bound in the due-date indexes
+  private static Task bound(LocalDate date, long id) {
+    return new Task(id, "", date);
+  }
 }
@@ -0,0 +1,192 @@
+package tasks;
+
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Many writer threads add, delete and complete tasks at random while reader threads take
+// snapshots. Afterwards the ID map and the pending/completed partitions must agree exactly. Then
+// compares the throughput of TaskManager with the same calls serialized behind one lock. Setting a
+// task to the status it already has must not notify listeners.
+// Log records go to a scratch file, since writers add tasks far faster than a console prints them.
+//
+//   java tasks.TaskManagerStressTest [writer threads] [seconds]
+public class TaskManagerStressTest {
+  private static final LocalDate TODAY = LocalDate.now();
+
+  // The operations both implementations are measured on
+  private interface Store {
+    long add(String name, LocalDate due);
+
+    void delete(long id);
+
+    void changeStatus(long id, boolean completed);
+
+    int read(LocalDate from, LocalDate to);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int writers = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    System.setProperty("studyplanner.log", "async");
+    System.setProperty("studyplanner.log.file", Files.createTempFile("stress", ".log").toString());
+
+    TaskManager manager = new TaskManager();
+    long ops = run(writers, 2, seconds, managerStore(manager));
+    checkPartitions(manager);
+    System.out.printf("Stress: %d writers and 2 readers for %d s, %,d operations, %d tasks left, partitions agree%n",
+        writers, seconds, ops, manager.getTasks().size());
+    checkRepeatedStatus();
+
+    System.out.println("Throughput (operations per second, 20% of threads reading):");
+    for (int threads : new int[] { 1, 4, writers }) {
+      int readers = Math.max(1, threads / 5);
+      long concurrent = run(threads, readers, seconds, managerStore(new TaskManager())) / seconds;
+      long coarse = run(threads, readers, seconds, coarseStore(new TaskManager())) / seconds;
+      System.out.printf("  %2d writers: TaskManager %,12d   coarse synchronized %,12d%n", threads, concurrent, coarse);
+    }
+  }
+
+  private static Store managerStore(TaskManager manager) {
+    return new Store() {
+      @Override
+      public long add(String name, LocalDate due) {
+        return manager.addTask(name, due.toString()).getId();
+      }
+
+      @Override
+      public void delete(long id) {
+        manager.deleteTask(id);
+      }
+
+      @Override
+      public void changeStatus(long id, boolean completed) {
+        manager.changeTaskStatus(id, completed);
+      }
+
+      @Override
+      public int read(LocalDate from, LocalDate to) {
+        return manager.tasksDueBetween(from, to).size() + manager.getPendingTasks().size();
+      }
+    };
+  }
+
+  // Writers: 40% adds, 40% status changes, 20% deletes of random recent IDs. Readers: a due-date
+  // range query and a pending snapshot. Returns the number of operations done.
+  private static long run(int writers, int readers, int seconds, Store store) throws InterruptedException {
+    AtomicLong highestId = new AtomicLong(1);
+    LongAdder operations = new LongAdder();
+    long end = System.nanoTime() + seconds * 1_000_000_000L;
+    CountDownLatch done = new CountDownLatch(writers + readers);
+    for (int t = 0; t < writers + readers; t++) {
+      boolean writer = t < writers;
+      SplittableRandom random = new SplittableRandom(t);
+      new Thread(() -> {
+        long local = 0;
+        while (System.nanoTime() < end) {
+          for (int i = 0; i < 64; i++, local++) {
+            int dice = random.nextInt(10);
+            long id = Math.max(1, highestId.get() - random.nextInt(1000));
+            if (!writer) {
+              LocalDate from = TODAY.plusDays(random.nextInt(-30, 30));
+              store.read(from, from.plusDays(7));
+            } else if (dice < 4) {
+              highestId.accumulateAndGet(store.add("Task", TODAY.plusDays(random.nextInt(-60, 60))), Math::max);
+            } else if (dice < 8) {
+              store.changeStatus(id, random.nextBoolean());
+            } else {
+              store.delete(id);
+            }
+          }
+        }
+        operations.add(local);
+        done.countDown();
+      }, (writer ? "writer-" : "reader-") + t).start();
+    }
+    done.await();
+    return operations.sum();
+  }
+
+  private static void checkPartitions(TaskManager manager) {
+    List<Task> all = manager.getTasks();
+    Set<Task> pending = new HashSet<>(manager.getPendingTasks());
+    Set<Task> completed = new HashSet<>(manager.getCompletedTasks());
+    for (Task task : all) {
+      boolean inPending = pending.contains(task);
+      boolean inCompleted = completed.contains(task);
+      if (inPending == inCompleted || inCompleted != task.isCompleted()) {
+        fail("task " + task.getId() + " (completed: " + task.isCompleted() + ") is in pending: " + inPending
+            + ", completed: " + inCompleted);
+      }
+    }
+    if (pending.size() + completed.size() != all.size()) {
+      fail((pending.size() + completed.size()) + " tasks in the partitions but " + all.size() + " by ID");
+    }
+  }
+
+  // Completing a task twice is one change, or every analytics rollup counts it twice
+  private static void checkRepeatedStatus() {
+    TaskManager manager = new TaskManager();
+    AtomicLong changes = new AtomicLong();
+    manager.addTaskListener(new TaskListener() {
+      @Override
+      public void taskStatusChanged(Task task, boolean completed) {
+        changes.incrementAndGet();
+      }
+    });
+    long id = manager.addTask("Task", TODAY.toString()).getId();
+    manager.changeTaskStatus(id, true);
+    manager.changeTaskStatus(id, true);
+    manager.changeTaskStatus(id, false);
+    manager.changeTaskStatus(id, false);
+    if (changes.get() != 2) {
+      fail(changes.get() + " status changes reported for 2 real ones");
+    }
+  }
+
+  private static void fail(String message) {
+    System.out.println("FAILED: " + message);
+    System.exit(1);
+  }
+
+  // The same TaskManager calls, all behind one lock
+  private static Store coarseStore(TaskManager manager) {
+    Store store = managerStore(manager);
+    Object lock = new Object();
+    return new Store() {
+      @Override
+      public long add(String name, LocalDate due) {
+        synchronized (lock) {
+          return store.add(name, due);
+        }
+      }
+
+      @Override
+      public void delete(long id) {
+        synchronized (lock) {
+          store.delete(id);
+        }
+      }
+
+      @Override
+      public void changeStatus(long id, boolean completed) {
+        synchronized (lock) {
+          store.changeStatus(id, completed);
+        }
+      }
+
+      @Override
+      public int read(LocalDate from, LocalDate to) {
+        synchronized (lock) {
+          return store.read(from, to);
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,102 @@
+package tasks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+// Due-date queries on the indexed TaskManager against the old approach of scanning (and sorting)
+// a plain list of every task. Tasks are spread over a year of due dates, a third of them completed.
+// Each query is warmed up first, then timed over many runs.
+//
+//   java tasks.TaskQueryBenchmark [tasks]
+public class TaskQueryBenchmark {
+  private static final Comparator<Task> BY_DUE_DATE = Comparator.comparing(Task::getDueDate)
+      .thenComparingLong(Task::getId);
+
+  public static void main(String[] args) {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    LocalDate today = LocalDate.now();
+    SplittableRandom random = new SplittableRandom(42);
+    TaskManager manager = new TaskManager();
+    List<Task> list = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      LocalDate due = today.plusDays(random.nextInt(-180, 185));
+      list.add(manager.restoreTask(i, "Task " + i, due, random.nextInt(3) == 0));
+    }
+    LocalDate from = today.plusDays(7);
+    LocalDate to = today.plusDays(13);
+
+    System.out.printf("%d tasks, average time per query:%n", count);
+    compare("tasksDueBetween (one week)", () -> manager.tasksDueBetween(from, to), () -> {
+      List<Task> result = new ArrayList<>();
+      for (Task task : list) {
+        if (!task.getDueDate().isBefore(from) && !task.getDueDate().isAfter(to)) {
+          result.add(task);
+        }
+      }
+      result.sort(BY_DUE_DATE);
+      return result;
+    });
+    compare("nextDue(10)", () -> manager.nextDue(10), () -> {
+      List<Task> result = new ArrayList<>();
+      for (Task task : list) {
+        if (!task.isCompleted() && !task.getDueDate().isBefore(today)) {
+          result.add(task);
+        }
+      }
+      result.sort(BY_DUE_DATE);
+      return result.subList(0, Math.min(10, result.size()));
+    });
+    compare("getTask by ID", () -> manager.getTask(count / 2), () -> {
+      for (Task task : list) {
+        if (task.getId() == count / 2) {
+          return task;
+        }
+      }
+      return null;
+    });
+  }
+
+  private static void compare(String query, Supplier<Object> indexed, Supplier<Object> scan) {
+    check(query, indexed.get(), scan.get());
+    double indexedNanos = time(indexed);
+    double scanNanos = time(scan);
+    System.out.printf("  %-28s indexed %,12.0f ns   list scan %,12.0f ns   (%.0fx)%n", query, indexedNanos,
+        scanNanos, scanNanos / indexedNanos);
+  }
+
+  // Average nanoseconds per call over about half a second, after an equal warm-up
+  private static double time(Supplier<Object> query) {
+    long sink = 0;
+    for (int phase = 0; phase < 2; phase++) {
+      long runs = 0;
+      long start = System.nanoTime();
+      long end = start + 500_000_000L;
+      long now;
+      do {
+        for (int i = 0; i < 16; i++) {
+          sink += System.identityHashCode(query.get());
+        }
+        runs += 16;
+        now = System.nanoTime();
+      } while (now < end);
+      if (phase == 1) {
+        if (sink == 42) {
+          System.out.println(sink); // Keep the results alive
+        }
+        return (double) (now - start) / runs;
+      }
+    }
+    throw new AssertionError();
+  }
+
+  private static void check(String query, Object indexed, Object scan) {
+    if (!indexed.equals(scan)) {
+      System.out.println("FAILED: " + query + " differs from the list scan");
+      System.exit(1);
+    }
+  }
+}
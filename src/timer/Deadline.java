@@ -0,0 +1,107 @@
+package timer;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// A one-shot deadline registered with the TimingEngine; pause and resume shift it by the
+// exact time spent paused, measured on the monotonic System.nanoTime clock
+public final class Deadline {
+  private final TimingEngine engine;
+  private final Runnable action;
+  private long deadlineNanos; // System.nanoTime value at which the action fires
+  private long remainingWhilePaused; // in nanoseconds, only meaningful while paused
+  private boolean paused;
+  private boolean done; // fired or cancelled
+  private boolean released; // action finished running or deadline cancelled
+  private ScheduledFuture<?> future;
+
+  Deadline(TimingEngine engine, Runnable action) {
+    this.engine = engine;
+    this.action = action;
+  }
+
+  synchronized void arm(long delayNanos) {
+    armAt(System.nanoTime() + delayNanos);
+  }
+
+  synchronized void armAt(long nanos) {
+    deadlineNanos = nanos;
+    future = engine.submit(nanos - System.nanoTime(), this::fire);
+  }
+
+  private void fire() {
+    synchronized (this) {
+      if (done || paused) {
+        return;
+      }
+      long early = deadlineNanos - System.nanoTime();
+      if (early > 0) {
+        // Woken ahead of the deadline (e.g. it was shifted by a resume); wait out the rest
+        future = engine.submit(early, this::fire);
+        return;
+      }
+      done = true;
+    }
+    try {
+      action.run();
+    } finally {
+      release();
+    }
+  }
+
+  private synchronized void release() {
+    released = true;
+    notifyAll(); // Release any thread blocked in await()
+  }
+
+  public synchronized void pause() {
+    if (done || paused) {
+      return;
+    }
+    paused = true;
+    remainingWhilePaused = Math.max(0, deadlineNanos - System.nanoTime());
+    future.cancel(false);
+  }
+
+  public synchronized void resume() {
+    if (done || !paused) {
+      return;
+    }
+    paused = false;
+    arm(remainingWhilePaused);
+  }
+
+  public synchronized void cancel() {
+    if (done) {
+      return;
+    }
+    done = true;
+    future.cancel(false);
+    release();
+  }
+
+  public synchronized long remaining(TimeUnit unit) {
+    long nanos = paused ? remainingWhilePaused : Math.max(0, deadlineNanos - System.nanoTime());
+    return unit.convert(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  // The System.nanoTime value the deadline fires at; only stable while running
+  public synchronized long deadlineNanos() {
+    return paused ? System.nanoTime() + remainingWhilePaused : deadlineNanos;
+  }
+
+  public synchronized boolean isPaused() {
+    return paused;
+  }
+
+  public synchronized boolean isDone() {
+    return done;
+  }
+
+  // Block the calling thread until the deadline's action has run or it is cancelled
+  public synchronized void await() throws InterruptedException {
+    while (!released) {
+      wait();
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Drift of a full Pomodoro run under CPU contention: busy threads keep every core loaded and a
+// slow listener takes 30 ms per tick, while each phase end is compared with where it should fall
+// counting from start(). Fails if any phase ends later than the bound.
+//
+//   java timer.DriftBenchmark [work seconds] [busy threads per core] [cycles]
+public class DriftBenchmark {
+  private static final long MAX_DRIFT_MILLIS = 100;
+
+  public static void main(String[] args) throws Exception {
+    int work = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+    int busyPerCore = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int cycles = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+    int shortBreak = Math.max(1, work / 3);
+    int longBreak = Math.max(1, work * 2 / 3);
+
+    List<Thread> busy = new ArrayList<>();
+    int busyThreads = busyPerCore * Runtime.getRuntime().availableProcessors();
+    for (int i = 0; i < busyThreads; i++) {
+      Thread thread = new Thread(DriftBenchmark::spin, "busy-" + i);
+      thread.setDaemon(true);
+      thread.start();
+      busy.add(thread);
+    }
+
+    PomodoroTimer timer = new PomodoroTimer(work, shortBreak, longBreak, cycles);
+    timer.addTimerListener(remaining -> sleep(30));
+    long[] nominal = new long[1];
+    List<Long> drifts = new ArrayList<>(); // milliseconds past the nominal end, per phase
+    timer.setPhaseListener((phase, completed) -> {
+      long now = System.nanoTime();
+      int seconds = phase == PomodoroTimer.Phase.WORK ? work
+          : phase == PomodoroTimer.Phase.SHORT_BREAK ? shortBreak : longBreak;
+      nominal[0] += TimeUnit.SECONDS.toNanos(seconds);
+      drifts.add(TimeUnit.NANOSECONDS.toMillis(now - nominal[0]));
+    });
+    nominal[0] = System.nanoTime();
+    timer.runTimer(); // start() reads the clock right after this, so the nominal ends are at most early
+    for (Thread thread : busy) {
+      thread.interrupt();
+    }
+
+    long max = drifts.stream().mapToLong(Long::longValue).max().orElse(0);
+    System.out.printf("%d cycles (%d/%d/%d s) with %d busy threads: %d phase ends, drift per phase %s ms%n",
+        cycles, work, shortBreak, longBreak, busyThreads, drifts.size(), drifts);
+    System.out.printf("Final drift %d ms, worst %d ms (bound %d ms)%n", drifts.get(drifts.size() - 1), max,
+        MAX_DRIFT_MILLIS);
+    if (max > MAX_DRIFT_MILLIS) {
+      System.out.println("FAILED: drift above the bound");
+      System.exit(1);
+    }
+  }
+
+  private static void spin() {
+    long sink = 0;
+    while (!Thread.currentThread().isInterrupted()) {
+      sink += System.nanoTime() % 7;
+    }
+    if (sink == 42) {
+      System.out.println(sink); // Keep the loop from being optimized away
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
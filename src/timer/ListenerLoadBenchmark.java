@@ -0,0 +1,115 @@
+package timer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Timer accuracy with hundreds of slow tick listeners. Each listener spins for a few milliseconds
+// per tick, and a probe listener on its own thread measures how late each displayed value arrives
+// after the whole second it belongs to, while phase ends are compared with where they should fall
+// counting from start(). Runs once with the listeners on the bus and once with them called inline
+// on the timer thread, as before the bus, after a short warm-up run; fails if the bus run is late
+// by more than the bound.
+//
+//   java timer.ListenerLoadBenchmark [listeners] [milliseconds per listener] [phase seconds]
+public class ListenerLoadBenchmark {
+  private static final long MAX_LATENESS_MILLIS = 100;
+
+  public static void main(String[] args) throws Exception {
+    int listeners = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    long busyMillis = args.length > 1 ? Long.parseLong(args[1]) : 2;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    run(listeners, busyMillis, 1, false); // Warm-up: starts the pool threads and compiles the tick path
+    Result bus = run(listeners, busyMillis, seconds, false);
+    Result inline = run(listeners, busyMillis, seconds, true);
+    bus.print("On the bus", listeners, busyMillis);
+    inline.print("Inline    ", listeners, busyMillis);
+    if (bus.worstTick() > MAX_LATENESS_MILLIS || bus.worstPhase() > MAX_LATENESS_MILLIS) {
+      System.out.println("FAILED: the timer was late by more than " + MAX_LATENESS_MILLIS + " ms with the bus");
+      System.exit(1);
+    }
+    System.out.println("OK");
+  }
+
+  // Two cycles of equal-length phases, so every tick's nominal time follows from its value alone
+  private static Result run(int listeners, long busyMillis, int seconds, boolean inline) {
+    PomodoroTimer timer = new PomodoroTimer(seconds, seconds, seconds, 2);
+    AtomicLong deliveries = new AtomicLong();
+    List<TimerListenerBus.Subscription<Integer>> subscriptions = new ArrayList<>();
+    for (int i = 0; i < listeners; i++) {
+      Consumer<Integer> listener = remaining -> {
+        spin(busyMillis);
+        deliveries.incrementAndGet();
+      };
+      subscriptions.add(inline ? timer.addTimerListener(listener, Runnable::run) : timer.addTimerListener(listener));
+    }
+
+    long phaseNanos = TimeUnit.SECONDS.toNanos(seconds);
+    long[] start = new long[1];
+    List<Long> ticks = Collections.synchronizedList(new ArrayList<>()); // milliseconds past the whole second
+    ExecutorService probe = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "probe");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MAX_PRIORITY);
+      return thread;
+    });
+    subscriptions.add(timer.addTimerListener(remaining -> {
+      long elapsed = System.nanoTime() - start[0];
+      long tickInPhase = phaseNanos - TimeUnit.SECONDS.toNanos(remaining);
+      long phaseStart = (elapsed - tickInPhase) / phaseNanos * phaseNanos; // the latest phase this tick fits
+      ticks.add(TimeUnit.NANOSECONDS.toMillis(elapsed - phaseStart - tickInPhase));
+    }, probe));
+    List<Long> phases = new ArrayList<>(); // milliseconds past the nominal end, per phase
+    timer.setPhaseListener((phase, completed) -> {
+      phases.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start[0] - (phases.size() + 1) * phaseNanos));
+    });
+
+    start[0] = System.nanoTime();
+    timer.runTimer(); // start() reads the clock right after this, so the nominal times are at most early
+    for (TimerListenerBus.Subscription<Integer> subscription : subscriptions) {
+      subscription.close();
+    }
+    probe.shutdown();
+    return new Result(new ArrayList<>(ticks), phases, deliveries.get());
+  }
+
+  private static final class Result {
+    private final List<Long> ticks;
+    private final List<Long> phases;
+    private final long deliveries;
+
+    Result(List<Long> ticks, List<Long> phases, long deliveries) {
+      Collections.sort(ticks);
+      this.ticks = ticks;
+      this.phases = phases;
+      this.deliveries = deliveries;
+    }
+
+    long worstTick() {
+      return ticks.isEmpty() ? Long.MAX_VALUE : ticks.get(ticks.size() - 1);
+    }
+
+    long worstPhase() {
+      return phases.stream().mapToLong(Long::longValue).max().orElse(Long.MAX_VALUE);
+    }
+
+    void print(String label, int listeners, long busyMillis) {
+      System.out.printf("%s: %d listeners x %d ms, %,d deliveries; probe saw %d ticks, median %d ms late, "
+          + "worst %d ms; phase ends %s ms late%n", label, listeners, busyMillis, deliveries, ticks.size(),
+          ticks.isEmpty() ? 0 : ticks.get(ticks.size() / 2), worstTick(), phases);
+    }
+  }
+
+  private static void spin(long millis) {
+    long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    while (System.nanoTime() < until) {
+      Thread.onSpinWait();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package timer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import shared.Log;
+
+// A named set of Pomodoro durations. Profiles live in a properties file the user can edit, one per
+// line as <name>=<work minutes>,<short break minutes>,<long break minutes>,<work cycles>
+public class PomodoroProfile {
+  private static final PomodoroProfile[] BUILT_IN = {
+      new PomodoroProfile("Classic", 25 * 60, 5 * 60, 30 * 60, 4),
+      new PomodoroProfile("Short", 15 * 60, 3 * 60, 15 * 60, 4),
+      new PomodoroProfile("Deep work", 50 * 60, 10 * 60, 30 * 60, 2) };
+
+  private final String name;
+  private final int workSeconds;
+  private final int shortBreakSeconds;
+  private final int longBreakSeconds;
+  private final int cycles;
+
+  public PomodoroProfile(String name, int workSeconds, int shortBreakSeconds, int longBreakSeconds, int cycles) {
+    this.name = name;
+    this.workSeconds = workSeconds;
+    this.shortBreakSeconds = shortBreakSeconds;
+    this.longBreakSeconds = longBreakSeconds;
+    this.cycles = cycles;
+  }
+
+  // The built-in profiles followed by the file's own, in name order; a file profile with a built-in
+  // name replaces it. Writes the built-ins to the file when there is none yet.
+  public static List<PomodoroProfile> loadAll(Path file) throws IOException {
+    Properties properties = new Properties();
+    if (Files.exists(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        properties.load(reader);
+      }
+    } else {
+      for (PomodoroProfile profile : BUILT_IN) {
+        properties.setProperty(profile.name, profile.minutes());
+      }
+      Files.createDirectories(file.getParent());
+      try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        properties.store(writer, "Pomodoro profiles: name=work,short break,long break (minutes),work cycles");
+      }
+    }
+
+    List<PomodoroProfile> profiles = new ArrayList<>();
+    TreeSet<String> names = new TreeSet<>(properties.stringPropertyNames());
+    for (PomodoroProfile builtIn : BUILT_IN) {
+      String value = properties.getProperty(builtIn.name);
+      profiles.add(value == null ? builtIn : parse(builtIn.name, value, builtIn));
+      names.remove(builtIn.name);
+    }
+    for (String name : names) {
+      PomodoroProfile profile = parse(name, properties.getProperty(name), null);
+      if (profile != null) {
+        profiles.add(profile);
+      }
+    }
+    return profiles;
+  }
+
+  // The profile with this name, or the first one
+  public static PomodoroProfile named(List<PomodoroProfile> profiles, String name) {
+    for (PomodoroProfile profile : profiles) {
+      if (profile.name.equals(name)) {
+        return profile;
+      }
+    }
+    return profiles.get(0);
+  }
+
+  private static PomodoroProfile parse(String name, String value, PomodoroProfile fallback) {
+    String[] parts = value.split(",");
+    try {
+      if (parts.length == 4) {
+        int[] numbers = new int[4];
+        for (int i = 0; i < numbers.length; i++) {
+          numbers[i] = Integer.parseInt(parts[i].trim());
+          if (numbers[i] <= 0) {
+            throw new NumberFormatException("not positive: " + numbers[i]);
+          }
+        }
+        return new PomodoroProfile(name, numbers[0] * 60, numbers[1] * 60, numbers[2] * 60, numbers[3]);
+      }
+    } catch (NumberFormatException e) {
+      // Reported below
+    }
+    Log.warn("timer", "Ignoring Pomodoro profile '" + name + "': expected four positive numbers, got " + value);
+    return fallback;
+  }
+
+  private String minutes() {
+    return workSeconds / 60 + "," + shortBreakSeconds / 60 + "," + longBreakSeconds / 60 + "," + cycles;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getWorkSeconds() {
+    return workSeconds;
+  }
+
+  public int getShortBreakSeconds() {
+    return shortBreakSeconds;
+  }
+
+  public int getLongBreakSeconds() {
+    return longBreakSeconds;
+  }
+
+  public int getCycles() {
+    return cycles;
+  }
+
+  @Override
+  public String toString() {
+    return name + " (" + minutes().replace(',', '/') + ")";
+  }
+}
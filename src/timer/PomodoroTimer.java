@@ -1,10 +1,23 @@
 package timer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import metrics.Histogram;
+import metrics.Metrics;
+import shared.Log;
 
 public class PomodoroTimer implements Runnable {
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final Histogram TICK_LATENESS = Metrics.timer("timer.tick.lateness"); // past the whole second
+  private static final Histogram PHASE_LATENESS = Metrics.timer("timer.phase.lateness"); // past the phase end
+
+  public enum Phase {
+    WORK, SHORT_BREAK, LONG_BREAK
+  }
+
   private int originalWorkDuration; // in seconds
   private int originalShortBreakDuration; // in seconds
   private int originalLongBreakDuration; // in seconds
@@ -12,11 +25,31 @@ public class PomodoroTimer implements Runnable {
   private int shortBreakDuration; // in seconds
   private int longBreakDuration; // in seconds
   private int cycles; // number of work cycles
-  private boolean running; // state of the timer
-  private boolean paused; // state of the timer when paused
-  private List<Consumer<Integer>> listeners = new ArrayList<>(); // List to hold timer listeners
+  private String profileName; // profile the durations came from, kept in the saved state
+  private Consumer<TimerState> stateListener = state -> {
+  }; // called on every start, phase change, pause, resume and stop
+  private BiConsumer<Phase, Boolean> phaseListener = (ended, completed) -> {
+  }; // called when a phase runs out (true) or is cut short by reset or stop (false)
+  private volatile boolean running; // state of the timer
+  private volatile boolean paused; // state of the timer when paused
+  private final TimerListenerBus<Integer> listeners; // Remaining seconds, delivered off the timer thread
+  private final TimingEngine engine; // Shared scheduler that fires phase ends and ticks
+  private Phase phase; // current phase while running
+  private int currentCycle; // 1-based index of the current work cycle
+  private Deadline phaseDeadline; // end of the current phase
+  private Deadline tickDeadline; // next once-a-second listener update
 
   public PomodoroTimer(int workDuration, int shortBreakDuration, int longBreakDuration, int cycles) {
+    this(workDuration, shortBreakDuration, longBreakDuration, cycles, TimingEngine.shared());
+  }
+
+  public PomodoroTimer(PomodoroProfile profile) {
+    this(profile.getWorkSeconds(), profile.getShortBreakSeconds(), profile.getLongBreakSeconds(), profile.getCycles());
+    this.profileName = profile.getName();
+  }
+
+  public PomodoroTimer(int workDuration, int shortBreakDuration, int longBreakDuration, int cycles,
+      TimingEngine engine) {
     this.originalWorkDuration = workDuration; // Store original durations
     this.originalShortBreakDuration = shortBreakDuration;
     this.originalLongBreakDuration = longBreakDuration;
@@ -26,43 +59,157 @@ public class PomodoroTimer implements Runnable {
     this.cycles = cycles;
     this.running = false;
     this.paused = false;
+    this.engine = engine;
+    this.listeners = new TimerListenerBus<>(engine);
+    this.profileName = "Custom";
   }
 
-  public void addTimerListener(Consumer<Integer> listener) {
-    listeners.add(listener); // Add a listener to the list
+  // Switch durations; only while stopped. Returns false if the timer is running.
+  public synchronized boolean applyProfile(PomodoroProfile profile) {
+    if (running) {
+      return false;
+    }
+    originalWorkDuration = workDuration = profile.getWorkSeconds();
+    originalShortBreakDuration = shortBreakDuration = profile.getShortBreakSeconds();
+    originalLongBreakDuration = longBreakDuration = profile.getLongBreakSeconds();
+    cycles = profile.getCycles();
+    profileName = profile.getName();
+    publishState();
+    return true;
   }
 
-  private void notifyListeners(int remainingTime) {
-    for (Consumer<Integer> listener : listeners) {
-      listener.accept(remainingTime); // Notify each listener with the remaining time
+  // Called with the new state on every transition (never on ticks), on the thread making the change
+  public synchronized void setStateListener(Consumer<TimerState> listener) {
+    stateListener = listener;
+  }
+
+  // Called with each phase that ends and whether it ran its full length, on the thread ending it
+  public synchronized void setPhaseListener(BiConsumer<Phase, Boolean> listener) {
+    phaseListener = listener;
+  }
+
+  public synchronized TimerState state() {
+    if (!running) {
+      return new TimerState(profileName, false, false, null, 0, 0, 0);
+    }
+    long remainingMillis = phaseDeadline.remaining(TimeUnit.MILLISECONDS);
+    return new TimerState(profileName, true, paused, phase, currentCycle, System.currentTimeMillis() + remainingMillis,
+        remainingMillis);
+  }
+
+  // Continue a saved run where it left off: a paused run keeps its remaining time, a running one
+  // keeps its wall-clock deadline, skipping phases that ended while the application was closed.
+  // Skipped phases are not reported to the phase listener, since nobody saw whether they were kept.
+  public synchronized void restore(TimerState saved) {
+    if (running || !saved.isRunning() || saved.getPhase() == null) {
+      return;
+    }
+    phase = saved.getPhase();
+    currentCycle = Math.max(1, Math.min(saved.getCycle(), cycles));
+    long remainingMillis = saved.isPaused() ? saved.getRemainingMillis()
+        : saved.getDeadlineEpochMillis() - System.currentTimeMillis();
+    long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remainingMillis);
+    int skipped = 0;
+    while (endNanos <= System.nanoTime()) {
+      skipped++;
+      Phase next = nextPhase();
+      if (next == null) {
+        Log.info("timer", "The saved run ended while closed; " + skipped + " phases skipped.");
+        publishState(); // The whole run ended while closed
+        return;
+      }
+      phase = next;
+      endNanos += durationOf(next) * SECOND;
     }
+    if (skipped > 0) {
+      Log.info("timer", skipped + " phases ended while closed and were skipped.");
+    }
+    running = true;
+    phaseDeadline = engine.scheduleAt(endNanos, this::endPhase);
+    int remaining = (int) ((phaseDeadline.remaining(TimeUnit.NANOSECONDS) + SECOND - 1) / SECOND);
+    Log.info("timer", "Restored " + phase + " of cycle " + currentCycle + " with " + remaining / 60 + ":"
+        + String.format("%02d", remaining % 60) + " left" + (saved.isPaused() ? ", paused." : "."));
+    if (saved.isPaused()) {
+      paused = true;
+      phaseDeadline.pause();
+      notifyListeners(remaining); // No ticks while paused, so show the remaining time once
+    } else {
+      scheduleTick(0);
+    }
+    publishState();
+  }
+
+  // Safe to call while the timer runs; the listener gets the remaining seconds on a pool thread
+  public TimerListenerBus.Subscription<Integer> addTimerListener(Consumer<Integer> listener) {
+    return listeners.subscribe(listener, ForkJoinPool.commonPool(), 0, TimeUnit.NANOSECONDS);
+  }
+
+  // Deliver on the given executor, e.g. SwingUtilities::invokeLater, at most once per frame
+  public TimerListenerBus.Subscription<Integer> addTimerListener(Consumer<Integer> listener, Executor executor) {
+    return listeners.subscribe(listener, executor, TimerListenerBus.FRAME_NANOS, TimeUnit.NANOSECONDS);
+  }
+
+  private void notifyListeners(int remainingTime) {
+    listeners.publish(remainingTime); // Only the latest value reaches a listener that falls behind
   }
 
-  public void start() {
+  // Start the first work phase; phases and ticks are driven by the TimingEngine, not a dedicated thread
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
     running = true; // Set running state to true
     paused = false; // Ensure paused is false when starting
+    currentCycle = 1;
+    beginPhase(Phase.WORK, System.nanoTime());
   }
 
-  public void stop() {
+  public synchronized void stop() {
+    if (running) {
+      phaseListener.accept(phase, false);
+    }
     running = false; // Stop the timer
+    cancelDeadlines();
+    notifyAll(); // Release any thread blocked in runTimer()
+    publishState();
   }
 
-  public void pause() {
+  public synchronized void pause() {
+    if (!running || paused) {
+      return;
+    }
     paused = true; // Set paused state to true
+    phaseDeadline.pause(); // Freeze the remaining time of the phase
+    if (tickDeadline != null) {
+      tickDeadline.cancel();
+    }
+    publishState();
   }
 
-  public void reset() {
+  public synchronized void reset() {
+    if (running) {
+      phaseListener.accept(phase, false);
+    }
     running = false; // Stop the timer
     paused = false; // Reset paused state
+    cancelDeadlines();
     // Reset durations to original values
     workDuration = originalWorkDuration;
     shortBreakDuration = originalShortBreakDuration;
     longBreakDuration = originalLongBreakDuration;
-    System.out.println("Timer reset to original settings.");
+    notifyAll(); // Release any thread blocked in runTimer()
+    publishState();
+    Log.info("timer", "Timer reset to original settings.");
   }
 
-  public void resume() {
+  public synchronized void resume() {
+    if (!running || !paused) {
+      return;
+    }
     paused = false; // Set paused state to false
+    phaseDeadline.resume(); // Shift the phase end by exactly the time spent paused
+    scheduleTick(0);
+    publishState();
   }
 
   @Override
@@ -70,54 +217,135 @@ public class PomodoroTimer implements Runnable {
     runTimer(); // Execute the timer logic in this method
   }
 
+  // Start the timer and block the calling thread until all cycles complete or the timer is stopped
   public void runTimer() {
-    for (int i = 1; i <= cycles; i++) {
-      if (!running)
-        break;
-
-      // Work phase
-      System.out.println("Work session " + i + " started for " + (workDuration / 60) + " minutes.");
-      sleep(workDuration); // Sleep for work duration
+    start();
+    synchronized (this) {
+      try {
+        while (running) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt(); // Restore interrupted status
+      }
+    }
+  }
 
-      // Check if timer is still running
-      if (!running)
+  // Begin a phase whose nominal start is startNanos; chaining phases off the previous deadline
+  // keeps callback latency from accumulating into drift over a full run
+  private void beginPhase(Phase next, long startNanos) {
+    phase = next;
+    int duration = durationOf(next);
+    switch (next) {
+      case WORK:
+        Log.info("timer", "Work session " + currentCycle + " started for " + (duration / 60) + " minutes.");
         break;
+      case SHORT_BREAK:
+        Log.info("timer", "Short break started for " + (duration / 60) + " minutes.");
+        break;
+      default:
+        Log.info("timer", "Long break started for " + (duration / 60) + " minutes.");
+    }
+    phaseDeadline = engine.scheduleAt(startNanos + duration * SECOND, this::endPhase);
+    if (paused) {
+      // Paused after the previous deadline fired but before endPhase got the lock: the next phase
+      // starts out paused, so resume() shifts it like any other
+      phaseDeadline.pause();
+    } else {
+      scheduleTick(0);
+    }
+    publishState();
+  }
 
-      System.out.println("Work session " + i + " ended. Time for a break!");
-
-      // Short break phase
-      if (i < cycles) {
-        System.out.println("Short break started for " + (shortBreakDuration / 60) + " minutes.");
-        sleep(shortBreakDuration); // Sleep for short break duration
-        System.out.println("Short break ended.");
-      } else {
-        // Long break phase for the last cycle
-        System.out.println("Long break started for " + (longBreakDuration / 60) + " minutes.");
-        sleep(longBreakDuration); // Sleep for long break duration
-        System.out.println("Long break ended.");
-      }
+  private synchronized void endPhase() {
+    if (!running) {
+      return;
+    }
+    tickDeadline.cancel();
+    long endedAt = phaseDeadline.deadlineNanos(); // Nominal end, independent of how late we fired
+    PHASE_LATENESS.record(System.nanoTime() - endedAt);
+    switch (phase) {
+      case WORK:
+        Log.info("timer", "Work session " + currentCycle + " ended. Time for a break!");
+        break;
+      case SHORT_BREAK:
+        Log.info("timer", "Short break ended.");
+        break;
+      default:
+        Log.info("timer", "Long break ended.");
+    }
+    phaseListener.accept(phase, true);
+    Phase next = nextPhase();
+    if (next != null) {
+      beginPhase(next, endedAt);
+      return;
     }
     // Reset state after completing cycles
     running = false;
-    System.out.println("Pomodoro cycle completed. Ready to start again!");
-  }
-
-  private void sleep(int seconds) {
-    try {
-      for (int i = seconds; i > 0; i--) {
-        if (paused) {
-          // Wait until the timer is resumed
-          synchronized (this) {
-            while (paused) {
-              wait(); // Wait until notified
-            }
-          }
-        }
-        notifyListeners(i); // Notify listeners with remaining seconds
-        Thread.sleep(1000); // Sleep for 1 second
+    notifyAll(); // Release any thread blocked in runTimer()
+    publishState();
+    Log.info("timer", "Pomodoro cycle completed. Ready to start again!");
+  }
+
+  // The phase after the current one, counting cycles; null after the long break
+  private Phase nextPhase() {
+    switch (phase) {
+      case WORK:
+        // Short break between cycles, long break after the last one
+        return currentCycle < cycles ? Phase.SHORT_BREAK : Phase.LONG_BREAK;
+      case SHORT_BREAK:
+        currentCycle++;
+        return Phase.WORK;
+      default:
+        return null;
+    }
+  }
+
+  private void publishState() {
+    stateListener.accept(state());
+  }
+
+  private void scheduleTick(long delayNanos) {
+    tickDeadline = engine.schedule(delayNanos, TimeUnit.NANOSECONDS, this::tick);
+  }
+
+  // Ticks land on whole seconds before the phase deadline. The displayed value is always computed
+  // from the deadline, so a late tick reports the current value and missed ticks are coalesced.
+  private void tick() {
+    int remaining;
+    synchronized (this) {
+      if (!running || paused || phaseDeadline.isDone()) {
+        return;
+      }
+      TICK_LATENESS.record(System.nanoTime() - tickDeadline.deadlineNanos());
+      long remainingNanos = phaseDeadline.remaining(TimeUnit.NANOSECONDS);
+      remaining = (int) ((remainingNanos + SECOND - 1) / SECOND); // Round up so a fresh phase shows its full duration
+      if (remaining > 1) {
+        scheduleTick(remainingNanos - (remaining - 1) * SECOND); // Next whole-second boundary
       }
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt(); // Restore interrupted status
+    }
+    if (remaining > 0) {
+      notifyListeners(remaining); // Notify listeners with remaining seconds
+    }
+  }
+
+  private int durationOf(Phase value) {
+    switch (value) {
+      case WORK:
+        return workDuration;
+      case SHORT_BREAK:
+        return shortBreakDuration;
+      default:
+        return longBreakDuration;
+    }
+  }
+
+  private void cancelDeadlines() {
+    if (phaseDeadline != null) {
+      phaseDeadline.cancel();
+    }
+    if (tickDeadline != null) {
+      tickDeadline.cancel();
     }
   }
 
@@ -128,4 +356,12 @@ public class PomodoroTimer implements Runnable {
   public boolean isPaused() {
     return paused;
   }
+
+  public synchronized Phase getPhase() {
+    return phase;
+  }
+
+  public synchronized int getCurrentCycle() {
+    return currentCycle;
+  }
 }
@@ -0,0 +1,101 @@
+package timer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import shared.Log;
+
+// Delivers timer updates to listeners without running them on the timer thread. Publishing only
+// stores the value in each subscription and, if none is queued yet, hands one delivery to the
+// subscription's executor. A listener that falls behind skips straight to the latest value, never
+// runs concurrently with itself, and gets at most one value per its minimum interval.
+public class TimerListenerBus<T> {
+  public static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(16); // one frame at 60 Hz
+
+  private final List<Subscription<T>> subscriptions = new CopyOnWriteArrayList<>();
+  private final TimingEngine engine; // delays deliveries that would come too soon
+
+  public TimerListenerBus(TimingEngine engine) {
+    this.engine = engine;
+  }
+
+  // Deliver on the executor, at most once every minInterval
+  public Subscription<T> subscribe(Consumer<T> listener, Executor executor, long minInterval, TimeUnit unit) {
+    Subscription<T> subscription = new Subscription<>(this, listener, executor, unit.toNanos(minInterval));
+    subscriptions.add(subscription);
+    return subscription;
+  }
+
+  // Cheap: never waits for a listener
+  public void publish(T value) {
+    for (Subscription<T> subscription : subscriptions) {
+      subscription.offer(value);
+    }
+  }
+
+  public int size() {
+    return subscriptions.size();
+  }
+
+  public static final class Subscription<T> implements AutoCloseable {
+    private final TimerListenerBus<T> bus;
+    private final Consumer<T> listener;
+    private final Executor executor;
+    private final long minIntervalNanos;
+    private final AtomicReference<T> latest = new AtomicReference<>(); // undelivered value, if any
+    private final AtomicBoolean queued = new AtomicBoolean(); // a delivery is queued or running
+    private volatile long lastDeliveryNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+    private volatile boolean closed;
+
+    private Subscription(TimerListenerBus<T> bus, Consumer<T> listener, Executor executor, long minIntervalNanos) {
+      this.bus = bus;
+      this.listener = listener;
+      this.executor = executor;
+      this.minIntervalNanos = minIntervalNanos;
+    }
+
+    private void offer(T value) {
+      latest.set(value); // Overwrites any value the listener has not seen yet
+      queue();
+    }
+
+    private void queue() {
+      if (closed || !queued.compareAndSet(false, true)) {
+        return;
+      }
+      long waitNanos = lastDeliveryNanos + minIntervalNanos - System.nanoTime();
+      if (waitNanos > 0) {
+        bus.engine.schedule(waitNanos, TimeUnit.NANOSECONDS, () -> executor.execute(this::deliver));
+      } else {
+        executor.execute(this::deliver);
+      }
+    }
+
+    private void deliver() {
+      T value = latest.getAndSet(null);
+      try {
+        if (value != null && !closed) {
+          lastDeliveryNanos = System.nanoTime();
+          listener.accept(value);
+        }
+      } catch (RuntimeException e) {
+        Log.warn("timer", "Timer listener failed: " + e);
+      } finally {
+        queued.set(false);
+        if (latest.get() != null) {
+          queue(); // Published while the listener ran
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+      bus.subscriptions.remove(this);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package timer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Where a Pomodoro run stands, small enough to rewrite on every phase change. The phase end is kept
+// as wall-clock time, since System.nanoTime values mean nothing after a restart.
+public class TimerState {
+  private static final int MAGIC = 0x50545331; // "PTS1"
+
+  private final String profileName;
+  private final boolean running;
+  private final boolean paused;
+  private final PomodoroTimer.Phase phase; // null when not running
+  private final int cycle;
+  private final long deadlineEpochMillis; // end of the phase; only meaningful while running unpaused
+  private final long remainingMillis; // left in the phase when the state was taken
+
+  public TimerState(String profileName, boolean running, boolean paused, PomodoroTimer.Phase phase, int cycle,
+      long deadlineEpochMillis, long remainingMillis) {
+    this.profileName = profileName;
+    this.running = running;
+    this.paused = paused;
+    this.phase = phase;
+    this.cycle = cycle;
+    this.deadlineEpochMillis = deadlineEpochMillis;
+    this.remainingMillis = remainingMillis;
+  }
+
+  // The saved state, or null if there is none or it is unreadable
+  public static TimerState read(Path file) throws IOException {
+    try (InputStream stream = Files.newInputStream(file)) {
+      DataInputStream in = new DataInputStream(stream);
+      if (in.readInt() != MAGIC) {
+        return null;
+      }
+      String profileName = in.readUTF();
+      boolean running = in.readBoolean();
+      boolean paused = in.readBoolean();
+      int phase = in.readByte();
+      int cycle = in.readInt();
+      long deadlineEpochMillis = in.readLong();
+      long remainingMillis = in.readLong();
+      PomodoroTimer.Phase[] phases = PomodoroTimer.Phase.values();
+      return new TimerState(profileName, running, paused, phase >= 0 && phase < phases.length ? phases[phase] : null,
+          cycle, deadlineEpochMillis, remainingMillis);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (EOFException e) {
+      return null; // Truncated
+    }
+  }
+
+  // Replace the file atomically; no fsync, so an application crash keeps the state but a power cut may not
+  public void write(Path file) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeUTF(profileName);
+    out.writeBoolean(running);
+    out.writeBoolean(paused);
+    out.writeByte(phase == null ? -1 : phase.ordinal());
+    out.writeInt(cycle);
+    out.writeLong(deadlineEpochMillis);
+    out.writeLong(remainingMillis);
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.write(temp, bytes.toByteArray());
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  public String getProfileName() {
+    return profileName;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public boolean isPaused() {
+    return paused;
+  }
+
+  public PomodoroTimer.Phase getPhase() {
+    return phase;
+  }
+
+  public int getCycle() {
+    return cycle;
+  }
+
+  public long getDeadlineEpochMillis() {
+    return deadlineEpochMillis;
+  }
+
+  public long getRemainingMillis() {
+    return remainingMillis;
+  }
+}
@@ -0,0 +1,48 @@
+package timer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import shared.Log;
+
+// Saves each new timer state to a file on a background thread. PomodoroTimer reports states while
+// holding its lock, often on a TimingEngine thread, so the listener only hands the state over; if
+// several arrive before the writer gets to them, only the latest is written. Whatever is still
+// unwritten at shutdown is written then.
+public class TimerStateWriter implements Consumer<TimerState> {
+  private final Path file;
+  private final AtomicReference<TimerState> unwritten = new AtomicReference<>();
+  private final Executor writer = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "timer-state-writer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public TimerStateWriter(Path file) {
+    this.file = file;
+    Runtime.getRuntime().addShutdownHook(new Thread(this::writeLatest, "timer-state-shutdown"));
+  }
+
+  @Override
+  public void accept(TimerState state) {
+    if (unwritten.getAndSet(state) == null) {
+      writer.execute(this::writeLatest);
+    }
+  }
+
+  // Synchronized so the shutdown hook and the writer never share the temp file
+  private synchronized void writeLatest() {
+    TimerState state = unwritten.getAndSet(null);
+    if (state == null) {
+      return;
+    }
+    try {
+      state.write(file);
+    } catch (IOException e) {
+      Log.warn("timer", "Error saving Pomodoro state: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package timer;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Shared scheduler that every timer, break and reminder registers its deadlines with,
+// so thousands of pending timers cost a couple of threads instead of one sleeping thread each
+public final class TimingEngine {
+  private static final TimingEngine SHARED = new TimingEngine(2);
+
+  private final ScheduledThreadPoolExecutor executor;
+
+  public TimingEngine(int threads) {
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+      Thread thread = new Thread(runnable, "timing-engine-" + threadCount.incrementAndGet());
+      thread.setDaemon(true); // Never keep the application alive just for pending timers
+      return thread;
+    });
+    this.executor.setRemoveOnCancelPolicy(true); // Cancelled deadlines should not linger in the queue
+  }
+
+  public static TimingEngine shared() {
+    return SHARED;
+  }
+
+  // Register a one-shot deadline that fires the action after the given delay
+  public Deadline schedule(long delay, TimeUnit unit, Runnable action) {
+    Deadline deadline = new Deadline(this, action);
+    deadline.arm(unit.toNanos(delay));
+    return deadline;
+  }
+
+  // Register a one-shot deadline at an absolute System.nanoTime value, so back-to-back deadlines
+  // can be chained off each other's nominal time instead of accumulating firing latency
+  public Deadline scheduleAt(long deadlineNanos, Runnable action) {
+    Deadline deadline = new Deadline(this, action);
+    deadline.armAt(deadlineNanos);
+    return deadline;
+  }
+
+  ScheduledFuture<?> submit(long delayNanos, Runnable task) {
+    return executor.schedule(task, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+  }
+
+  public int pendingCount() {
+    return executor.getQueue().size();
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}